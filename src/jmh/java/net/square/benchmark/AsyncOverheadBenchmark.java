@@ -0,0 +1,41 @@
+package net.square.benchmark;
+
+import net.square.wrapper.impl.SuccessWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AsyncOverheadBenchmark class measures what the asynchronous lookup costs over the blocking one when the
+ * address is cached, so that no time is spent waiting for proxycheck.io.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncOverheadBenchmark {
+
+    @Benchmark
+    public SuccessWrapper blocking(ClientState client, ClientState.Cursor cursor) throws ExecutionException {
+        return client.proxyAPI.fetchAddressDataForIP(cursor.next(client));
+    }
+
+    @Benchmark
+    public CompletableFuture<SuccessWrapper> async(ClientState client, ClientState.Cursor cursor) {
+        return client.proxyAPI.fetchAddressDataForIPAsync(cursor.next(client));
+    }
+
+    @Benchmark
+    public SuccessWrapper asyncJoin(ClientState client, ClientState.Cursor cursor) {
+        return client.proxyAPI.fetchAddressDataForIPAsync(cursor.next(client)).join();
+    }
+}
@@ -0,0 +1,50 @@
+package net.square.benchmark;
+
+import net.square.wrapper.impl.SuccessWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CacheHitBenchmark class measures the throughput of {@code fetchAddressDataForIP} on cache hits, from a single
+ * thread up to one thread per processor, to show how the hit path scales under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheHitBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public SuccessWrapper threads1(ClientState client, ClientState.Cursor cursor) throws ExecutionException {
+        return client.proxyAPI.fetchAddressDataForIP(cursor.next(client));
+    }
+
+    @Benchmark
+    @Threads(2)
+    public SuccessWrapper threads2(ClientState client, ClientState.Cursor cursor) throws ExecutionException {
+        return client.proxyAPI.fetchAddressDataForIP(cursor.next(client));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SuccessWrapper threads4(ClientState client, ClientState.Cursor cursor) throws ExecutionException {
+        return client.proxyAPI.fetchAddressDataForIP(cursor.next(client));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SuccessWrapper threadsMax(ClientState client, ClientState.Cursor cursor) throws ExecutionException {
+        return client.proxyAPI.fetchAddressDataForIP(cursor.next(client));
+    }
+}
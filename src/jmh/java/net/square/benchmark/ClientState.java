@@ -0,0 +1,79 @@
+package net.square.benchmark;
+
+import net.square.ProxyAPI;
+import net.square.transport.FakeProxyCheckServer;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The ClientState class is a {@link ProxyAPI} shared by the threads of a benchmark, talking to a local
+ * {@link FakeProxyCheckServer}. Its cache holds the data of {@link #ADDRESSES} addresses before the first iteration,
+ * so that lookups of these addresses measure the cache hit path only.
+ */
+@State(Scope.Benchmark)
+public class ClientState {
+
+    /**
+     * The number of cached addresses, a power of two.
+     */
+    static final int ADDRESSES = 1024;
+
+    /**
+     * The cached addresses.
+     */
+    final String[] addresses = Responses.addresses(ADDRESSES);
+
+    /**
+     * The server answering the lookups that fill the cache.
+     */
+    FakeProxyCheckServer server;
+
+    /**
+     * The client under measurement.
+     */
+    ProxyAPI proxyAPI;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ExecutionException {
+        FakeProxyCheckServer.enableNoDelay();
+        this.server = FakeProxyCheckServer.builder().proxyRate(0.2).build();
+        this.proxyAPI = ProxyAPI.builder().transport(server.transport()).build();
+        for (String address : addresses) {
+            proxyAPI.fetchAddressDataForIP(address);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        proxyAPI.close();
+        server.close();
+    }
+
+    /**
+     * The Cursor class walks each thread through the cached addresses on its own, starting at a different address.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /**
+         * The index of the next address.
+         */
+        private int index = (int) Thread.currentThread().threadId() * 61;
+
+        /**
+         * Returns the next cached address.
+         *
+         * @param client The client state.
+         * @return The address.
+         */
+        String next(ClientState client) {
+            return client.addresses[index++ & (ADDRESSES - 1)];
+        }
+    }
+}
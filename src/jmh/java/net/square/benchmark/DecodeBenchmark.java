@@ -0,0 +1,73 @@
+package net.square.benchmark;
+
+import com.google.gson.JsonParser;
+import net.square.wrapper.impl.StreamingResponseDecoder;
+import net.square.wrapper.impl.SuccessWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DecodeBenchmark class measures the decoding of a full and a short response into a {@link SuccessWrapper}:
+ * through the {@link JsonParser} tree, and through the {@link StreamingResponseDecoder} the client reads responses
+ * with, eagerly and lazily.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    /**
+     * The requested addresses of the streaming decoder.
+     */
+    private static final List<String> ADDRESSES = List.of(Responses.ADDRESS);
+
+    /**
+     * The format of the decoded response.
+     */
+    @Param({"full", "short"})
+    public String format;
+
+    /**
+     * The text of the decoded response.
+     */
+    private String response;
+
+    @Setup
+    public void setUp() {
+        this.response = format.equals("full") ? Responses.FULL : Responses.SHORT;
+    }
+
+    @Benchmark
+    public SuccessWrapper tree() {
+        return new SuccessWrapper(JsonParser.parseString(response).getAsJsonObject(), Responses.ADDRESS);
+    }
+
+    @Benchmark
+    public SuccessWrapper streaming() throws IOException {
+        return StreamingResponseDecoder.decode(new StringReader(response), ADDRESSES)
+            .toSuccessWrapper(Responses.ADDRESS);
+    }
+
+    @Benchmark
+    public SuccessWrapper streamingLazy() throws IOException {
+        return StreamingResponseDecoder.decode(new StringReader(response), ADDRESSES, true)
+            .toSuccessWrapper(Responses.ADDRESS);
+    }
+}
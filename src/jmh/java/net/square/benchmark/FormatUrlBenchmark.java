@@ -0,0 +1,73 @@
+package net.square.benchmark;
+
+import net.square.ProxyAPI;
+import net.square.settings.ProxyCheckSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FormatUrlBenchmark class measures the construction of the request URL of a single address, done once per
+ * request that misses the cache. The private method is reached through a constant method handle, which the JIT
+ * compiler inlines like a direct call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatUrlBenchmark {
+
+    /**
+     * The handle of {@code ProxyAPI.formatURL(String, ProxyCheckSettings, String)}.
+     */
+    private static final MethodHandle FORMAT_URL;
+
+    static {
+        try {
+            FORMAT_URL = MethodHandles.privateLookupIn(ProxyAPI.class, MethodHandles.lookup()).findVirtual(
+                ProxyAPI.class, "formatURL",
+                MethodType.methodType(String.class, String.class, ProxyCheckSettings.class, String.class));
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    /**
+     * The client formatting the URL.
+     */
+    private final ProxyAPI proxyAPI = ProxyAPI.builder().build();
+
+    /**
+     * Settings requesting every flag.
+     */
+    private final ProxyCheckSettings full = ProxyCheckSettings.builder()
+        .vpn(3).asn(true).node(true).time(true).port(true).seen(true).risk(2).days(7).build();
+
+    /**
+     * The settings of {@link ProxyCheckSettings#minimal()}.
+     */
+    private final ProxyCheckSettings minimal = ProxyCheckSettings.minimal();
+
+    @Benchmark
+    public String fullSettings() throws Throwable {
+        return (String) FORMAT_URL.invokeExact(proxyAPI, Responses.ADDRESS, full, "license_key");
+    }
+
+    @Benchmark
+    public String minimalSettings() throws Throwable {
+        return (String) FORMAT_URL.invokeExact(proxyAPI, Responses.ADDRESS, minimal, "license_key");
+    }
+}
@@ -0,0 +1,66 @@
+package net.square.benchmark;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.square.wrapper.DefaultWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JsonValueBenchmark class measures the cost of reading a single field with
+ * {@link DefaultWrapper#getJsonValue}, which every wrapper calls once per field it decodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonValueBenchmark {
+
+    /**
+     * The wrapper reading the fields.
+     */
+    private final DefaultWrapper wrapper = new DefaultWrapper();
+
+    /**
+     * The object of the address of the full response.
+     */
+    private JsonObject address;
+
+    @Setup
+    public void setUp() {
+        this.address = JsonParser.parseString(Responses.FULL).getAsJsonObject()
+            .getAsJsonObject(Responses.ADDRESS);
+    }
+
+    @Benchmark
+    public String stringField() {
+        return wrapper.getJsonValue(address, "provider", String.class, DefaultWrapper.ERROR);
+    }
+
+    @Benchmark
+    public String numberField() {
+        return wrapper.getJsonValue(address, "risk", String.class, DefaultWrapper.ERROR);
+    }
+
+    @Benchmark
+    public JsonObject objectField() {
+        return wrapper.getJsonValue(address, "currency", JsonObject.class, null);
+    }
+
+    @Benchmark
+    public String missingField() {
+        return wrapper.getJsonValue(address, "vpn", String.class, DefaultWrapper.ERROR);
+    }
+}
@@ -0,0 +1,101 @@
+package net.square.benchmark;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * The Responses class holds realistic responses of proxycheck.io for the decoding benchmarks.
+ */
+@UtilityClass
+class Responses {
+
+    /**
+     * The address the responses belong to.
+     */
+    static final String ADDRESS = "37.60.48.2";
+
+    /**
+     * A full response, requested with every flag set and a risk level of 2.
+     */
+    static final String FULL = """
+        {
+            "status": "ok",
+            "node": "PANDORA",
+            "37.60.48.2": {
+                "asn": "AS198605",
+                "provider": "AVAST Software s.r.o.",
+                "organisation": "AVAST Software s.r.o.",
+                "continent": "Europe",
+                "continentcode": "EU",
+                "country": "Germany",
+                "isocode": "DE",
+                "region": "Hesse",
+                "regioncode": "HE",
+                "timezone": "Europe/Berlin",
+                "city": "Frankfurt am Main",
+                "postcode": "60313",
+                "latitude": 50.1187,
+                "longitude": 8.6842,
+                "currency": {
+                    "code": "EUR",
+                    "name": "Euro",
+                    "symbol": "€"
+                },
+                "proxy": "yes",
+                "type": "VPN",
+                "operator": {
+                    "name": "HMA VPN",
+                    "url": "https://www.hidemyass.com/",
+                    "anonymity": "high",
+                    "popularity": "high",
+                    "protocols": ["OpenVPN", "IPSec"],
+                    "policies": {
+                        "ad_filtering": "no",
+                        "free_access": "no",
+                        "paid_access": "yes",
+                        "port_forwarding": "no",
+                        "logging": "yes",
+                        "anonymous_payments": "yes",
+                        "crypto_payments": "no",
+                        "traceable_ownership": "yes"
+                    }
+                },
+                "port": 1080,
+                "risk": 66,
+                "attack history": {
+                    "total": 4,
+                    "Login Attempt": 3,
+                    "Registration Attempt": 1
+                },
+                "last seen human": "9 hours, 2 minutes, 11 seconds ago",
+                "last seen unix": "1712485922"
+            },
+            "query time": "0.004s"
+        }
+        """;
+
+    /**
+     * The short response of {@link net.square.settings.ProxyCheckSettings#minimal()}.
+     */
+    static final String SHORT = """
+        {
+            "status": "ok",
+            "proxy": "yes",
+            "type": "VPN",
+            "risk": 66
+        }
+        """;
+
+    /**
+     * Creates distinct public IPv4 addresses for the cache benchmarks.
+     *
+     * @param count The number of addresses.
+     * @return The addresses.
+     */
+    static String[] addresses(int count) {
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = "81.%d.%d.%d".formatted((i >> 15) & 0xFF, (i >> 7) & 0xFF, 1 + (i & 0x7F));
+        }
+        return addresses;
+    }
+}
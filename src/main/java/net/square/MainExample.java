@@ -1,9 +1,33 @@
 package net.square;
 
+import net.square.cache.VerdictStore;
+import net.square.limit.Fallback;
+import net.square.range.CidrRangeIndex;
+import net.square.range.KnownRange;
+import net.square.result.LookupResult;
+import net.square.settings.BatchSettings;
+import net.square.settings.CircuitBreakerSettings;
+import net.square.settings.ConcurrencySettings;
+import net.square.settings.EvictionSettings;
+import net.square.settings.ExpiryRule;
+import net.square.settings.ExpirySettings;
+import net.square.settings.HedgingSettings;
+import net.square.settings.KeyPoolSettings;
+import net.square.settings.MetricsSettings;
+import net.square.settings.NegativeCacheSettings;
+import net.square.settings.PersistenceSettings;
+import net.square.settings.PrefixSettings;
 import net.square.settings.ProxyCheckSettings;
+import net.square.settings.RateLimitSettings;
+import net.square.settings.RefreshSettings;
+import net.square.settings.RetrySettings;
+import net.square.settings.TransportSettings;
+import net.square.wrapper.compact.AddressType;
 import net.square.wrapper.impl.SuccessWrapper;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -43,6 +67,97 @@ public class MainExample {
                                     .shrt(false) // Compress response
                                     .days(2)     // Check our database for Proxies that we saw within the past 48 hours
                                     .build())
+            // For high-volume lookups, ProxyCheckSettings.minimal() requests the smallest (short) response instead
+            // Merge single lookups that miss the cache within 5 ms into one request (disabled by default)
+            .batchSettings(BatchSettings.builder()
+                               .window(Duration.ofMillis(5)) // How long should a miss wait for others?
+                               .maxAddresses(100)            // Send right away once this many are pending
+                               .build())
+            // Set up the shared HTTP client. Connections are kept alive and reused between requests.
+            .transportSettings(TransportSettings.builder()
+                                   .connectTimeout(Duration.ofSeconds(5))  // Give up connecting after 5 seconds
+                                   .requestTimeout(Duration.ofSeconds(10)) // Give up waiting after 10 seconds
+                                   .compression(true)                      // Request gzip compressed responses
+                                   .build())
+            // To load test without spending quota, send the requests to a local stand-in instead:
+            // .transport(FakeProxyCheckServer.builder().latency(LatencyDistribution.logNormal(...)).build().transport())
+            // Keep the proxy/VPN/risk verdicts of up to a million addresses off-heap for 24 hours
+            .verdictStore(VerdictStore.allocate(1_000_000, Duration.ofHours(24)))
+            // Keep cached results on disk, so that they survive restarts (disabled by default)
+            .persistenceSettings(PersistenceSettings.builder()
+                                     .file(Path.of("proxyapi-cache.bin")) // Where should the results be stored?
+                                     .build())
+            // Refresh popular results in the background instead of letting them expire (disabled by default)
+            .refreshSettings(RefreshSettings.builder()
+                                 .refreshAhead(0.8)                 // Refresh after 80% of the cache duration
+                                 .staleGrace(Duration.ofMinutes(5)) // Serve expired results while revalidating
+                                 .build())
+            // Keep clean addresses longer and risky ones shorter than the cache duration (the first match wins)
+            .expirySettings(ExpirySettings.builder()
+                                .rule(ExpiryRule.seenWithin(Duration.ofDays(1), Duration.ofMinutes(10)))
+                                .rule(ExpiryRule.riskAtLeast(67, Duration.ofMinutes(15)))
+                                .rule(ExpiryRule.clean(33, Duration.ofHours(24)))
+                                .build())
+            // Bound the cache to about 256 MB and keep one-off addresses from pushing out regular ones
+            .evictionSettings(EvictionSettings.builder()
+                                  .maximumWeight(256L * 1024 * 1024) // Estimated bytes of all cached results
+                                  .build())
+            // Answer the neighbours of known hosting and VPN addresses without a request (disabled by default)
+            .prefixSettings(PrefixSettings.builder()
+                                .enabled(true)
+                                .ipv4PrefixLength(24)                          // Share with the /24 of an IPv4
+                                .ipv6PrefixLength(64)                          // Share with the /64 of an IPv6
+                                .ipv4TypePrefixLength(AddressType.VPN, 28)     // VPN exits are spread more sparsely
+                                .build())
+            // Answer reserved addresses and our own datacenter ranges locally (the reserved ranges by default)
+            .rangeIndex(CidrRangeIndex.builder()
+                            .reserved()
+                            .range("198.51.100.0/24", KnownRange.of("Datacenter", "Hosting", false, 66))
+                            .build())
+            // Pace the requests according to the plan, interactive lookups first (unlimited by default)
+            .rateLimitSettings(RateLimitSettings.builder()
+                                   .requestsPerSecond(10)             // Average requests per second
+                                   .queriesPerDay(10_000)             // Queries of the plan per day
+                                   .maxWait(Duration.ofSeconds(2))    // Give up waiting for a turn after 2 seconds
+                                   .build())
+            // Stop sending requests while proxycheck.io fails and answer from fallbacks instead (disabled by default)
+            .circuitBreakerSettings(CircuitBreakerSettings.builder()
+                                        .failureRateThreshold(0.5)                // Open at 50% failed requests
+                                        .slowCallThreshold(Duration.ofSeconds(3)) // Slower requests count as failed
+                                        .openDuration(Duration.ofSeconds(30))     // Probe again after 30 seconds
+                                        .fallbacks(List.of(Fallback.STALE, Fallback.UNKNOWN))
+                                        .build())
+            // Retry requests after timeouts and connection errors with a jittered backoff (disabled by default)
+            .retrySettings(RetrySettings.builder()
+                               .maxAttempts(3)                           // The first attempt and two retries
+                               .maxBackoff(Duration.ofSeconds(1))        // Wait at most a second between attempts
+                               .build())
+            // Send a slow request a second time after the 95th percentile of the recent latencies (disabled by default)
+            .hedgingSettings(HedgingSettings.builder()
+                                 .enabled(true)
+                                 .build())
+            // Adapt the number of requests in flight to the round-trip times of proxycheck.io (unlimited by default)
+            .concurrencySettings(ConcurrencySettings.builder()
+                                     .enabled(true)
+                                     .maxLimit(50)                           // Never more than 50 requests at once
+                                     .maxWait(Duration.ofSeconds(1))         // Give up waiting for a slot after 1 s
+                                     .build())
+            // Send no requests for 10 seconds after proxycheck.io denied one, e.g. for a used up plan (off by default)
+            .negativeCacheSettings(NegativeCacheSettings.builder()
+                                       .blockedTtl(Duration.ofSeconds(10))
+                                       .build())
+            // Spread requests across the keys of several plans, weighted by the queries each key has left today.
+            // A denied key is set aside until its quota resets. (Empty by default, then proxyKey is used)
+            .keyPoolSettings(KeyPoolSettings.builder()
+                                 .key("first_license_here", 10_000L)  // Key and its queries per day
+                                 .key("second_license_here", 1_000L)
+                                 .build())
+            // Record hit rates, latency histograms and failures, reported every minute and over JMX (off by default)
+            .metricsSettings(MetricsSettings.builder()
+                                 .listener(snapshot -> System.out.println(snapshot.getCacheStats().hitRate()))
+                                 .reportInterval(Duration.ofMinutes(1))
+                                 .jmxName("net.square.proxy:type=ProxyAPI,name=example")
+                                 .build())
             // Build class
             .build();
 
@@ -73,5 +188,65 @@ public class MainExample {
             System.out.println(successWrapper.getAddressWrapper().getProxy());
             System.out.println(successWrapper.getAddressWrapper().getOperatorWrapper().getAnonymity());
         });
+
+        // Thus, it is possible to access the information of an IP within a latency budget. If the budget runs out,
+        // the default value (here null) is returned and the result is cached for the next lookup once it arrives.
+        try {
+            SuccessWrapper successWrapper = proxyAPI.fetchAddressDataForIP(address, Duration.ofMillis(50), null);
+
+            System.out.println(successWrapper != null ? successWrapper.getAddressWrapper().getProxy() : "unknown");
+
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Thus, it is possible to access the information of an IP without exceptions, even while the API is blocked.
+        LookupResult lookupResult = proxyAPI.lookupAddress(address);
+        if (lookupResult instanceof LookupResult.Success success) {
+            System.out.println(success.data().getAddressWrapper().getProxy());
+        } else if (lookupResult instanceof LookupResult.Blocked blocked) {
+            System.out.println(blocked.exception().getMessage());
+        }
+
+        // Thus, it is possible to access the information of an IP with other settings than those of the client.
+        // The result shares the cache: it is served from a result fetched with settings covering the asked ones.
+        try {
+            SuccessWrapper successWrapper = proxyAPI.fetchAddressDataForIP(address, ProxyCheckSettings.builder()
+                .vpn(3)
+                .asn(true)
+                .risk(2)
+                .seen(true)
+                .days(2)
+                .build());
+
+            System.out.println(successWrapper.getAddressWrapper().getRisk());
+
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Thus, it is possible to access the information of several IPs with a single request.
+        try {
+            proxyAPI.fetchAddressDataForIPs(List.of(address, "8.8.8.8")).forEach(
+                (ipAddress, successWrapper) -> System.out.println(
+                    ipAddress + ": " + successWrapper.getAddressWrapper().getProxy()));
+
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Thus, it is possible to access only the verdict of an IP, served off-heap once it has been fetched.
+        try {
+            System.out.println(proxyAPI.fetchVerdictForIP(address).isProxy());
+
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Thus, it is possible to read the metrics at any time, e.g. the 99th percentile of the request latency.
+        System.out.println(proxyAPI.getMetrics().getNetworkLatency().percentile(0.99).toMillis());
+
+        // Once the client is no longer needed, close it to release its threads, its file and its JMX name.
+        proxyAPI.close();
     }
 }
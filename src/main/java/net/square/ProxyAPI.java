@@ -1,134 +1,2408 @@
 package net.square;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import net.square.batch.AddressBatchCoalescer;
+import net.square.cache.AddressKey;
+import net.square.cache.CachedCompactData;
+import net.square.cache.CachedResult;
+import net.square.cache.FrequencySketch;
+import net.square.cache.PersistentCache;
+import net.square.cache.PrefixCache;
+import net.square.cache.ProfileKey;
+import net.square.cache.ResultWeigher;
+import net.square.cache.Verdict;
+import net.square.cache.VerdictStore;
+import net.square.exceptions.ProxyException;
 import net.square.exceptions.impl.AddressDataFetchingException;
+import net.square.exceptions.impl.CircuitOpenException;
+import net.square.exceptions.impl.ConcurrencyLimitExceededException;
 import net.square.exceptions.impl.ProxyCheckBlockingException;
+import net.square.exceptions.impl.RateLimitExceededException;
+import net.square.limit.CircuitBreaker;
+import net.square.limit.ConcurrencyLimiter;
+import net.square.limit.Fallback;
+import net.square.limit.FallbackResults;
+import net.square.limit.KeyPool;
+import net.square.limit.LatencyTracker;
+import net.square.limit.Priority;
+import net.square.limit.RequestScheduler;
+import net.square.metrics.MetricsSnapshot;
+import net.square.metrics.ProxyMetrics;
+import net.square.range.CidrRangeIndex;
+import net.square.range.KnownRange;
+import net.square.range.RangeIndex;
+import net.square.result.LookupResult;
+import net.square.settings.BatchSettings;
+import net.square.settings.CircuitBreakerSettings;
+import net.square.settings.ConcurrencySettings;
+import net.square.settings.EvictionSettings;
+import net.square.settings.ExpirySettings;
+import net.square.settings.HedgingSettings;
+import net.square.settings.KeyPoolSettings;
+import net.square.settings.MetricsSettings;
+import net.square.settings.NegativeCacheSettings;
+import net.square.settings.PersistenceSettings;
+import net.square.settings.PrefixSettings;
 import net.square.settings.ProxyCheckSettings;
+import net.square.settings.RateLimitSettings;
+import net.square.settings.RefreshSettings;
+import net.square.settings.RetrySettings;
+import net.square.settings.TransportSettings;
+import net.square.transport.HttpClientTransport;
+import net.square.transport.ProxyCheckTransport;
+import net.square.wrapper.compact.CompactAddressData;
+import net.square.wrapper.impl.StreamingResponseDecoder;
 import net.square.wrapper.impl.SuccessWrapper;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 @SuppressWarnings({"unused", "UnusedAssignment"})
-@Builder
-public class ProxyAPI {
+public class ProxyAPI implements AutoCloseable {
 
     /**
      * The URL for the API endpoint.
      */
     private static final String API_URL = "https://proxycheck.io/v2/%s?key=%s";
 
+    /**
+     * The URL for the multi-address API endpoint. The addresses are sent in the body of a POST request.
+     */
+    private static final String BATCH_API_URL = "https://proxycheck.io/v2/?key=%s";
+
+    /**
+     * The refusal of requests while the circuit is open. It carries no stack trace and is shared, as it is raised for
+     * every lookup of an outage.
+     */
+    private static final CircuitOpenException CIRCUIT_OPEN =
+        CircuitOpenException.stackless("The circuit to proxycheck.io is open");
+
+    /**
+     * The result of lookups refused by the open circuit when no fallback applies.
+     */
+    private static final LookupResult CIRCUIT_OPEN_RESULT = new LookupResult.Failed(CIRCUIT_OPEN);
+
     /**
      * The license key used for accessing the proxy check API.
      */
-    @Getter
-    private String proxyKey = "license_key";
+    @Getter
+    private final String proxyKey;
+
+    /**
+     * Represents the settings for proxy checking.
+     */
+    private final ProxyCheckSettings proxyCheckSettings;
+
+    /**
+     * The duration for which a cached entry will remain valid, unless an expiry rule sets another one.
+     */
+    @Getter
+    private final Duration cacheDuration;
+
+    /**
+     * Represents the settings for merging concurrent single address misses into batched requests.
+     */
+    @Getter
+    private final BatchSettings batchSettings;
+
+    /**
+     * Represents the settings of the HTTP client used to reach proxycheck.io.
+     */
+    @Getter
+    private final TransportSettings transportSettings;
+
+    /**
+     * The transport sending all requests. Unless another one is configured, it is a shared HTTP client keeping
+     * connections to proxycheck.io alive between requests.
+     */
+    private final ProxyCheckTransport transport;
+
+    /**
+     * The executor running the parsing of asynchronous responses, the batched requests of the coalescer and the
+     * internal tasks of the HTTP client.
+     */
+    private final Executor executor;
+
+    /**
+     * The pool of daemon threads created when no executor was configured, shut down when the client is closed, or
+     * null if the executor was configured.
+     */
+    private final ExecutorService defaultExecutor;
+
+    /**
+     * The asynchronous requests currently in flight, keyed by canonical address. Concurrent callers for the same address
+     * share the future of the request in flight instead of sending another one.
+     */
+    private final Map<AddressKey, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The coalescer merging concurrent single address misses, or null if coalescing is disabled.
+     */
+    private final AddressBatchCoalescer batchCoalescer;
+
+    /**
+     * The cacheCat variable is an instance of the Guava LoadingCache class. This cache is used to store IP addresses
+     * and their corresponding JsonObject data retrieved from a website
+     * .
+     * The cacheCat instance is built using the CacheBuilder class, which allows configuring various cache properties
+     * and behaviors.
+     * The cache is configured to expire entries after a certain duration specified by the cacheDuration variable.
+     * When an entry expires, it will be removed from the cache and must be fetched again from the website when
+     * accessed again.
+     * The cacheCat instance uses a CacheLoader implementation to fetch the data for a given IP address by calling
+     * the fetchData method, and bulk lookups with a single multi-address request through the fetchBatchData method.
+     * The result is then stored in the cache. If the fetchData method returns null, an exception will be thrown.
+     * It is recommended to install a separate cache alongside this cache for better performance and flexibility.
+     * The cache is keyed by the canonical binary form of the addresses, so different spellings of the same address
+     * share one entry and one request.
+     * Each entry carries the time its result was fetched, so results restored from disk expire on time as well.
+     * If the cache is bounded by weight, cacheCat is the admission window taking every newly fetched result,
+     * and frequently accessed results move on to the mainCache.
+     */
+    private final LoadingCache<AddressKey, CachedResult> cacheCat;
+
+    /**
+     * Represents the settings for bounding the memory of the lookup cache.
+     */
+    @Getter
+    private final EvictionSettings evictionSettings;
+
+    /**
+     * The main area of a cache bounded by weight, holding the results admitted from cacheCat, or null if the cache
+     * is unbounded.
+     */
+    private final Cache<AddressKey, CachedResult> mainCache;
+
+    /**
+     * The sketch of recent access frequencies deciding which results are admitted to the mainCache, or null if the
+     * cache is unbounded.
+     */
+    private final FrequencySketch frequencySketch;
+
+    /**
+     * Whether results retain the raw JSON object of their response.
+     * If disabled, responses are decoded in a single pass without building a JsonObject tree,
+     * and {@code getRawObject()} of the returned wrappers is null.
+     */
+    @Getter
+    private final boolean retainRawObject;
+
+    /**
+     * Whether the address data of results is decoded on first access instead of when the response arrives.
+     * Applies to the streaming decoder, that is when raw objects are not retained.
+     */
+    @Getter
+    private final boolean lazyDecoding;
+
+    /**
+     * The cache of compact results, filled by {@link #fetchCompactDataForIP(String)}.
+     * It is kept apart from cacheCat so that callers using only compact results do not retain full wrappers.
+     * If the cache is bounded by weight, it is the admission window of the compact results like cacheCat.
+     */
+    private final LoadingCache<AddressKey, CachedCompactData> compactCache;
+
+    /**
+     * The main area of the compact results, holding those admitted from the compactCache, or null if the cache is
+     * unbounded.
+     */
+    private final Cache<AddressKey, CachedCompactData> compactMainCache;
+
+    /**
+     * The cache of results fetched with other settings than those of the client, filled by
+     * {@link #fetchAddressDataForIP(String, ProxyCheckSettings)}. It is keyed by address and settings, so that a
+     * result only answers lookups whose settings it covers. Lookups covered by the client's settings are answered
+     * from cacheCat instead.
+     */
+    private final Cache<ProfileKey, CachedResult> profileCache;
+
+    /**
+     * The settings of the results in the profileCache, probed for a result covering the settings of a lookup.
+     */
+    private final Set<ProxyCheckSettings> profiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The asynchronous requests of the profileCache currently in flight.
+     */
+    private final Map<ProfileKey, CompletableFuture<SuccessWrapper>> profileInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The off-heap store of the verdicts of all fetched addresses, or null if no store was configured.
+     * It keeps the few bits a connection gate needs for far more addresses than the caches can hold.
+     */
+    @Getter
+    private final VerdictStore verdictStore;
+
+    /**
+     * Represents the settings of the on-disk cache tier.
+     */
+    @Getter
+    private final PersistenceSettings persistenceSettings;
+
+    /**
+     * The on-disk cache tier behind cacheCat, or null if it is disabled.
+     */
+    private final PersistentCache persistentCache;
+
+    /**
+     * Represents the settings for refreshing cached results in the background.
+     */
+    @Getter
+    private final RefreshSettings refreshSettings;
+
+    /**
+     * Represents the rules deciding how long a result stays cached. Results matching no rule stay cached for the
+     * cache duration.
+     */
+    @Getter
+    private final ExpirySettings expirySettings;
+
+    /**
+     * Represents the settings for sharing results between the addresses of a network prefix.
+     */
+    @Getter
+    private final PrefixSettings prefixSettings;
+
+    /**
+     * The results of hosting and VPN ranges shared with the other addresses of their prefix, or null if prefix
+     * sharing is disabled. It is consulted before a missing address is fetched.
+     */
+    private final PrefixCache prefixCache;
+
+    /**
+     * The local index of known address ranges, consulted before the caches. Addresses within a known range, such as
+     * the reserved private networks, are answered without a request.
+     */
+    @Getter
+    private final RangeIndex rangeIndex;
+
+    /**
+     * Represents the settings for pacing the requests according to the limits of the plan.
+     */
+    @Getter
+    private final RateLimitSettings rateLimitSettings;
+
+    /**
+     * The scheduler handing out the permits to send requests, or null if requests are not limited.
+     */
+    private final RequestScheduler requestScheduler;
+
+    /**
+     * Represents the settings of the circuit breaker around the requests.
+     */
+    @Getter
+    private final CircuitBreakerSettings circuitBreakerSettings;
+
+    /**
+     * The circuit breaker refusing requests while proxycheck.io fails, or null if it is disabled.
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Represents the settings for retrying requests after transient I/O errors.
+     */
+    @Getter
+    private final RetrySettings retrySettings;
+
+    /**
+     * Represents the settings for hedging single address requests.
+     */
+    @Getter
+    private final HedgingSettings hedgingSettings;
+
+    /**
+     * The latencies of recent single address requests, or null if requests are not hedged.
+     */
+    private final LatencyTracker latencyTracker;
+
+    /**
+     * Represents the settings of the adaptive limit on the requests in flight.
+     */
+    @Getter
+    private final ConcurrencySettings concurrencySettings;
+
+    /**
+     * The limiter bounding the requests in flight, or null if they are not limited.
+     */
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Represents the settings for remembering blocking responses.
+     */
+    @Getter
+    private final NegativeCacheSettings negativeCacheSettings;
+
+    /**
+     * The last remembered blocking response, or null if none was received.
+     */
+    private volatile BlockedResponse blockedResponse;
+
+    /**
+     * Represents the license keys requests are spread across.
+     */
+    @Getter
+    private final KeyPoolSettings keyPoolSettings;
+
+    /**
+     * The pool picking the license key of each request, or null if all requests use the proxy key.
+     */
+    private final KeyPool keyPool;
+
+    /**
+     * Represents the metrics of the client.
+     */
+    @Getter
+    private final MetricsSettings metricsSettings;
+
+    /**
+     * The recorder of the metrics measured on requests, or null if metrics are disabled.
+     */
+    private final ProxyMetrics metrics;
+
+    /**
+     * Constructs a ProxyAPI. Use {@link #builder()} to create instances; every omitted value falls back to its default.
+     *
+     * @param proxyKey           The license key used for accessing the proxy check API.
+     * @param proxyCheckSettings The settings for proxy checking.
+     * @param cacheDuration      The duration for which a cached entry will remain valid.
+     * @param batchSettings      The settings for merging concurrent single address misses into batched requests.
+     * @param transportSettings  The settings of the HTTP client used to reach proxycheck.io.
+     * @param executor           The executor for asynchronous work. Defaults to a dedicated pool of daemon threads,
+     *                           which is shut down when the client is closed.
+     * @param retainRawObject    Whether results retain the raw JSON object of their response.
+     * @param lazyDecoding       Whether the address data of results is decoded on first access.
+     * @param verdictStore       The off-heap store to record the verdicts of fetched addresses in, may be null.
+     * @param persistenceSettings The settings of the on-disk cache tier.
+     * @param refreshSettings    The settings for refreshing cached results in the background.
+     * @param expirySettings     The rules deciding how long a result stays cached.
+     * @param evictionSettings   The settings for bounding the memory of the lookup cache.
+     * @param prefixSettings     The settings for sharing results between the addresses of a network prefix.
+     * @param rangeIndex         The local index of known address ranges. Defaults to the reserved ranges.
+     * @param rateLimitSettings  The settings for pacing the requests according to the limits of the plan.
+     * @param circuitBreakerSettings The settings of the circuit breaker around the requests.
+     * @param retrySettings      The settings for retrying requests after transient I/O errors.
+     * @param hedgingSettings    The settings for hedging single address requests.
+     * @param concurrencySettings The settings of the adaptive limit on the requests in flight.
+     * @param negativeCacheSettings The settings for remembering blocking responses.
+     * @param keyPoolSettings    The license keys to spread requests across instead of the proxy key.
+     * @param transport          The transport sending the requests. Defaults to an HTTP client configured by the
+     *                           transport settings.
+     * @param metricsSettings    The settings of the metrics of the client.
+     */
+    @Builder
+    private ProxyAPI(String proxyKey, ProxyCheckSettings proxyCheckSettings, Duration cacheDuration,
+                     BatchSettings batchSettings, TransportSettings transportSettings, Executor executor,
+                     boolean retainRawObject, boolean lazyDecoding, VerdictStore verdictStore,
+                     PersistenceSettings persistenceSettings, RefreshSettings refreshSettings,
+                     ExpirySettings expirySettings, EvictionSettings evictionSettings,
+                     PrefixSettings prefixSettings, RangeIndex rangeIndex,
+                     RateLimitSettings rateLimitSettings, CircuitBreakerSettings circuitBreakerSettings,
+                     RetrySettings retrySettings, HedgingSettings hedgingSettings,
+                     ConcurrencySettings concurrencySettings, NegativeCacheSettings negativeCacheSettings,
+                     KeyPoolSettings keyPoolSettings, ProxyCheckTransport transport,
+                     MetricsSettings metricsSettings) {
+        this.proxyKey = proxyKey != null ? proxyKey : "license_key";
+        this.proxyCheckSettings = proxyCheckSettings != null ? proxyCheckSettings : ProxyCheckSettings.builder().build();
+        this.cacheDuration = cacheDuration != null ? cacheDuration : Duration.ofMinutes(60);
+        this.batchSettings = batchSettings != null ? batchSettings : BatchSettings.builder().build();
+        this.transportSettings = transportSettings != null ? transportSettings : TransportSettings.builder().build();
+        this.retainRawObject = retainRawObject;
+        this.lazyDecoding = lazyDecoding;
+        this.verdictStore = verdictStore;
+        this.persistenceSettings = persistenceSettings != null
+            ? persistenceSettings
+            : PersistenceSettings.builder().build();
+        this.refreshSettings = refreshSettings != null ? refreshSettings : RefreshSettings.builder().build();
+        this.expirySettings = expirySettings != null ? expirySettings : ExpirySettings.builder().build();
+        this.evictionSettings = evictionSettings != null ? evictionSettings : EvictionSettings.builder().build();
+        this.prefixSettings = prefixSettings != null ? prefixSettings : PrefixSettings.builder().build();
+        this.rangeIndex = rangeIndex != null ? rangeIndex : CidrRangeIndex.reserved();
+        this.rateLimitSettings = rateLimitSettings != null ? rateLimitSettings : RateLimitSettings.builder().build();
+        this.circuitBreakerSettings = circuitBreakerSettings != null
+            ? circuitBreakerSettings
+            : CircuitBreakerSettings.builder().build();
+        this.retrySettings = retrySettings != null ? retrySettings : RetrySettings.builder().build();
+        this.hedgingSettings = hedgingSettings != null ? hedgingSettings : HedgingSettings.builder().build();
+        this.concurrencySettings = concurrencySettings != null
+            ? concurrencySettings
+            : ConcurrencySettings.builder().build();
+        this.negativeCacheSettings = negativeCacheSettings != null
+            ? negativeCacheSettings
+            : NegativeCacheSettings.builder().build();
+        this.keyPoolSettings = keyPoolSettings != null ? keyPoolSettings : KeyPoolSettings.builder().build();
+        this.metricsSettings = metricsSettings != null ? metricsSettings : MetricsSettings.builder().build();
+
+        double refreshAhead = this.refreshSettings.getRefreshAhead();
+        Validation.checkArgument(refreshAhead >= 0 && refreshAhead < 1,
+                                 "Field refreshAhead must be at least 0 and less than 1");
+        double windowFraction = this.evictionSettings.getWindowFraction();
+        Validation.checkArgument(windowFraction > 0 && windowFraction < 1,
+                                 "Field windowFraction must be greater than 0 and less than 1");
+        checkPrefixLength(this.prefixSettings.getIpv4PrefixLength(), 32);
+        checkPrefixLength(this.prefixSettings.getIpv6PrefixLength(), 128);
+        this.prefixSettings.getIpv4TypePrefixLengths().values().forEach(length -> checkPrefixLength(length, 32));
+        this.prefixSettings.getIpv6TypePrefixLengths().values().forEach(length -> checkPrefixLength(length, 128));
+        double backgroundQuotaShare = this.rateLimitSettings.getBackgroundQuotaShare();
+        Validation.checkArgument(backgroundQuotaShare >= 0 && backgroundQuotaShare <= 1,
+                                 "Field backgroundQuotaShare must be between 0 and 1");
+        Validation.checkArgument(this.circuitBreakerSettings.getFailureRateThreshold() <= 1,
+                                 "Field failureRateThreshold must be at most 1");
+        Validation.checkArgument(this.retrySettings.getMaxAttempts() >= 1, "Field maxAttempts must be at least 1");
+        double percentile = this.hedgingSettings.getPercentile();
+        Validation.checkArgument(percentile > 0 && percentile <= 1,
+                                 "Field percentile must be greater than 0 and at most 1");
+        double backoffRatio = this.concurrencySettings.getBackoffRatio();
+        Validation.checkArgument(backoffRatio > 0 && backoffRatio <= 1,
+                                 "Field backoffRatio must be greater than 0 and at most 1");
+        this.keyPoolSettings.getKeys().forEach((key, queriesPerDay) -> Validation.checkArgument(
+            queriesPerDay != null && queriesPerDay > 0, "The daily queries of key %s must be positive".formatted(key)));
+        Validation.checkArgument(this.metricsSettings.getReportInterval().compareTo(Duration.ZERO) > 0,
+                                 "Field reportInterval must be positive");
+        Validation.checkArgument(this.persistenceSettings.getMaxEntries() > 0, "Field maxEntries must be positive");
+
+        this.defaultExecutor = executor != null ? null : Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("proxyapi-worker-%d").build());
+        this.executor = executor != null ? executor : this.defaultExecutor;
+
+        this.transport = transport != null
+            ? transport
+            : HttpClientTransport.of(this.transportSettings, this.executor, null);
+
+        this.batchCoalescer = this.batchSettings.isEnabled()
+            ? new AddressBatchCoalescer(this.batchSettings, this.executor, this::fetchBatchData)
+            : null;
+
+        if (this.persistenceSettings.isEnabled()) {
+            StringBuilder settings = new StringBuilder();
+            appendQueryParams(settings, this.proxyCheckSettings);
+            this.persistentCache = new PersistentCache(this.persistenceSettings.getFile(), settings.toString(),
+                                                       this.persistenceSettings.getMaxEntries(), retainRawObject);
+        } else {
+            this.persistentCache = null;
+        }
+
+        this.prefixCache = this.prefixSettings.isEnabled() ? new PrefixCache(this.prefixSettings) : null;
+        this.requestScheduler = this.rateLimitSettings.isEnabled()
+            ? new RequestScheduler(this.rateLimitSettings)
+            : null;
+        this.circuitBreaker = this.circuitBreakerSettings.isEnabled()
+            ? new CircuitBreaker(this.circuitBreakerSettings)
+            : null;
+        this.latencyTracker = this.hedgingSettings.isEnabled()
+            ? new LatencyTracker(this.hedgingSettings.getSamples())
+            : null;
+        this.concurrencyLimiter = this.concurrencySettings.isEnabled()
+            ? new ConcurrencyLimiter(this.concurrencySettings)
+            : null;
+        this.keyPool = this.keyPoolSettings.isEnabled() ? new KeyPool(this.keyPoolSettings) : null;
+        this.metrics = this.metricsSettings.isEnabled() ? new ProxyMetrics(this.metricsSettings) : null;
+
+        // Entries are kept as long as the longest time to live allows; shorter lifetimes are checked per entry.
+        // Expired results are kept for the grace window, so that they can be served while they are revalidated
+        Duration retention = this.expirySettings.maxTtl(this.cacheDuration).plus(this.refreshSettings.getStaleGrace());
+
+        CacheBuilder<Object, Object> windowBuilder = newCacheBuilder().expireAfterWrite(retention);
+        CacheBuilder<Object, Object> compactWindowBuilder = newCacheBuilder().expireAfterWrite(retention);
+        if (this.evictionSettings.isEnabled()) {
+            long maximumWeight = this.evictionSettings.getMaximumWeight();
+            long windowWeight = Math.max(ResultWeigher.TREE_BYTES, (long) (maximumWeight * windowFraction));
+
+            windowBuilder.maximumWeight(windowWeight).weigher(new ResultWeigher());
+            this.mainCache = newCacheBuilder()
+                .expireAfterWrite(retention)
+                .maximumWeight(Math.max(ResultWeigher.TREE_BYTES, maximumWeight - windowWeight))
+                .weigher(new ResultWeigher())
+                .build();
+            this.frequencySketch = new FrequencySketch(
+                (int) Math.min(Integer.MAX_VALUE, maximumWeight / ResultWeigher.STREAMING_BYTES));
+
+            // Results of other settings are bounded like the admission window
+            ResultWeigher resultWeigher = new ResultWeigher();
+            this.profileCache = newCacheBuilder()
+                .expireAfterWrite(retention)
+                .maximumWeight(windowWeight)
+                .<ProfileKey, CachedResult>weigher((key, cached) -> resultWeigher.weigh(key.address(), cached))
+                .build();
+
+            // Compact results are bounded and admitted like full ones, with the same budget
+            compactWindowBuilder.maximumWeight(windowWeight)
+                .<AddressKey, CachedCompactData>weigher((key, cached) -> resultWeigher.weigh(cached));
+            this.compactMainCache = newCacheBuilder()
+                .expireAfterWrite(retention)
+                .maximumWeight(Math.max(ResultWeigher.TREE_BYTES, maximumWeight - windowWeight))
+                .<AddressKey, CachedCompactData>weigher((key, cached) -> resultWeigher.weigh(cached))
+                .build();
+        } else {
+            this.compactMainCache = null;
+            this.mainCache = null;
+            this.frequencySketch = null;
+            this.profileCache = newCacheBuilder().expireAfterWrite(retention).build();
+        }
+
+        this.cacheCat = windowBuilder
+            .build(new CacheLoader<>() {
+                @Override
+                public CachedResult load(@NonNull AddressKey addressKey) {
+                    return loadResult(addressKey, Priority.INTERACTIVE);
+                }
+
+                @Override
+                public Map<AddressKey, CachedResult> loadAll(@NonNull Iterable<? extends AddressKey> addressKeys) {
+                    Map<AddressKey, CachedResult> results = new HashMap<>();
+
+                    List<AddressKey> missing = new ArrayList<>();
+                    for (AddressKey addressKey : addressKeys) {
+                        CachedResult restored = readPersisted(addressKey);
+                        if (restored == null) {
+                            restored = readShared(addressKey);
+                        }
+                        if (restored != null) {
+                            results.put(addressKey, restored);
+                        } else {
+                            missing.add(addressKey);
+                        }
+                    }
+
+                    for (List<AddressKey> chunk : Lists.partition(missing, BatchSettings.MAX_ADDRESSES_PER_REQUEST)) {
+                        Map<String, AddressKey> keysByAddress = new HashMap<>();
+                        chunk.forEach(addressKey -> keysByAddress.put(addressKey.toString(), addressKey));
+
+                        fetchBatchData(List.copyOf(keysByAddress.keySet()), Priority.INTERACTIVE)
+                            .forEach((ipAddress, successWrapper) -> {
+                                AddressKey addressKey = keysByAddress.get(ipAddress);
+                                results.put(addressKey, store(addressKey, successWrapper));
+                            });
+                    }
+                    return results;
+                }
+            });
+
+        this.compactCache = compactWindowBuilder
+            .build(CacheLoader.from(addressKey -> loadCompact(addressKey, Priority.INTERACTIVE)));
+
+        if (metrics != null) {
+            metrics.start(this::getMetrics);
+        }
+    }
+
+    /**
+     * Fetches address data for the given IP address.
+     * Addresses within a known range of the {@link RangeIndex} are answered locally, without a request.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @return The {@link SuccessWrapper} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress) throws ExecutionException {
+        return fetchAddressDataForIP(ipAddress, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches address data for the given IP address with the given priority. If requests are rate limited,
+     * a request of a higher priority is sent before all waiting requests of a lower priority.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request, should one be necessary.
+     * @return The {@link SuccessWrapper} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress or priority argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress, @NonNull Priority priority)
+        throws ExecutionException {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return knownRange.toSuccessWrapper(addressKey.toString());
+        }
+        return lookup(addressKey, priority);
+    }
+
+    /**
+     * Fetches the compact address data for the given IP address.
+     * Compact results keep the most used fields in primitive form and are cached apart from the
+     * {@link SuccessWrapper} results, taking a fraction of their memory.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @return The {@link CompactAddressData} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public CompactAddressData fetchCompactDataForIP(@NonNull String ipAddress) throws ExecutionException {
+        return fetchCompactDataForIP(ipAddress, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches the compact address data for the given IP address with the given priority.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request, should one be necessary.
+     * @return The {@link CompactAddressData} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress or priority argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see #fetchCompactDataForIP(String)
+     */
+    public CompactAddressData fetchCompactDataForIP(@NonNull String ipAddress, @NonNull Priority priority)
+        throws ExecutionException {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return CompactAddressData.from(knownRange.toSuccessWrapper(addressKey.toString()));
+        }
+
+        recordAccess(addressKey);
+        try {
+            return getOrLoadCompact(addressKey, priority).getData();
+        } catch (UncheckedExecutionException e) {
+            CircuitOpenException circuitOpen = circuitOpen(e);
+            if (circuitOpen == null) {
+                throw e;
+            }
+            return CompactAddressData.from(fallbackFor(addressKey, circuitOpen));
+        }
+    }
+
+    /**
+     * Fetches the verdict for the given IP address: whether it is a proxy, whether it is a VPN and the bucket of
+     * its risk score. The verdict is served from the verdict store if one is configured and holds the address,
+     * otherwise the address data is fetched through the cache and its verdict recorded.
+     *
+     * @param ipAddress The IP address for which to fetch the verdict.
+     * @return The {@link Verdict} of the address.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public Verdict fetchVerdictForIP(@NonNull String ipAddress) throws ExecutionException {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return knownRange.getVerdict();
+        }
+
+        if (verdictStore != null) {
+            Verdict verdict = verdictStore.get(addressKey);
+            if (verdict != null) {
+                return verdict;
+            }
+        }
+
+        // The verdict store may have lost the address to a collision while the cache still holds it
+        SuccessWrapper successWrapper = lookup(addressKey, Priority.INTERACTIVE);
+        Verdict verdict = Verdict.of(successWrapper);
+        if (verdictStore != null && !FallbackResults.isFallback(successWrapper)) {
+            verdictStore.put(addressKey, verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * Fetches address data for the given IP addresses.
+     * Addresses within a known range of the {@link RangeIndex} are answered locally, addresses that are already
+     * cached are served from the cache, all others are fetched with as few multi-address requests as possible
+     * and then stored in the cache.
+     *
+     * @param ipAddresses The IP addresses for which to fetch the data.
+     * @return A map of every requested IP address to the {@link SuccessWrapper} object containing its address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddresses argument or one of its elements is null.
+     * @throws IllegalArgumentException If one of the elements is not an IP address.
+     */
+    public Map<String, SuccessWrapper> fetchAddressDataForIPs(@NonNull Collection<String> ipAddresses)
+        throws ExecutionException {
+        Map<String, SuccessWrapper> results = new HashMap<>();
+        Map<String, AddressKey> addressKeys = new HashMap<>();
+        for (String ipAddress : ipAddresses) {
+            Validation.checkNotNull(ipAddress, "Field ipAddresses cannot contain null");
+            AddressKey addressKey = AddressKey.of(ipAddress);
+
+            KnownRange knownRange = rangeIndex.find(addressKey);
+            if (knownRange != null) {
+                results.put(ipAddress, knownRange.toSuccessWrapper(addressKey.toString()));
+            } else {
+                addressKeys.put(ipAddress, addressKey);
+            }
+        }
+
+        Map<AddressKey, CachedResult> cached;
+        try {
+            cached = getAllOrLoad(addressKeys.values());
+
+            // Reload the results that have expired and may not be served while they are revalidated
+            long now = System.currentTimeMillis();
+            List<AddressKey> expired = new ArrayList<>();
+            cached.forEach((addressKey, cachedResult) -> {
+                if (!revalidate(addressKey, cachedResult, now)) {
+                    expired.add(addressKey);
+                }
+            });
+            if (!expired.isEmpty()) {
+                cached.putAll(getAllOrLoad(expired));
+            }
+        } catch (UncheckedExecutionException e) {
+            CircuitOpenException circuitOpen = circuitOpen(e);
+            if (circuitOpen == null) {
+                throw e;
+            }
+            for (Map.Entry<String, AddressKey> entry : addressKeys.entrySet()) {
+                results.put(entry.getKey(), fallbackFor(entry.getValue(), circuitOpen));
+            }
+            return results;
+        }
+
+        addressKeys.forEach((ipAddress, addressKey) -> results.put(ipAddress, cached.get(addressKey).getResult()));
+        return results;
+    }
+
+    /**
+     * Fetches address data for the given IP address asynchronously.
+     * The request is sent without blocking a thread while waiting for the response; only the parsing of the
+     * response runs on the configured executor. If the fetching fails, the returned future completes exceptionally
+     * with the {@link net.square.exceptions.ProxyException} describing the failure.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address data.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress) {
+        return fetchAddressDataForIPAsync(ipAddress, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches address data for the given IP address asynchronously with the given priority. If requests are rate
+     * limited, a request of a higher priority is sent before all waiting requests of a lower priority.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request, should one be necessary.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address
+     *         data.
+     * @throws NullPointerException If the ipAddress or priority argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress,
+                                                                        @NonNull Priority priority) {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return CompletableFuture.completedFuture(knownRange.toSuccessWrapper(addressKey.toString()));
+        }
+
+        recordAccess(addressKey);
+        CachedResult cached = getIfPresent(addressKey);
+        if (cached != null && revalidate(addressKey, cached, System.currentTimeMillis())) {
+            admit(addressKey, cached);
+            return CompletableFuture.completedFuture(cached.getResult());
+        }
+
+        CachedResult restored = readPersisted(addressKey);
+        if (restored != null) {
+            put(addressKey, restored);
+            admit(addressKey, restored);
+            return CompletableFuture.completedFuture(restored.getResult());
+        }
+
+        CachedResult shared = readShared(addressKey);
+        if (shared != null) {
+            put(addressKey, shared);
+            admit(addressKey, shared);
+            return CompletableFuture.completedFuture(shared.getResult());
+        }
+
+        return withFallback(addressKey, fetchAsync(addressKey, priority));
+    }
+
+    /**
+     * Fetches address data for the given IP address with other settings than those of the client, such as a cheap
+     * profile for a connection gate next to a full one for a fraud review. A result is cached together with its
+     * settings, and answers every later lookup whose settings it covers: lookups covered by the client's settings
+     * are answered from the regular cache, and a result fetched with settings covering the client's ones is stored
+     * there as well. So a single request serves all lookups of an address that a richer profile covers.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param profile   The settings of the lookup.
+     * @return The {@link SuccessWrapper} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress or profile argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see ProxyCheckSettings#covers(ProxyCheckSettings)
+     */
+    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress, @NonNull ProxyCheckSettings profile)
+        throws ExecutionException {
+        return fetchAddressDataForIP(ipAddress, profile, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches address data for the given IP address with other settings than those of the client and with the
+     * given priority.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param profile   The settings of the lookup.
+     * @param priority  The priority of the request, should one be necessary.
+     * @return The {@link SuccessWrapper} object containing the fetched address data.
+     * @throws ExecutionException If an error occurs during the execution of the method.
+     * @throws NullPointerException If the ipAddress, profile or priority argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see #fetchAddressDataForIP(String, ProxyCheckSettings)
+     */
+    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress, @NonNull ProxyCheckSettings profile,
+                                                @NonNull Priority priority) throws ExecutionException {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(profile, "Field profile cannot be null");
+        if (proxyCheckSettings.covers(profile)) {
+            return fetchAddressDataForIP(ipAddress, priority);
+        }
+
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return knownRange.toSuccessWrapper(addressKey.toString());
+        }
+
+        CachedResult cached = getProfiled(addressKey, profile);
+        if (cached != null) {
+            return cached.getResult();
+        }
+        try {
+            ProfileKey profileKey = new ProfileKey(addressKey, profile);
+            return profileCache.get(profileKey, () -> loadProfiled(profileKey, priority)).getResult();
+        } catch (UncheckedExecutionException e) {
+            CircuitOpenException circuitOpen = circuitOpen(e);
+            if (circuitOpen == null) {
+                throw e;
+            }
+            return fallbackFor(addressKey, circuitOpen);
+        }
+    }
+
+    /**
+     * Fetches address data for the given IP address asynchronously with other settings than those of the client.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param profile   The settings of the lookup.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address
+     *         data.
+     * @throws NullPointerException If the ipAddress or profile argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see #fetchAddressDataForIP(String, ProxyCheckSettings)
+     */
+    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress,
+                                                                        @NonNull ProxyCheckSettings profile) {
+        return fetchAddressDataForIPAsync(ipAddress, profile, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches address data for the given IP address asynchronously with other settings than those of the client
+     * and with the given priority.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param profile   The settings of the lookup.
+     * @param priority  The priority of the request, should one be necessary.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address
+     *         data.
+     * @throws NullPointerException If the ipAddress, profile or priority argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see #fetchAddressDataForIP(String, ProxyCheckSettings)
+     */
+    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress,
+                                                                        @NonNull ProxyCheckSettings profile,
+                                                                        @NonNull Priority priority) {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(profile, "Field profile cannot be null");
+        if (proxyCheckSettings.covers(profile)) {
+            return fetchAddressDataForIPAsync(ipAddress, priority);
+        }
+
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return CompletableFuture.completedFuture(knownRange.toSuccessWrapper(addressKey.toString()));
+        }
+
+        CachedResult cached = getProfiled(addressKey, profile);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.getResult());
+        }
+        return withFallback(addressKey, fetchProfiledAsync(new ProfileKey(addressKey, profile), priority));
+    }
+
+    /**
+     * Answers a failed asynchronous lookup with a fallback, if the circuit breaker refused its request.
+     *
+     * @param addressKey The address.
+     * @param fetched    The future of the lookup.
+     * @return A CompletableFuture that resolves to the fetched address data or the fallback result.
+     */
+    private CompletableFuture<SuccessWrapper> withFallback(@NonNull AddressKey addressKey,
+                                                           @NonNull CompletableFuture<SuccessWrapper> fetched) {
+        if (circuitBreaker == null) {
+            return fetched;
+        }
+
+        // Answer with a fallback if the circuit breaker refused the request
+        CompletableFuture<SuccessWrapper> future = new CompletableFuture<>();
+        fetched.whenComplete((successWrapper, throwable) -> {
+            CircuitOpenException circuitOpen = throwable != null ? circuitOpen(throwable) : null;
+            if (circuitOpen == null) {
+                if (throwable == null) {
+                    future.complete(successWrapper);
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+                return;
+            }
+            try {
+                future.complete(fallbackFor(addressKey, circuitOpen));
+            } catch (CircuitOpenException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fetches address data for the given IP address within a latency budget. If the data is not available when the
+     * budget runs out, the default value is returned instead; the fetch carries on in the background and stores its
+     * result in the cache, so that a later lookup of the address is answered from there.
+     *
+     * @param ipAddress    The IP address for which to fetch the data.
+     * @param budget       The longest time to wait for the data.
+     * @param defaultValue The value to return if the budget runs out, may be null.
+     * @return The {@link SuccessWrapper} object containing the fetched address data, or the default value.
+     * @throws ExecutionException If the fetching fails within the budget.
+     * @throws NullPointerException If the ipAddress or budget argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress, @NonNull Duration budget,
+                                                SuccessWrapper defaultValue) throws ExecutionException {
+        CompletableFuture<SuccessWrapper> future = fetchAddressDataForIPAsync(ipAddress);
+        try {
+            return future.get(budget.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return defaultValue;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Fetches address data for the given IP address asynchronously within a latency budget. If the data is not
+     * available when the budget runs out, the returned future completes with the default value instead; the fetch
+     * carries on in the background and stores its result in the cache.
+     *
+     * @param ipAddress    The IP address for which to fetch the data.
+     * @param budget       The longest time to wait for the data.
+     * @param defaultValue The value to complete with if the budget runs out, may be null.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address
+     *         data, or to the default value.
+     * @throws NullPointerException If the ipAddress or budget argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress,
+                                                                        @NonNull Duration budget,
+                                                                        SuccessWrapper defaultValue) {
+        // The future may be shared with other callers, so only a copy of it gives up on the budget
+        return fetchAddressDataForIPAsync(ipAddress)
+            .copy()
+            .completeOnTimeout(defaultValue, budget.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Looks up the address data for the given IP address and reports the outcome as a {@link LookupResult} instead
+     * of throwing exceptions. While a blocking response is remembered or the circuit is open, uncached addresses are
+     * answered right away with a shared refusal or a fallback, without creating an exception per lookup.
+     *
+     * @param ipAddress The IP address for which to look up the data.
+     * @return The result of the lookup.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     */
+    public LookupResult lookupAddress(@NonNull String ipAddress) {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        KnownRange knownRange = rangeIndex.find(addressKey);
+        if (knownRange != null) {
+            return new LookupResult.Success(knownRange.toSuccessWrapper(addressKey.toString()));
+        }
+
+        LookupResult refused = refusal(addressKey);
+        if (refused != null) {
+            return refused;
+        }
+
+        try {
+            return LookupResult.of(lookup(addressKey, Priority.INTERACTIVE));
+        } catch (ExecutionException | RuntimeException e) {
+            return LookupResult.failure(e);
+        }
+    }
+
+    /**
+     * Looks up the address data for the given IP address asynchronously and reports the outcome as a
+     * {@link LookupResult}. The returned future never completes exceptionally.
+     *
+     * @param ipAddress The IP address for which to look up the data.
+     * @return A CompletableFuture that resolves to the result of the lookup.
+     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws IllegalArgumentException If the ipAddress argument is not an IP address.
+     * @see #lookupAddress(String)
+     */
+    public CompletableFuture<LookupResult> lookupAddressAsync(@NonNull String ipAddress) {
+        // Checks if the passed argument is null. There are some jokers :P
+        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
+        AddressKey addressKey = AddressKey.of(ipAddress);
+
+        if (rangeIndex.find(addressKey) == null) {
+            LookupResult refused = refusal(addressKey);
+            if (refused != null) {
+                return CompletableFuture.completedFuture(refused);
+            }
+        }
+        return fetchAddressDataForIPAsync(ipAddress).handle((successWrapper, throwable) -> throwable == null
+            ? LookupResult.of(successWrapper)
+            : LookupResult.failure(throwable));
+    }
+
+    /**
+     * Takes a snapshot of the metrics of the client: the statistics of its caches, the latency histograms and
+     * failure counts of its requests, and the number of requests in flight and waiting.
+     *
+     * @return The snapshot of the metrics.
+     * @throws IllegalStateException If metrics are not enabled in the {@link MetricsSettings}.
+     */
+    public MetricsSnapshot getMetrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics are not enabled");
+        }
+
+        int queued = concurrencyLimiter != null ? concurrencyLimiter.queued() : 0;
+        if (requestScheduler != null) {
+            for (Priority priority : Priority.values()) {
+                queued += requestScheduler.queued(priority);
+            }
+        }
+
+        return MetricsSnapshot.builder()
+            .takenAt(Instant.now())
+            .cacheStats(combinedStats(cacheCat, mainCache))
+            .profileCacheStats(profileCache.stats())
+            .compactCacheStats(combinedStats(compactCache, compactMainCache))
+            .networkLatency(metrics.networkLatency())
+            .parseLatency(metrics.parseLatency())
+            .endToEndLatency(metrics.endToEndLatency())
+            .inFlightRequests(metrics.getInFlightRequests())
+            .inFlightLookups(inFlight.size() + profileInFlight.size())
+            .queuedRequests(queued)
+            .pendingBatchAddresses(batchCoalescer != null ? batchCoalescer.pending() : 0)
+            .failures(metrics.failures())
+            .build();
+    }
+
+    /**
+     * Releases the resources of the client: the metrics are unregistered from JMX and stop reporting, the timers
+     * of the batch coalescer and the rate limit are stopped, the file of the on-disk tier is closed and the default
+     * executor is shut down. Requests waiting for their batch or permit are cancelled. The client must not be used
+     * after it was closed.
+     *
+     * @throws UncheckedIOException If the file of the on-disk tier cannot be closed.
+     */
+    @Override
+    public void close() {
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (batchCoalescer != null) {
+            batchCoalescer.close();
+        }
+        if (requestScheduler != null) {
+            requestScheduler.close();
+        }
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+        }
+        if (persistentCache != null) {
+            try {
+                persistentCache.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close the on-disk cache", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of a cache and its main area together. Every lookup asks the main area first and the
+     * window only if the main area misses, so a hit in either is a hit and the misses are those of the window.
+     *
+     * @param window The window of the cache.
+     * @param main   The main area of the cache, or null if the cache is unbounded.
+     * @return The statistics of both.
+     */
+    private static CacheStats combinedStats(@NonNull Cache<?, ?> window, Cache<?, ?> main) {
+        CacheStats windowStats = window.stats();
+        if (main == null) {
+            return windowStats;
+        }
+        CacheStats mainStats = main.stats();
+        return new CacheStats(
+            windowStats.hitCount() + mainStats.hitCount(), windowStats.missCount(), windowStats.loadSuccessCount(),
+            windowStats.loadExceptionCount(), windowStats.totalLoadTime(),
+            windowStats.evictionCount() + mainStats.evictionCount());
+    }
+
+    /**
+     * Answers a lookup of an uncached address while requests are refused anyway, because a blocking response is
+     * remembered or the circuit is open, without throwing an exception.
+     *
+     * @param addressKey The address.
+     * @return The remembered blocking response, the fallback of the open circuit or its refusal, or null if
+     *         requests are not refused or the address can be answered from the cache.
+     */
+    private LookupResult refusal(@NonNull AddressKey addressKey) {
+        LookupResult.Blocked blocked = rememberedBlock();
+        if (blocked == null && (circuitBreaker == null || !circuitBreaker.isRefusing())) {
+            return null;
+        }
+        if (getIfPresent(addressKey) != null || readShared(addressKey) != null) {
+            return null;
+        }
+        if (blocked != null) {
+            return blocked;
+        }
+
+        try {
+            return LookupResult.of(fallbackFor(addressKey, CIRCUIT_OPEN));
+        } catch (CircuitOpenException e) {
+            return CIRCUIT_OPEN_RESULT;
+        }
+    }
+
+    /**
+     * Fetches address data for the given address asynchronously and stores the result in the cache.
+     * Concurrent callers for the same address share the request that is already in flight. If that request was sent
+     * with a lower priority, its failure is not inherited: the address is fetched again with the own priority.
+     *
+     * @param addressKey The address for which to fetch the data.
+     * @param priority   The priority of the request.
+     * @return A CompletableFuture that resolves to the SuccessWrapper object containing the fetched address data.
+     */
+    private CompletableFuture<SuccessWrapper> fetchAsync(@NonNull AddressKey addressKey, @NonNull Priority priority) {
+        CompletableFuture<SuccessWrapper> future = new CompletableFuture<>();
+        InFlightRequest request = new InFlightRequest(future, priority);
+        InFlightRequest existing = inFlight.putIfAbsent(addressKey, request);
+        if (existing != null) {
+            return priority.outranks(existing.priority())
+                ? existing.future().exceptionallyCompose(throwable -> fetchAsync(addressKey, priority))
+                : existing.future();
+        }
+
+        fetchDataAsync(addressKey.toString(), priority).whenComplete((successWrapper, throwable) -> {
+            if (throwable == null) {
+                CachedResult cachedResult = store(addressKey, successWrapper);
+                put(addressKey, cachedResult);
+                admit(addressKey, cachedResult);
+            }
+            inFlight.remove(addressKey, request);
+
+            if (throwable == null) {
+                future.complete(successWrapper);
+            } else {
+                future.completeExceptionally(throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a cached result of an address covering the given settings from the profileCache. Results of the
+     * profileCache are not refreshed ahead of their expiry; an expired one is removed and must be fetched again.
+     *
+     * @param addressKey The address.
+     * @param profile    The settings of the lookup.
+     * @return The cached result, or null if no result of a covering profile is cached.
+     */
+    private CachedResult getProfiled(@NonNull AddressKey addressKey, @NonNull ProxyCheckSettings profile) {
+        long now = System.currentTimeMillis();
+        for (ProxyCheckSettings settings : profiles) {
+            if (!settings.covers(profile)) {
+                continue;
+            }
+            ProfileKey profileKey = new ProfileKey(addressKey, settings);
+            CachedResult cachedResult = profileCache.getIfPresent(profileKey);
+            if (cachedResult != null) {
+                if (!cachedResult.isExpired(now)) {
+                    return cachedResult;
+                }
+                profileCache.asMap().remove(profileKey, cachedResult);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads a result that is not in the profileCache: it joins an asynchronous request for the same address and
+     * settings in flight, and fetches the result otherwise.
+     *
+     * @param profileKey The address and the settings to fetch it with.
+     * @param priority   The priority of the request, should one be necessary.
+     * @return The cache entry of the result.
+     */
+    private CachedResult loadProfiled(@NonNull ProfileKey profileKey, @NonNull Priority priority) {
+        CompletableFuture<SuccessWrapper> pending = profileInFlight.get(profileKey);
+        if (pending != null) {
+            SuccessWrapper successWrapper = await(pending);
+            return CachedResult.of(successWrapper, System.currentTimeMillis(), ttlFor(successWrapper));
+        }
+
+        profiles.add(profileKey.profile());
+        return storeProfiled(profileKey, fetchData(profileKey.address().toString(), priority, profileKey.profile()));
+    }
+
+    /**
+     * Fetches a result of the profileCache asynchronously and stores it. Concurrent callers for the same address
+     * and settings share the request that is already in flight.
+     *
+     * @param profileKey The address and the settings to fetch it with.
+     * @param priority   The priority of the request.
+     * @return A CompletableFuture that resolves to the SuccessWrapper object containing the fetched address data.
+     */
+    private CompletableFuture<SuccessWrapper> fetchProfiledAsync(@NonNull ProfileKey profileKey,
+                                                                 @NonNull Priority priority) {
+        CompletableFuture<SuccessWrapper> future = new CompletableFuture<>();
+        CompletableFuture<SuccessWrapper> existing = profileInFlight.putIfAbsent(profileKey, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        profiles.add(profileKey.profile());
+        requestDataAsync(profileKey.address().toString(), priority, profileKey.profile())
+            .whenComplete((successWrapper, throwable) -> {
+                if (throwable == null) {
+                    profileCache.put(profileKey, storeProfiled(profileKey, successWrapper));
+                }
+                profileInFlight.remove(profileKey, future);
+
+                if (throwable == null) {
+                    future.complete(successWrapper);
+                } else {
+                    future.completeExceptionally(
+                        throwable instanceof CompletionException ? throwable.getCause() : throwable);
+                }
+            });
+        return future;
+    }
+
+    /**
+     * Creates the cache entry of a result fetched with other settings than those of the client. If its settings
+     * cover the client's ones, the result is stored like a result of the client's settings and answers their
+     * lookups as well.
+     *
+     * @param profileKey     The address and the settings the result was fetched with.
+     * @param successWrapper The fetched address data.
+     * @return The cache entry of the result.
+     */
+    private CachedResult storeProfiled(@NonNull ProfileKey profileKey, @NonNull SuccessWrapper successWrapper) {
+        if (!profileKey.profile().covers(proxyCheckSettings)) {
+            return CachedResult.of(successWrapper, System.currentTimeMillis(), ttlFor(successWrapper));
+        }
+        CachedResult cachedResult = store(profileKey.address(), successWrapper);
+        put(profileKey.address(), cachedResult);
+        return cachedResult;
+    }
+
+    /**
+     * Fetches data for the given IP address.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request.
+     * @param settings  The settings to request the data with.
+     * @return The SuccessWrapper object containing the fetched address data.
+     * @throws AddressDataFetchingException If an error occurs during the fetching of the data.
+     * @throws RateLimitExceededException If the rate limit does not allow the request.
+     * @throws NullPointerException If the ipAddress argument is null.
+     */
+    @SneakyThrows
+    private SuccessWrapper fetchData(@NonNull String ipAddress, @NonNull Priority priority,
+                                     @NonNull ProxyCheckSettings settings) {
+        if (latencyTracker != null) {
+            // Hedged requests race each other, which only the asynchronous client can do
+            return await(requestDataAsync(ipAddress, priority, settings));
+        }
+
+        List<String> ipAddresses = List.of(ipAddress);
+        long startedAt = System.nanoTime();
+        try {
+            String key = licenseKey();
+            HttpRequest request = newRequest(formatURL(ipAddress, settings, key)).GET().build();
+            SuccessWrapper successWrapper = withRetries(priority, 1, () -> sendRequest(
+                request, reader -> readSuccessWrappers(reader, ipAddresses, key))).get(ipAddress);
+            recordFetch(startedAt, null);
+            return successWrapper;
+        } catch (IOException e) {
+            recordFetch(startedAt, e);
+            throw new AddressDataFetchingException("Failed to fetch data for address %s".formatted(ipAddress), e);
+        } catch (RuntimeException e) {
+            recordFetch(startedAt, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the compact data for the given IP address.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request.
+     * @return The CompactAddressData object containing the fetched address data.
+     * @throws AddressDataFetchingException If an error occurs during the fetching of the data.
+     * @throws NullPointerException If the ipAddress argument is null.
+     */
+    private CompactAddressData fetchCompactData(@NonNull String ipAddress, @NonNull Priority priority) {
+        long startedAt = System.nanoTime();
+        try {
+            String key = licenseKey();
+            HttpRequest request = newRequest(formatURL(ipAddress, proxyCheckSettings, key)).GET().build();
+            CompactAddressData compactAddressData = withRetries(priority, 1, () -> sendRequest(
+                request, reader -> readCompactData(reader, ipAddress, key)));
+            recordFetch(startedAt, null);
+            return compactAddressData;
+        } catch (IOException e) {
+            recordFetch(startedAt, e);
+            throw new AddressDataFetchingException("Failed to fetch data for address %s".formatted(ipAddress), e);
+        } catch (RuntimeException e) {
+            recordFetch(startedAt, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches data for the given IP address without blocking the calling thread.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request.
+     * @return A CompletableFuture that resolves to the SuccessWrapper object containing the fetched address data.
+     */
+    private CompletableFuture<SuccessWrapper> fetchDataAsync(@NonNull String ipAddress, @NonNull Priority priority) {
+        if (batchCoalescer != null) {
+            return batchCoalescer.submit(ipAddress, priority);
+        }
+        return requestDataAsync(ipAddress, priority, proxyCheckSettings);
+    }
+
+    /**
+     * Requests data for the given IP address without blocking the calling thread. The request is hedged and
+     * retried after transient I/O errors, if configured.
+     *
+     * @param ipAddress The IP address for which to fetch the data.
+     * @param priority  The priority of the request.
+     * @param settings  The settings to request the data with.
+     * @return A CompletableFuture that resolves to the SuccessWrapper object containing the fetched address data.
+     */
+    private CompletableFuture<SuccessWrapper> requestDataAsync(@NonNull String ipAddress,
+                                                               @NonNull Priority priority,
+                                                               @NonNull ProxyCheckSettings settings) {
+        List<String> ipAddresses = List.of(ipAddress);
+        long startedAt = System.nanoTime();
+        String key;
+        try {
+            key = licenseKey();
+        } catch (RateLimitExceededException e) {
+            recordFetch(startedAt, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = newRequest(formatURL(ipAddress, settings, key)).GET().build();
+        return withRetriesAsync(() -> hedge(() -> acquirePermitAsync(priority, 1).thenCompose(
+                ignored -> sendRequestAsync(request, reader -> readSuccessWrappers(reader, ipAddresses, key)))), 1)
+            .handle((successWrappers, throwable) -> {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                recordFetch(startedAt, cause);
+                if (throwable == null) {
+                    return successWrappers.get(ipAddress);
+                }
+
+                // Blocking responses and rate limits are reported as they are
+                if (cause instanceof ProxyException proxyException) {
+                    throw proxyException;
+                }
+                throw new AddressDataFetchingException(
+                    "Failed to fetch data for address %s".formatted(ipAddress), cause);
+            });
+    }
+
+    /**
+     * Fetches data for the given IP addresses with a single multi-address request.
+     *
+     * @param ipAddresses The IP addresses for which to fetch the data.
+     * @param priority    The priority of the request.
+     * @return A map of every requested IP address to the SuccessWrapper object containing its address data.
+     * @throws AddressDataFetchingException If an error occurs during the fetching of the data.
+     * @throws ProxyCheckBlockingException If the response from the proxy check API indicates blocking.
+     * @throws RateLimitExceededException If the rate limit does not allow the request.
+     */
+    private Map<String, SuccessWrapper> fetchBatchData(@NonNull List<String> ipAddresses,
+                                                       @NonNull Priority priority) {
+        long startedAt = System.nanoTime();
+        try {
+            String key = licenseKey();
+            HttpRequest request = newRequest(formatBatchURL(key))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(formatBatchBody(ipAddresses)))
+                .build();
+            Map<String, SuccessWrapper> successWrappers = withRetries(priority, ipAddresses.size(),
+                () -> sendRequest(request, reader -> readSuccessWrappers(reader, ipAddresses, key)));
+            recordFetch(startedAt, null);
+            return successWrappers;
+        } catch (IOException e) {
+            recordFetch(startedAt, e);
+            throw new AddressDataFetchingException(
+                "Failed to fetch data for %d addresses".formatted(ipAddresses.size()), e);
+        } catch (RuntimeException e) {
+            recordFetch(startedAt, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the CompactAddressData of the given IP address out of a response body. A blocking response is thrown
+     * while the response is parsed, so that it counts as a failure of the request.
+     *
+     * @param reader    The reader of the response body.
+     * @param ipAddress The requested IP address.
+     * @param key       The license key the request was sent with.
+     * @return The CompactAddressData object containing the address data.
+     * @throws ProxyCheckBlockingException If the response from the proxy check API indicates blocking.
+     */
+    private CompactAddressData readCompactData(@NonNull Reader reader, @NonNull String ipAddress,
+                                               @NonNull String key) {
+        JsonObject jsonObject = parseJsonObject(reader);
+
+        // Processing of reports from https://proxycheck.io
+        checkBlockingResponse(jsonObject, key, 1);
+        return CompactAddressData.fromResponse(jsonObject, ipAddress, retainRawObject);
+    }
+
+    /**
+     * Reads the SuccessWrapper objects of the given IP addresses out of a response body.
+     * Unless raw objects should be retained, the body is decoded in a single pass by the
+     * {@link StreamingResponseDecoder}, in lazy mode if enabled; otherwise it is parsed into a JsonObject tree first.
+     *
+     * @param reader      The reader of the response body.
+     * @param ipAddresses The requested IP addresses.
+     * @param key         The license key the request was sent with.
+     * @return A map of every requested IP address to the SuccessWrapper object containing its address data.
+     * @throws IOException If the body cannot be read.
+     * @throws ProxyCheckBlockingException If the response from the proxy check API indicates blocking.
+     */
+    private Map<String, SuccessWrapper> readSuccessWrappers(@NonNull Reader reader, @NonNull List<String> ipAddresses,
+                                                            @NonNull String key) throws IOException {
+        Map<String, SuccessWrapper> results = new HashMap<>();
+
+        if (!retainRawObject) {
+            StreamingResponseDecoder.DecodedResponse response = StreamingResponseDecoder.decode(
+                reader, ipAddresses, lazyDecoding);
+
+            // Processing of reports from https://proxycheck.io
+            checkBlockingResponse(response.getStatus(), response.getMessage(), key, ipAddresses.size());
+
+            for (String ipAddress : ipAddresses) {
+                results.put(ipAddress, response.toSuccessWrapper(ipAddress));
+            }
+            return results;
+        }
+
+        JsonObject jsonObject = parseJsonObject(reader);
+
+        // Processing of reports from https://proxycheck.io
+        checkBlockingResponse(jsonObject, key, ipAddresses.size());
+
+        if (ipAddresses.size() == 1) {
+            results.put(ipAddresses.get(0), new SuccessWrapper(jsonObject, ipAddresses.get(0)));
+            return results;
+        }
+        for (String ipAddress : ipAddresses) {
+            results.put(ipAddress, new SuccessWrapper(sliceBatchResponse(jsonObject, ipAddress), ipAddress));
+        }
+        return results;
+    }
+
+    /**
+     * Looks up the result of an address in cacheCat. An entry that has expired, because it was restored from disk
+     * close to the end of its lifetime, is replaced by a freshly fetched result. If the circuit breaker refuses the
+     * request, the lookup is answered by a fallback.
+     *
+     * @param addressKey The address.
+     * @param priority   The priority of a request, should one be necessary.
+     * @return The SuccessWrapper object containing the address data.
+     * @throws ExecutionException If an error occurs while the result is loaded.
+     */
+    private SuccessWrapper lookup(@NonNull AddressKey addressKey, @NonNull Priority priority)
+        throws ExecutionException {
+        recordAccess(addressKey);
+        try {
+            CachedResult cachedResult = getOrLoad(addressKey, priority);
+            if (!revalidate(addressKey, cachedResult, System.currentTimeMillis())) {
+                cachedResult = getOrLoad(addressKey, priority);
+            }
+            return cachedResult.getResult();
+        } catch (UncheckedExecutionException e) {
+            CircuitOpenException circuitOpen = circuitOpen(e);
+            if (circuitOpen == null) {
+                throw e;
+            }
+            return fallbackFor(addressKey, circuitOpen);
+        }
+    }
+
+    /**
+     * Returns the cached result of an address from the mainCache or cacheCat, loading it into cacheCat if neither
+     * holds it.
+     *
+     * @param addressKey The address.
+     * @param priority   The priority of a request, should one be necessary.
+     * @return The cached result.
+     * @throws ExecutionException If an error occurs while the result is loaded.
+     */
+    private CachedResult getOrLoad(@NonNull AddressKey addressKey, @NonNull Priority priority)
+        throws ExecutionException {
+        if (mainCache != null) {
+            CachedResult cachedResult = mainCache.getIfPresent(addressKey);
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+        }
+
+        CachedResult cachedResult = cacheCat.get(addressKey, () -> loadResult(addressKey, priority));
+        admit(addressKey, cachedResult);
+        return cachedResult;
+    }
+
+    /**
+     * Returns the cached results of several addresses from the mainCache or cacheCat, loading the missing ones into
+     * cacheCat with as few multi-address requests as possible.
+     *
+     * @param addressKeys The addresses.
+     * @return A modifiable map of every address to its cached result.
+     * @throws ExecutionException If an error occurs while the results are loaded.
+     */
+    private Map<AddressKey, CachedResult> getAllOrLoad(@NonNull Collection<AddressKey> addressKeys)
+        throws ExecutionException {
+        Map<AddressKey, CachedResult> results = new HashMap<>();
+        List<AddressKey> missing = new ArrayList<>();
+        for (AddressKey addressKey : addressKeys) {
+            recordAccess(addressKey);
+            CachedResult cachedResult = mainCache != null ? mainCache.getIfPresent(addressKey) : null;
+            if (cachedResult != null) {
+                results.put(addressKey, cachedResult);
+            } else {
+                missing.add(addressKey);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            cacheCat.getAll(missing).forEach((addressKey, cachedResult) -> {
+                admit(addressKey, cachedResult);
+                results.put(addressKey, cachedResult);
+            });
+        }
+        return results;
+    }
+
+    /**
+     * Returns the cached compact result of an address from the compactMainCache or compactCache, loading it into
+     * the compactCache if neither holds it, and admits it into the compactMainCache once its address has been
+     * accessed often enough. Compact results are not refreshed ahead of their expiry; an expired one is removed and
+     * fetched again.
+     *
+     * @param addressKey The address.
+     * @param priority   The priority of a request, should one be necessary.
+     * @return The cached compact result.
+     * @throws ExecutionException If an error occurs while the result is loaded.
+     */
+    private CachedCompactData getOrLoadCompact(@NonNull AddressKey addressKey, @NonNull Priority priority)
+        throws ExecutionException {
+        long now = System.currentTimeMillis();
+        if (compactMainCache != null) {
+            CachedCompactData cached = compactMainCache.getIfPresent(addressKey);
+            if (cached != null) {
+                if (!cached.isExpired(now)) {
+                    return cached;
+                }
+                compactMainCache.asMap().remove(addressKey, cached);
+            }
+        }
+
+        CachedCompactData cached = compactCache.get(addressKey, () -> loadCompact(addressKey, priority));
+        if (cached.isExpired(now)) {
+            compactCache.asMap().remove(addressKey, cached);
+            cached = compactCache.get(addressKey, () -> loadCompact(addressKey, priority));
+        }
+
+        if (compactMainCache != null
+            && frequencySketch.frequency(addressKey) >= evictionSettings.getAdmissionFrequency()
+            && compactCache.asMap().remove(addressKey, cached)) {
+            compactMainCache.put(addressKey, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Loads a compact result that is not in the compactCache: it restores the full result from the on-disk tier
+     * and compacts it, or fetches the compact result otherwise, and stores its verdict.
+     *
+     * @param addressKey The address.
+     * @param priority   The priority of the request, should one be necessary.
+     * @return The cache entry of the compact result.
+     */
+    private CachedCompactData loadCompact(@NonNull AddressKey addressKey, @NonNull Priority priority) {
+        // The on-disk tier holds full results, which are compacted rather than fetched again
+        CachedResult restored = readPersisted(addressKey);
+        CachedCompactData cachedCompactData;
+        if (restored != null) {
+            cachedCompactData = CachedCompactData.from(restored);
+        } else {
+            CompactAddressData compactAddressData = fetchCompactData(addressKey.toString(), priority);
+            cachedCompactData = CachedCompactData.of(
+                compactAddressData, System.currentTimeMillis(), ttlFor(compactAddressData));
+        }
+        if (verdictStore != null) {
+            verdictStore.put(addressKey, Verdict.of(cachedCompactData.getData()));
+        }
+        return cachedCompactData;
+    }
+
+    /**
+     * Returns the cached result of an address without loading it.
+     *
+     * @param addressKey The address.
+     * @return The cached result, or null if neither the mainCache nor cacheCat holds it.
+     */
+    private CachedResult getIfPresent(@NonNull AddressKey addressKey) {
+        CachedResult cachedResult = mainCache != null ? mainCache.getIfPresent(addressKey) : null;
+        return cachedResult != null ? cachedResult : cacheCat.getIfPresent(addressKey);
+    }
+
+    /**
+     * Caches a fetched result. A refreshed result replaces its predecessor in the mainCache, any other result
+     * enters cacheCat.
+     *
+     * @param addressKey   The address.
+     * @param cachedResult The result to cache.
+     */
+    private void put(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) {
+        if (mainCache != null && mainCache.asMap().containsKey(addressKey)) {
+            mainCache.put(addressKey, cachedResult);
+        } else {
+            cacheCat.put(addressKey, cachedResult);
+        }
+    }
+
+    /**
+     * Removes a cached result from the mainCache and cacheCat, unless it has been replaced in the meantime.
+     *
+     * @param addressKey   The address.
+     * @param cachedResult The result to remove.
+     */
+    private void invalidate(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) {
+        cacheCat.asMap().remove(addressKey, cachedResult);
+        if (mainCache != null) {
+            mainCache.asMap().remove(addressKey, cachedResult);
+        }
+    }
+
+    /**
+     * Records an access of an address in the frequency sketch, if the cache is bounded.
+     *
+     * @param addressKey The address.
+     */
+    private void recordAccess(@NonNull AddressKey addressKey) {
+        if (frequencySketch != null) {
+            frequencySketch.increment(addressKey);
+        }
+    }
+
+    /**
+     * Moves a result from cacheCat to the mainCache once its address has been accessed often enough.
+     * Results of addresses accessed only once stay in cacheCat and are evicted from there.
+     *
+     * @param addressKey   The address.
+     * @param cachedResult The result held by cacheCat.
+     */
+    private void admit(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) {
+        if (mainCache != null
+            && frequencySketch.frequency(addressKey) >= evictionSettings.getAdmissionFrequency()
+            && cacheCat.asMap().remove(addressKey, cachedResult)) {
+            mainCache.put(addressKey, cachedResult);
+        }
+    }
+
+    /**
+     * Decides if a cached result may be served. A result that is due for refresh-ahead, or has expired but is
+     * within the grace window, is served while a fresh one is fetched in the background. If that fetch fails, the
+     * result stays in the cache and is revalidated on a later access. A result past the grace window is removed,
+     * unless the circuit breaker is open and stale results are a fallback.
+     *
+     * @param addressKey   The address.
+     * @param cachedResult The cached result.
+     * @param now          The current time in milliseconds since the epoch.
+     * @return true if the result may be served, false if it was removed and must be fetched again.
+     */
+    private boolean revalidate(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult, long now) {
+        if (cachedResult.isExpired(now)) {
+            if (!refreshSettings.isWithinGrace(cachedResult.getExpiresAt(), now)) {
+                // While the circuit is open, the expired result is the best answer there is
+                if (servesStale()) {
+                    return true;
+                }
+                invalidate(addressKey, cachedResult);
+                return false;
+            }
+        } else if (!refreshSettings.isRefreshDue(cachedResult.getFetchedAt(), cachedResult.getExpiresAt(), now)) {
+            return true;
+        }
+
+        // Failures are left to the next access, which finds the result still in the cache
+        fetchAsync(addressKey, Priority.BACKGROUND);
+        return true;
+    }
+
+    /**
+     * Stores a freshly fetched result: its verdict is recorded in the verdict store, the result is written to
+     * the on-disk tier and shared with its prefix, if they are configured.
+     *
+     * @param addressKey     The address.
+     * @param successWrapper The fetched address data.
+     * @return The cache entry of the result.
+     */
+    private CachedResult store(@NonNull AddressKey addressKey, @NonNull SuccessWrapper successWrapper) {
+        CachedResult cachedResult = CachedResult.of(successWrapper, System.currentTimeMillis(), ttlFor(successWrapper));
+
+        if (verdictStore != null) {
+            verdictStore.put(addressKey, Verdict.of(successWrapper));
+        }
+        if (persistentCache != null) {
+            try {
+                persistentCache.put(addressKey, cachedResult);
+            } catch (IOException ignored) {
+                // The on-disk tier is best effort, the result is still cached in memory
+            }
+        }
+        if (prefixCache != null) {
+            prefixCache.put(addressKey, cachedResult);
+        }
+        return cachedResult;
+    }
+
+    /**
+     * Returns the time to live of a fetched result according to the expiry rules.
+     *
+     * @param successWrapper The fetched address data.
+     * @return The time to live of the first matching rule, or the cache duration.
+     */
+    private Duration ttlFor(@NonNull SuccessWrapper successWrapper) {
+        if (!expirySettings.isEnabled()) {
+            return cacheDuration;
+        }
+        return expirySettings.ttlFor(CompactAddressData.from(successWrapper), cacheDuration);
+    }
+
+    /**
+     * Returns the time to live of a fetched compact result according to the expiry rules.
+     *
+     * @param compactAddressData The fetched compact address data.
+     * @return The time to live of the first matching rule, or the cache duration.
+     */
+    private Duration ttlFor(@NonNull CompactAddressData compactAddressData) {
+        return expirySettings.ttlFor(compactAddressData, cacheDuration);
+    }
+
+    /**
+     * Loads the result of an address that is not in cacheCat: it joins an asynchronous request for the address in
+     * flight, or restores the result from the on-disk tier or the prefix of the address, and fetches it otherwise.
+     * If a joined request of a lower priority fails, the address is fetched with the own priority instead.
+     *
+     * @param addressKey The address.
+     * @param priority   The priority of the request, should one be necessary.
+     * @return The cache entry of the result.
+     */
+    private CachedResult loadResult(@NonNull AddressKey addressKey, @NonNull Priority priority) {
+        // Join an asynchronous request for the same address instead of sending another one
+        InFlightRequest pending = inFlight.get(addressKey);
+        if (pending != null) {
+            try {
+                SuccessWrapper successWrapper = await(pending.future());
+                return CachedResult.of(successWrapper, System.currentTimeMillis(), ttlFor(successWrapper));
+            } catch (RuntimeException e) {
+                if (!priority.outranks(pending.priority())) {
+                    throw e;
+                }
+            }
+        }
+
+        CachedResult restored = readPersisted(addressKey);
+        if (restored != null) {
+            return restored;
+        }
+
+        CachedResult shared = readShared(addressKey);
+        if (shared != null) {
+            return shared;
+        }
+
+        String ipAddress = addressKey.toString();
+        return store(addressKey, batchCoalescer != null
+            ? await(batchCoalescer.submit(ipAddress, priority))
+            : fetchData(ipAddress, priority, proxyCheckSettings));
+    }
+
+    /**
+     * Waits for the permit to send a request, if requests are rate limited.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of addresses of the request.
+     * @throws ProxyCheckBlockingException If a blocking response is remembered.
+     * @throws RateLimitExceededException If the rate limit does not allow the request.
+     */
+    private void acquirePermit(@NonNull Priority priority, int queries) {
+        LookupResult.Blocked blocked = rememberedBlock();
+        if (blocked != null) {
+            throw blocked.exception();
+        }
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            throw CIRCUIT_OPEN;
+        }
+        if (requestScheduler != null) {
+            try {
+                requestScheduler.acquire(priority, queries);
+            } catch (RateLimitExceededException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onIgnored();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Acquires the permit to send a request without blocking the calling thread. The circuit breaker is asked
+     * first, so that no rate limit permit is spent while the circuit is open.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of addresses of the request.
+     * @return A CompletableFuture that completes once the request may be sent, or exceptionally with a
+     *         {@link ProxyCheckBlockingException}, {@link CircuitOpenException} or {@link RateLimitExceededException}.
+     */
+    private CompletableFuture<Void> acquirePermitAsync(@NonNull Priority priority, int queries) {
+        LookupResult.Blocked blocked = rememberedBlock();
+        if (blocked != null) {
+            return CompletableFuture.failedFuture(blocked.exception());
+        }
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(CIRCUIT_OPEN);
+        }
+        if (requestScheduler == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return requestScheduler.acquireAsync(priority, queries).whenComplete((ignored, throwable) -> {
+            if (throwable != null && circuitBreaker != null) {
+                circuitBreaker.onIgnored();
+            }
+        });
+    }
+
+    /**
+     * Sends a request, retrying it after transient I/O errors according to the {@link RetrySettings}.
+     * Every attempt acquires its own permit, so that retries are paced and refused like any other request.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of addresses of the request.
+     * @param call     The call sending the request.
+     * @param <T>      The type of the parsed response.
+     * @return The parsed response.
+     * @throws IOException If the last attempt fails, or an attempt is interrupted.
+     */
+    private <T> T withRetries(@NonNull Priority priority, int queries, @NonNull RequestCall<T> call)
+        throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            acquirePermit(priority, queries);
+            try {
+                return call.send();
+            } catch (IOException e) {
+                if (!isTransient(e) || attempt >= retrySettings.getMaxAttempts()) {
+                    throw e;
+                }
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(retrySettings.backoffNanos(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while backing off from a failed request");
+            }
+        }
+    }
 
     /**
-     * Represents the settings for proxy checking.
+     * Sends a request without blocking, retrying it after transient I/O errors according to the
+     * {@link RetrySettings}. The backoff is waited for without blocking a thread.
+     *
+     * @param call    The call sending the request, including the acquisition of its permit.
+     * @param attempt The number of the attempt, starting at 1.
+     * @param <T>     The type of the parsed response.
+     * @return A CompletableFuture that resolves to the parsed response, or completes exceptionally with the failure
+     *         of the last attempt.
      */
-    private ProxyCheckSettings proxyCheckSettings = ProxyCheckSettings.builder().build();
+    private <T> CompletableFuture<T> withRetriesAsync(@NonNull Supplier<CompletableFuture<T>> call, int attempt) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.get().whenComplete((parsed, throwable) -> {
+            if (throwable == null) {
+                future.complete(parsed);
+                return;
+            }
+
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (!isTransient(cause) || attempt >= retrySettings.getMaxAttempts()) {
+                future.completeExceptionally(cause);
+                return;
+            }
+            Executor delayed = CompletableFuture.delayedExecutor(
+                retrySettings.backoffNanos(attempt), TimeUnit.NANOSECONDS, executor);
+            delayed.execute(() -> withRetriesAsync(call, attempt + 1).whenComplete((retried, failure) -> {
+                if (failure == null) {
+                    future.complete(retried);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            }));
+        });
+        return future;
+    }
 
     /**
-     * The duration for which a cached entry will remain valid.
+     * Sends a request and, if it has not been answered after the configured percentile of the recent latencies,
+     * sends it a second time. The first response wins; the request only fails once both attempts have failed.
+     *
+     * @param call The call sending the request, including the acquisition of its permit.
+     * @param <T>  The type of the parsed response.
+     * @return A CompletableFuture that resolves to the first parsed response.
      */
-    @Getter
-    private Duration cacheDuration = Duration.ofMinutes(60);
+    private <T> CompletableFuture<T> hedge(@NonNull Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> first = call.get();
+        long delayNanos = hedgeDelayNanos();
+        if (delayNanos < 0) {
+            return first;
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<T, Throwable> settle = (parsed, throwable) -> {
+            if (throwable == null) {
+                future.complete(parsed);
+            } else if (pending.decrementAndGet() == 0) {
+                future.completeExceptionally(
+                    throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            }
+        };
+        first.whenComplete(settle);
+
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+            // A request that already failed is left to the retries
+            if (!future.isDone() && pending.getAndIncrement() > 0) {
+                call.get().whenComplete(settle);
+            }
+        });
+        return future;
+    }
 
     /**
-     * The cacheCat variable is an instance of the Guava LoadingCache class. This cache is used to store IP addresses
-     * and their corresponding JsonObject data retrieved from a website
-     * .
-     * The cacheCat instance is built using the CacheBuilder class, which allows configuring various cache properties
-     * and behaviors.
-     * The cache is configured to expire entries after a certain duration specified by the cacheDuration variable.
-     * When an entry expires, it will be removed from the cache and must be fetched again from the website when
-     * accessed again.
-     * The cacheCat instance uses a CacheLoader implementation to fetch the data for a given IP address by calling
-     * the fetchData method.
-     * The result is then stored in the cache. If the fetchData method returns null, an exception will be thrown.
-     * It is recommended to install a separate cache alongside this cache for better performance and flexibility.
+     * Returns the delay after which a single address request is hedged.
+     *
+     * @return The delay in nanoseconds, or -1 if requests are not hedged or too few latencies were recorded.
      */
-    private final LoadingCache<String, SuccessWrapper> cacheCat = CacheBuilder.newBuilder()
-        .expireAfterWrite(cacheDuration)
-        .build(CacheLoader.from(this::fetchData));
+    private long hedgeDelayNanos() {
+        if (latencyTracker == null || latencyTracker.count() < hedgingSettings.getMinSamples()) {
+            return -1;
+        }
+        return Math.max(hedgingSettings.getMinDelay().toNanos(),
+                        latencyTracker.percentile(hedgingSettings.getPercentile()));
+    }
 
     /**
-     * Fetches address data for the given IP address.
+     * Checks if a request failed with a transient I/O error that is worth a retry.
      *
-     * @param ipAddress The IP address for which to fetch the data.
-     * @return The {@link SuccessWrapper} object containing the fetched address data.
-     * @throws ExecutionException If an error occurs during the execution of the method.
-     * @throws NullPointerException If the ipAddress argument is null.
+     * @param throwable The failure of the request.
+     * @return true if the request failed with an I/O error other than an interruption.
      */
-    public SuccessWrapper fetchAddressDataForIP(@NonNull String ipAddress) throws ExecutionException {
-        // Checks if the passed argument is null. There are some jokers :P
-        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
-        return cacheCat.get(ipAddress);
+    private static boolean isTransient(Throwable throwable) {
+        return throwable instanceof IOException && !(throwable instanceof InterruptedIOException);
     }
 
     /**
-     * Fetches address data for the given IP address asynchronously.
+     * Waits for a free slot to send a request, if the requests in flight are limited.
      *
-     * @param ipAddress The IP address for which to fetch the data.
-     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} object containing the fetched address data.
-     * @throws NullPointerException If the ipAddress argument is null.
+     * @throws ConcurrencyLimitExceededException If no slot becomes free in time.
      */
-    public CompletableFuture<SuccessWrapper> fetchAddressDataForIPAsync(@NonNull String ipAddress) {
-        // Checks if the passed argument is null. There are some jokers :P
-        Validation.checkNotNull(ipAddress, "Field ipAddress cannot be null");
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return fetchAddressDataForIP(ipAddress);
-            } catch (ExecutionException e) {
-                throw new CompletionException(e);
+    private void acquireSlot() {
+        if (concurrencyLimiter == null) {
+            return;
+        }
+        try {
+            concurrencyLimiter.acquire();
+        } catch (ConcurrencyLimitExceededException e) {
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires a free slot to send a request without blocking the calling thread.
+     *
+     * @return A CompletableFuture that completes once the request may be sent, or exceptionally with a
+     *         {@link ConcurrencyLimitExceededException}.
+     */
+    private CompletableFuture<Void> acquireSlotAsync() {
+        if (concurrencyLimiter == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return concurrencyLimiter.acquireAsync().whenComplete((ignored, throwable) -> {
+            if (throwable != null && circuitBreaker != null) {
+                circuitBreaker.onIgnored();
             }
         });
     }
 
     /**
-     * Fetches data for the given IP address.
+     * Checks if expired results are served because the circuit breaker refuses requests.
      *
-     * @param ipAddress The IP address for which to fetch the data.
-     * @return The SuccessWrapper object containing the fetched address data.
-     * @throws AddressDataFetchingException If an error occurs during the fetching of the data.
-     * @throws NullPointerException If the ipAddress argument is null.
+     * @return true if the circuit is open and stale results are a configured fallback.
      */
-    @SneakyThrows
-    private SuccessWrapper fetchData(@NonNull String ipAddress) {
-        JsonObject jsonObject;
+    private boolean servesStale() {
+        return circuitBreaker != null
+            && circuitBreakerSettings.getFallbacks().contains(Fallback.STALE)
+            && circuitBreaker.isRefusing();
+    }
+
+    /**
+     * Answers a lookup while the circuit breaker is open, with the first of the configured fallbacks that applies.
+     * Fallback results are not cached.
+     *
+     * @param addressKey  The address.
+     * @param circuitOpen The exception of the refused request.
+     * @return The fallback result.
+     * @throws CircuitOpenException If no fallback applies.
+     */
+    private SuccessWrapper fallbackFor(@NonNull AddressKey addressKey, @NonNull CircuitOpenException circuitOpen) {
+        for (Fallback fallback : circuitBreakerSettings.getFallbacks()) {
+            switch (fallback) {
+                case STALE -> {
+                    CachedResult stale = getIfPresent(addressKey);
+                    if (stale != null) {
+                        return stale.getResult();
+                    }
+                }
+                case VERDICT -> {
+                    Verdict verdict = verdictStore != null ? verdictStore.get(addressKey) : null;
+                    if (verdict != null) {
+                        return FallbackResults.of(verdict, addressKey.toString());
+                    }
+                }
+                case UNKNOWN -> {
+                    return FallbackResults.unknown(addressKey.toString());
+                }
+            }
+        }
+        throw circuitOpen;
+    }
+
+    /**
+     * Finds the CircuitOpenException behind a failed lookup.
+     *
+     * @param throwable The failure, possibly wrapped by the cache or a future.
+     * @return The CircuitOpenException, or null if the lookup failed for another reason.
+     */
+    private static CircuitOpenException circuitOpen(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException circuitOpen) {
+                return circuitOpen;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the outcome of a sent request in the circuit breaker, if it is enabled, and the latency of a
+     * successful single address request for hedging. The slot of the request is released with its round trip, and
+     * the request no longer counts as in flight in the metrics.
+     *
+     * @param request   The sent request.
+     * @param startedAt The time the request was sent, in nanoseconds of {@link System#nanoTime()}.
+     * @param failure   The failure of the request, or null if it succeeded.
+     */
+    private void recordOutcome(@NonNull HttpRequest request, long startedAt, Throwable failure) {
+        long duration = System.nanoTime() - startedAt;
+        if (metrics != null) {
+            metrics.onRequestDone();
+        }
+        if (failure == null && latencyTracker != null && request.method().equals("GET")) {
+            latencyTracker.record(duration);
+        }
+        if (concurrencyLimiter != null) {
+            if (failure == null) {
+                concurrencyLimiter.onSuccess(duration);
+            } else if (failure instanceof InterruptedIOException) {
+                concurrencyLimiter.onIgnored();
+            } else {
+                concurrencyLimiter.onFailure();
+            }
+        }
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (failure == null) {
+            circuitBreaker.onSuccess(duration);
+        } else if (failure instanceof InterruptedIOException) {
+            circuitBreaker.onIgnored();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    /**
+     * Records the outcome of a fetch in the metrics, if they are enabled.
+     *
+     * @param startedAt The time the fetch started, in nanoseconds of {@link System#nanoTime()}.
+     * @param failure   The failure of the fetch, or null if it succeeded.
+     */
+    private void recordFetch(long startedAt, Throwable failure) {
+        if (metrics != null) {
+            metrics.recordFetch(System.nanoTime() - startedAt, failure);
+        }
+    }
+
+    /**
+     * Creates a builder of a cache that records its statistics if metrics are enabled. Without metrics, hits are
+     * not counted at all.
+     *
+     * @return The cache builder.
+     */
+    private CacheBuilder<Object, Object> newCacheBuilder() {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        return metrics != null ? builder.recordStats() : builder;
+    }
+
+    /**
+     * Reads the result of an address from the on-disk tier, if it is configured.
+     *
+     * @param addressKey The address.
+     * @return The restored cache entry, or null if none is stored or it cannot be read.
+     */
+    private CachedResult readPersisted(@NonNull AddressKey addressKey) {
+        if (persistentCache == null) {
+            return null;
+        }
         try {
-            jsonObject = parseJsonObjectFromURL(formatURL(ipAddress));
+            return persistentCache.get(addressKey);
         } catch (IOException e) {
-            throw new AddressDataFetchingException("Failed to fetch data for address %s".formatted(ipAddress), e);
+            // The on-disk tier is best effort, fall back to fetching the result
+            return null;
         }
+    }
+
+    /**
+     * Reads the result shared with the prefix of an address, if prefix sharing is enabled.
+     *
+     * @param addressKey The address.
+     * @return The shared result carrying the address, or null if no prefix of the address holds one.
+     */
+    private CachedResult readShared(@NonNull AddressKey addressKey) {
+        return prefixCache != null ? prefixCache.get(addressKey, System.currentTimeMillis()) : null;
+    }
 
-        // Validation.checkNotNull(jsonObject, "Object is null. No internet connection?");
-        // Validation.checkNotNull(jsonObject.get("status"), "Invalid object. Maybe timeout?");
+    /**
+     * Checks if a prefix length fits the bits of its address family.
+     *
+     * @param prefixLength The prefix length.
+     * @param addressBits  The number of bits of an address of the family.
+     * @throws IllegalArgumentException If the prefix length is negative or longer than an address.
+     */
+    private static void checkPrefixLength(int prefixLength, int addressBits) {
+        Validation.checkArgument(prefixLength >= 0 && prefixLength <= addressBits,
+                                 "Prefix lengths must be between 0 and %d".formatted(addressBits));
+    }
 
-        // Processing of reports from https://proxycheck.io
+    /**
+     * Waits for a pending fetch of address data, such as a batch of the coalescer or an asynchronous request.
+     *
+     * @param future The future of the pending fetch.
+     * @return The SuccessWrapper object containing the fetched address data.
+     */
+    private SuccessWrapper await(@NonNull CompletableFuture<SuccessWrapper> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Rethrow the original exception so that the cache reports the same errors as for single requests
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the response of a single address out of a multi-address response, so that the cached
+     * SuccessWrapper only retains the data of its own address.
+     *
+     * @param jsonObject The multi-address response.
+     * @param ipAddress  The IP address to extract.
+     * @return A JsonObject in the format of a single address response.
+     */
+    private JsonObject sliceBatchResponse(@NonNull JsonObject jsonObject, @NonNull String ipAddress) {
+        JsonObject slice = new JsonObject();
+        for (String key : new String[]{"status", "node", "query time", ipAddress}) {
+            JsonElement element = jsonObject.get(key);
+            if (element != null) {
+                slice.add(key, element);
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * Throws a ProxyCheckBlockingException if the response from the proxy check API indicates blocking.
+     *
+     * @param jsonObject The JsonObject to check.
+     * @param key        The license key the request was sent with.
+     * @param queries    The number of addresses of the request.
+     * @throws ProxyCheckBlockingException If the response is blocking.
+     */
+    private void checkBlockingResponse(@NonNull JsonObject jsonObject, @NonNull String key, int queries) {
         if (isBlockingResponse(jsonObject)) {
 
             var status  = jsonObject.get("status").getAsString().toUpperCase();
             var message = jsonObject.get("message").getAsString();
 
-            throw new ProxyCheckBlockingException("%s: %s".formatted(status, message));
+            throw blockingException(status, message, key);
+        }
+        if (keyPool != null) {
+            keyPool.onResponse(key, queries);
+        }
+    }
+
+    /**
+     * Throws a ProxyCheckBlockingException if the status of a decoded response indicates blocking.
+     *
+     * @param status  The status of the response, may be null.
+     * @param message The message of the response, may be null.
+     * @param key     The license key the request was sent with.
+     * @param queries The number of addresses of the request.
+     * @throws ProxyCheckBlockingException If the response is blocking.
+     */
+    private void checkBlockingResponse(String status, String message, @NonNull String key, int queries) {
+        if (status != null && (status.equalsIgnoreCase("error") || status.equalsIgnoreCase("denied"))) {
+            throw blockingException(status, message, key);
+        }
+        if (keyPool != null) {
+            keyPool.onResponse(key, queries);
+        }
+    }
+
+    /**
+     * Creates the exception of a blocking response and remembers the response, if configured. A denied key of the
+     * pool is set aside; the response is only remembered once no key of the pool has queries left.
+     *
+     * @param status  The status of the response.
+     * @param message The message of the response, may be null.
+     * @param key     The license key the request was sent with.
+     * @return The exception to throw.
+     */
+    private ProxyCheckBlockingException blockingException(@NonNull String status, String message,
+                                                          @NonNull String key) {
+        String description = "%s: %s".formatted(status.toUpperCase(), message);
+        if (keyPool != null && status.equalsIgnoreCase("denied")) {
+            keyPool.onDenied(key);
+        }
+        if (negativeCacheSettings.isEnabled() && (keyPool == null || !keyPool.hasRemaining())) {
+            long until = System.currentTimeMillis() + negativeCacheSettings.getBlockedTtl().toMillis();
+            blockedResponse = new BlockedResponse(
+                new LookupResult.Blocked(ProxyCheckBlockingException.stackless(description)), until);
         }
-        return new SuccessWrapper(jsonObject, ipAddress);
+        return new ProxyCheckBlockingException(description);
+    }
+
+    /**
+     * Returns the remembered blocking response, if it has not expired.
+     *
+     * @return The result of lookups refused by the response, or null if no response is remembered.
+     */
+    private LookupResult.Blocked rememberedBlock() {
+        BlockedResponse blocked = blockedResponse;
+        return blocked != null && System.currentTimeMillis() < blocked.until() ? blocked.result() : null;
     }
 
     /**
@@ -144,45 +2418,232 @@ public class ProxyAPI {
     }
 
     /**
-     * Parses a JsonObject from a given URL.
+     * Parses a JsonObject tree from a response body.
      *
-     * @param url The URL to fetch the JsonObject from.
+     * @param reader The reader of the response body.
      * @return The parsed JsonObject.
-     * @throws IOException If an error occurs during the fetching of the JsonObject.
-     * @throws NullPointerException If the url argument is null.
      */
-    private JsonObject parseJsonObjectFromURL(@NonNull String url) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new URL(url).openStream()))) {
-            return JsonParser.parseReader(reader).getAsJsonObject();
+    private JsonObject parseJsonObject(@NonNull Reader reader) {
+        return JsonParser.parseReader(reader).getAsJsonObject();
+    }
+
+    /**
+     * Creates a request builder for the given URL with the configured timeout and encoding headers.
+     *
+     * @param url The URL of the request.
+     * @return The prepared request builder.
+     */
+    private HttpRequest.Builder newRequest(@NonNull String url) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(transportSettings.getRequestTimeout());
+
+        if (transportSettings.isCompression()) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        return builder;
+    }
+
+    /**
+     * Sends a request with the transport and reads its response with the given parser.
+     * If the requests in flight are limited, the request first waits for a free slot.
+     * The outcome and duration of the request are recorded in the circuit breaker, its network and parse time in
+     * the metrics.
+     *
+     * @param request The request to send.
+     * @param parser  The parser reading the response body.
+     * @param <T>     The type of the parsed response.
+     * @return The parsed response.
+     * @throws IOException If the request fails, times out or is answered with an HTTP error status.
+     */
+    private <T> T sendRequest(@NonNull HttpRequest request, @NonNull ResponseParser<T> parser) throws IOException {
+        acquireSlot();
+        long startedAt = System.nanoTime();
+        if (metrics != null) {
+            metrics.onRequestSent();
+        }
+        T parsed;
+        try {
+            HttpResponse<InputStream> response;
+            try {
+                response = transport.send(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for %s".formatted(request.uri()));
+            }
+            long answeredAt = System.nanoTime();
+            if (metrics != null) {
+                metrics.recordNetwork(answeredAt - startedAt);
+            }
+            parsed = parseResponse(response, parser);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - answeredAt);
+            }
+        } catch (IOException | RuntimeException e) {
+            recordOutcome(request, startedAt, e);
+            throw e;
+        }
+        recordOutcome(request, startedAt, null);
+        return parsed;
+    }
+
+    /**
+     * Sends a request with the transport without blocking and reads its response with the given parser.
+     * If the requests in flight are limited, the request is sent once a slot is free. The response is parsed on
+     * the configured executor. The outcome and duration of the request are recorded in the circuit breaker, its
+     * network and parse time in the metrics.
+     *
+     * @param request The request to send.
+     * @param parser  The parser reading the response body.
+     * @param <T>     The type of the parsed response.
+     * @return A CompletableFuture that resolves to the parsed response.
+     */
+    private <T> CompletableFuture<T> sendRequestAsync(@NonNull HttpRequest request,
+                                                      @NonNull ResponseParser<T> parser) {
+        return acquireSlotAsync().thenCompose(ignored -> {
+            long startedAt = System.nanoTime();
+            if (metrics != null) {
+                metrics.onRequestSent();
+            }
+            CompletableFuture<HttpResponse<InputStream>> sent;
+            try {
+                sent = transport.sendAsync(request);
+            } catch (RuntimeException e) {
+                // Release the slot and the probe of the circuit breaker a transport failing right away would keep
+                recordOutcome(request, startedAt, e);
+                return CompletableFuture.failedFuture(e);
+            }
+            if (metrics != null) {
+                sent = sent.whenComplete((response, throwable) -> {
+                    if (response != null) {
+                        metrics.recordNetwork(System.nanoTime() - startedAt);
+                    }
+                });
+            }
+            return sent
+                .thenApplyAsync(response -> {
+                    long parseStartedAt = System.nanoTime();
+                    try {
+                        T parsed = parseResponse(response, parser);
+                        if (metrics != null) {
+                            metrics.recordParse(System.nanoTime() - parseStartedAt);
+                        }
+                        return parsed;
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .whenComplete((parsed, throwable) -> recordOutcome(
+                    request, startedAt, throwable instanceof CompletionException ? throwable.getCause() : throwable));
+        });
+    }
+
+    /**
+     * Reads the response of a request with the given parser.
+     * Compressed responses are decompressed while they are being parsed.
+     *
+     * @param response The response to read.
+     * @param parser   The parser reading the response body.
+     * @param <T>      The type of the parsed response.
+     * @return The parsed response.
+     * @throws IOException If the body cannot be read or the response has an HTTP error status.
+     */
+    private <T> T parseResponse(@NonNull HttpResponse<InputStream> response,
+                                @NonNull ResponseParser<T> parser) throws IOException {
+        try (InputStream body = decodeBody(response)) {
+            if (response.statusCode() >= 400) {
+                throw new IOException("Server returned HTTP status %d for %s".formatted(
+                    response.statusCode(), response.request().uri()));
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                return parser.parse(reader);
+            }
         }
     }
 
+    /**
+     * Returns the body of a response, wrapped in a decompressing stream if the server compressed it.
+     *
+     * @param response The response to read.
+     * @return The stream of the uncompressed body.
+     * @throws IOException If the gzip header cannot be read.
+     */
+    private InputStream decodeBody(@NonNull HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+            .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+            .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    /**
+     * Returns the license key to send a request with: a key picked out of the pool, or the proxy key.
+     *
+     * @return The license key.
+     * @throws RateLimitExceededException If every key of the pool is used up or was denied today.
+     */
+    private String licenseKey() {
+        return keyPool != null ? keyPool.select() : proxyKey;
+    }
+
     /**
      * Formats the URL for fetching data related to the given address.
      *
-     * @param address The address for which to format the URL.
+     * @param address  The address for which to format the URL.
+     * @param settings The settings to request the data with.
+     * @param key      The license key to send the request with.
      * @return The formatted URL as a string.
      */
-    private String formatURL(@NonNull String address) {
+    private String formatURL(@NonNull String address, @NonNull ProxyCheckSettings settings, @NonNull String key) {
 
         // Use StringBuilder for efficient string concatenation
-        StringBuilder formatted = new StringBuilder(String.format(API_URL, address, proxyKey));
-
-        // Append query parameters
-        appendQueryParam(formatted, "vpn", this.proxyCheckSettings.getVpn());
-        appendQueryParam(formatted, "asn", this.proxyCheckSettings.isAsn() ? 1 : 0);
-        appendQueryParam(formatted, "node", this.proxyCheckSettings.isNode() ? 1 : 0);
-        appendQueryParam(formatted, "time", this.proxyCheckSettings.isTime() ? 1 : 0);
-        appendQueryParam(formatted, "port", this.proxyCheckSettings.isPort() ? 1 : 0);
-        appendQueryParam(formatted, "seen", this.proxyCheckSettings.isSeen() ? 1 : 0);
-        appendQueryParam(formatted, "short", this.proxyCheckSettings.isShrt() ? 1 : 0);
-        appendQueryParam(formatted, "risk", String.valueOf(this.proxyCheckSettings.getRisk()));
-        appendQueryParam(formatted, "days", String.valueOf(this.proxyCheckSettings.getDays()));
+        StringBuilder formatted = new StringBuilder(String.format(API_URL, address, key));
+        appendQueryParams(formatted, settings);
 
         // Convert StringBuilder to String before returning
         return formatted.toString();
     }
 
+    /**
+     * Formats the URL for fetching data related to multiple addresses.
+     *
+     * @param key The license key to send the request with.
+     * @return The formatted URL as a string.
+     */
+    private String formatBatchURL(@NonNull String key) {
+        StringBuilder formatted = new StringBuilder(String.format(BATCH_API_URL, key));
+        appendQueryParams(formatted, this.proxyCheckSettings);
+        return formatted.toString();
+    }
+
+    /**
+     * Formats the form encoded body listing the addresses of a multi-address request.
+     *
+     * @param ipAddresses The addresses to list.
+     * @return The formatted body as a string.
+     */
+    private String formatBatchBody(@NonNull List<String> ipAddresses) {
+        return "ips=" + URLEncoder.encode(String.join(",", ipAddresses), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the query parameters of the proxy check settings to a StringBuilder.
+     *
+     * @param formatted The StringBuilder to append the query parameters to.
+     * @param settings  The settings to append.
+     */
+    private void appendQueryParams(StringBuilder formatted, ProxyCheckSettings settings) {
+
+        // Append query parameters
+        appendQueryParam(formatted, "vpn", settings.getVpn());
+        appendQueryParam(formatted, "asn", settings.isAsn() ? 1 : 0);
+        appendQueryParam(formatted, "node", settings.isNode() ? 1 : 0);
+        appendQueryParam(formatted, "time", settings.isTime() ? 1 : 0);
+        appendQueryParam(formatted, "port", settings.isPort() ? 1 : 0);
+        appendQueryParam(formatted, "seen", settings.isSeen() ? 1 : 0);
+        appendQueryParam(formatted, "short", settings.isShrt() ? 1 : 0);
+        appendQueryParam(formatted, "risk", String.valueOf(settings.getRisk()));
+        appendQueryParam(formatted, "days", String.valueOf(settings.getDays()));
+    }
+
     /**
      * Appends a query parameter to a StringBuilder.
      *
@@ -194,4 +2655,57 @@ public class ProxyAPI {
         // Append "&key=value" to the StringBuilder
         builder.append("&").append(key).append("=").append(value);
     }
-}
\ No newline at end of file
+
+    /**
+     * A remembered blocking response.
+     *
+     * @param result The result of lookups refused by the response, holding a stackless exception.
+     * @param until  The time the response is forgotten, in milliseconds since the epoch.
+     */
+    private record BlockedResponse(LookupResult.Blocked result, long until) {
+    }
+
+    /**
+     * An asynchronous request in flight.
+     *
+     * @param future   The future handed out to the callers of the request.
+     * @param priority The priority the request was sent with.
+     */
+    private record InFlightRequest(CompletableFuture<SuccessWrapper> future, Priority priority) {
+    }
+
+    /**
+     * A parser reading a response body of the proxy check API.
+     *
+     * @param <T> The type of the parsed response.
+     */
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+
+        /**
+         * Parses a response body.
+         *
+         * @param reader The reader of the response body.
+         * @return The parsed response.
+         * @throws IOException If the body cannot be read.
+         */
+        T parse(Reader reader) throws IOException;
+    }
+
+    /**
+     * A call sending a request of the proxy check API and parsing its response.
+     *
+     * @param <T> The type of the parsed response.
+     */
+    @FunctionalInterface
+    private interface RequestCall<T> {
+
+        /**
+         * Sends the request.
+         *
+         * @return The parsed response.
+         * @throws IOException If the request fails.
+         */
+        T send() throws IOException;
+    }
+}
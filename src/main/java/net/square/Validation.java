@@ -22,4 +22,18 @@ public class Validation {
             throw new NullPointerException(errorMessage);
         }
     }
+
+    /**
+     * Checks if the given condition holds. If it does not, an IllegalArgumentException
+     * with the given error message is thrown.
+     *
+     * @param condition    The condition to check.
+     * @param errorMessage The error message to include in the IllegalArgumentException.
+     * @throws IllegalArgumentException If the condition does not hold.
+     */
+    public void checkArgument(boolean condition, String errorMessage) {
+        if (!condition) {
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
 }
@@ -0,0 +1,222 @@
+package net.square.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+import net.square.limit.Priority;
+import net.square.settings.BatchSettings;
+import net.square.wrapper.impl.SuccessWrapper;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * The AddressBatchCoalescer merges single address lookups that arrive within a short window into one batched
+ * request. The first pending address arms a timer; the batch is sent when the timer fires or as soon as the
+ * configured number of addresses is pending, whichever happens first.
+ * <p>
+ * Addresses are collected in a separate batch per {@link Priority}, so that a batch is sent with the priority of
+ * all its addresses and background refreshes never take the quota of interactive lookups.
+ */
+public class AddressBatchCoalescer implements AutoCloseable {
+
+    /**
+     * The function that fetches a batch of addresses with a priority and returns a result for every requested
+     * address.
+     */
+    private final BiFunction<List<String>, Priority, Map<String, SuccessWrapper>> batchFetcher;
+
+    /**
+     * The window in nanoseconds a pending address waits for other addresses.
+     */
+    private final long windowNanos;
+
+    /**
+     * The number of pending addresses that sends the batch immediately.
+     */
+    private final int maxAddresses;
+
+    /**
+     * The scheduler arming the window timers. It only hands batches over and never performs requests itself.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The executor on which the batched requests are performed.
+     */
+    private final Executor dispatcher;
+
+    /**
+     * Guards the pending batches and their timers.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The addresses of the batches currently being collected per priority, mapped to the futures handed out to
+     * their callers.
+     */
+    private final Map<Priority, Map<String, CompletableFuture<SuccessWrapper>>> pending = new EnumMap<>(Priority.class);
+
+    /**
+     * The timers of the batches currently being collected per priority.
+     */
+    private final Map<Priority, ScheduledFuture<?>> flushTasks = new EnumMap<>(Priority.class);
+
+    /**
+     * Constructs an AddressBatchCoalescer.
+     *
+     * @param settings     The settings describing the window and the maximum batch size.
+     * @param dispatcher   The executor on which the batched requests are performed.
+     * @param batchFetcher The function performing the batched request with the priority of the batch.
+     */
+    public AddressBatchCoalescer(
+        @NonNull BatchSettings settings, @NonNull Executor dispatcher,
+        @NonNull BiFunction<List<String>, Priority, Map<String, SuccessWrapper>> batchFetcher) {
+        this.batchFetcher = batchFetcher;
+        this.windowNanos = settings.getWindow().toNanos();
+        this.maxAddresses = Math.max(1, Math.min(settings.getMaxAddresses(), BatchSettings.MAX_ADDRESSES_PER_REQUEST));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("proxyapi-batch-timer-%d").build());
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Adds an address to the batch of its priority currently being collected.
+     * Concurrent submissions of the same address share one future. An address pending in the batch of a lower
+     * priority is moved into the batch of the higher priority, so that an interactive lookup never waits for a
+     * background batch.
+     *
+     * @param ipAddress The IP address to fetch.
+     * @param priority  The priority of the request.
+     * @return A CompletableFuture that resolves to the {@link SuccessWrapper} of the address.
+     */
+    public CompletableFuture<SuccessWrapper> submit(@NonNull String ipAddress, @NonNull Priority priority) {
+        Map<String, CompletableFuture<SuccessWrapper>> full = null;
+        CompletableFuture<SuccessWrapper> future;
+
+        synchronized (lock) {
+            CompletableFuture<SuccessWrapper> existing = null;
+            for (Priority batchPriority : Priority.values()) {
+                Map<String, CompletableFuture<SuccessWrapper>> batch = pending.get(batchPriority);
+                existing = batch != null ? batch.get(ipAddress) : null;
+                if (existing == null) {
+                    continue;
+                }
+                if (!priority.outranks(batchPriority)) {
+                    return existing;
+                }
+
+                // Promote the address, keeping the future handed out to the callers of the lower priority
+                batch.remove(ipAddress);
+                if (batch.isEmpty()) {
+                    drain(batchPriority);
+                }
+                break;
+            }
+
+            Map<String, CompletableFuture<SuccessWrapper>> batch = pending.computeIfAbsent(
+                priority, key -> new LinkedHashMap<>());
+            future = existing != null ? existing : new CompletableFuture<>();
+            batch.put(ipAddress, future);
+
+            if (batch.size() >= maxAddresses) {
+                full = drain(priority);
+            } else if (!flushTasks.containsKey(priority)) {
+                flushTasks.put(priority, scheduler.schedule(
+                    () -> flush(priority), windowNanos, TimeUnit.NANOSECONDS));
+            }
+        }
+
+        if (full != null) {
+            dispatch(full, priority);
+        }
+        return future;
+    }
+
+    /**
+     * Returns the number of addresses of the batches currently being collected.
+     *
+     * @return The number of pending addresses.
+     */
+    public int pending() {
+        synchronized (lock) {
+            int addresses = 0;
+            for (Map<String, CompletableFuture<SuccessWrapper>> batch : pending.values()) {
+                addresses += batch.size();
+            }
+            return addresses;
+        }
+    }
+
+    /**
+     * Stops the window timers. Addresses still waiting for their batch to be sent are cancelled.
+     */
+    @Override
+    public void close() {
+        List<CompletableFuture<SuccessWrapper>> waiting = new ArrayList<>();
+        synchronized (lock) {
+            for (Priority priority : Priority.values()) {
+                waiting.addAll(drain(priority).values());
+            }
+        }
+        scheduler.shutdownNow();
+        waiting.forEach(future -> future.cancel(false));
+    }
+
+    /**
+     * Sends the batch of a priority currently being collected, if any. Called by the window timer.
+     *
+     * @param priority The priority of the batch.
+     */
+    private void flush(Priority priority) {
+        Map<String, CompletableFuture<SuccessWrapper>> batch;
+        synchronized (lock) {
+            batch = drain(priority);
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch, priority);
+        }
+    }
+
+    /**
+     * Takes the batch of a priority currently being collected. Must be called while holding the lock.
+     *
+     * @param priority The priority of the batch.
+     * @return The addresses of the taken batch mapped to their futures.
+     */
+    private Map<String, CompletableFuture<SuccessWrapper>> drain(Priority priority) {
+        Map<String, CompletableFuture<SuccessWrapper>> batch = pending.remove(priority);
+
+        ScheduledFuture<?> flushTask = flushTasks.remove(priority);
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        return batch != null ? batch : Map.of();
+    }
+
+    /**
+     * Performs the batched request on the dispatcher and completes the futures of all addresses in the batch.
+     *
+     * @param batch    The addresses of the batch mapped to their futures.
+     * @param priority The priority of the batch.
+     */
+    private void dispatch(Map<String, CompletableFuture<SuccessWrapper>> batch, Priority priority) {
+        dispatcher.execute(() -> {
+            try {
+                Map<String, SuccessWrapper> results = batchFetcher.apply(new ArrayList<>(batch.keySet()), priority);
+                batch.forEach((ipAddress, future) -> future.complete(results.get(ipAddress)));
+            } catch (Throwable throwable) {
+                batch.values().forEach(future -> future.completeExceptionally(throwable));
+            }
+        });
+    }
+}
@@ -0,0 +1,202 @@
+package net.square.cache;
+
+import com.google.common.net.InetAddresses;
+import lombok.NonNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * The AddressKey class is the canonical binary form of an IP address, used as cache key.
+ * IPv4 addresses are packed into an int and stored in their IPv4-mapped IPv6 form, IPv6 addresses into two longs.
+ * Different spellings of the same address, such as {@code "::1"} and {@code "0:0:0:0:0:0:0:1"}, or addresses
+ * surrounded by whitespace, therefore map to the same key.
+ * <p>
+ * An instance takes 32 bytes and retains no string, compared to about 48 to 100 bytes for a String key.
+ */
+public final class AddressKey {
+
+    /**
+     * The lower 64 bits of an IPv4-mapped IPv6 address without the IPv4 address ({@code ::ffff:0:0}).
+     */
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+
+    /**
+     * The upper 64 bits of the address.
+     */
+    private final long high;
+
+    /**
+     * The lower 64 bits of the address.
+     */
+    private final long low;
+
+    /**
+     * Constructs an AddressKey out of the two halves of an IPv6 address.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     */
+    private AddressKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Creates the AddressKey of an IPv4 address.
+     *
+     * @param address The IPv4 address packed into an int, in network byte order.
+     * @return The AddressKey of the address.
+     */
+    public static AddressKey ofIPv4(int address) {
+        return new AddressKey(0L, IPV4_MAPPED_PREFIX | (address & 0xFFFF_FFFFL));
+    }
+
+    /**
+     * Creates the AddressKey of an IPv6 address.
+     * IPv4-mapped addresses result in the same key as the IPv4 address they map.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     * @return The AddressKey of the address.
+     */
+    public static AddressKey ofIPv6(long high, long low) {
+        return new AddressKey(high, low);
+    }
+
+    /**
+     * Parses the AddressKey of a textual IP address. Surrounding whitespace and the brackets of IPv6 literals are
+     * ignored. No name service is consulted.
+     *
+     * @param address The textual IP address.
+     * @return The AddressKey of the address.
+     * @throws IllegalArgumentException If the text is not an IP address.
+     */
+    public static AddressKey of(@NonNull String address) {
+        String trimmed = address.strip();
+        if (trimmed.length() > 2 && trimmed.charAt(0) == '[' && trimmed.charAt(trimmed.length() - 1) == ']') {
+            trimmed = trimmed.substring(1, trimmed.length() - 1);
+        }
+
+        byte[] bytes = InetAddresses.forString(trimmed).getAddress();
+        if (bytes.length == 4) {
+            return ofIPv4(toInt(bytes, 0));
+        }
+        return ofIPv6(((long) toInt(bytes, 0) << 32) | (toInt(bytes, 4) & 0xFFFF_FFFFL),
+                      ((long) toInt(bytes, 8) << 32) | (toInt(bytes, 12) & 0xFFFF_FFFFL));
+    }
+
+    /**
+     * Checks if this key is an IPv4 address.
+     *
+     * @return true if this key is an IPv4 address, false if it is an IPv6 address.
+     */
+    public boolean isIPv4() {
+        return high == 0L && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Returns the IPv4 address of this key.
+     *
+     * @return The IPv4 address packed into an int, in network byte order.
+     * @throws IllegalStateException If this key is not an IPv4 address.
+     */
+    public int toIPv4() {
+        if (!isIPv4()) {
+            throw new IllegalStateException("%s is not an IPv4 address".formatted(this));
+        }
+        return (int) low;
+    }
+
+    /**
+     * Returns the upper 64 bits of the address.
+     *
+     * @return The upper 64 bits.
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Returns the lower 64 bits of the address.
+     *
+     * @return The lower 64 bits.
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Returns the address as an InetAddress.
+     *
+     * @return The InetAddress of this key.
+     */
+    public InetAddress toInetAddress() {
+        byte[] bytes = isIPv4() ? new byte[4] : new byte[16];
+        if (isIPv4()) {
+            putInt(bytes, 0, (int) low);
+        } else {
+            putInt(bytes, 0, (int) (high >>> 32));
+            putInt(bytes, 4, (int) high);
+            putInt(bytes, 8, (int) (low >>> 32));
+            putInt(bytes, 12, (int) low);
+        }
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            // Only thrown for arrays of illegal length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the canonical text of the address: dotted quad for IPv4 and RFC 5952 for IPv6.
+     *
+     * @return The canonical text of the address.
+     */
+    @Override
+    public String toString() {
+        return InetAddresses.toAddrString(toInetAddress());
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return this == object
+            || object instanceof AddressKey other && high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // Mix both halves so that keys differing only in the last octets spread over all buckets
+        long hash = (high * 0x9E37_79B9_7F4A_7C15L) ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51_AFD7_ED55_8CCDL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Reads four bytes in network byte order.
+     *
+     * @param bytes  The bytes to read.
+     * @param offset The offset of the first byte.
+     * @return The int of the four bytes.
+     */
+    private static int toInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+            | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Writes four bytes in network byte order.
+     *
+     * @param bytes  The bytes to write to.
+     * @param offset The offset of the first byte.
+     * @param value  The int to write.
+     */
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,60 @@
+package net.square.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import net.square.wrapper.compact.CompactAddressData;
+
+import java.time.Duration;
+
+/**
+ * The CachedCompactData class is a cached {@link CompactAddressData} together with the time it expires, which may
+ * differ per result like that of a {@link CachedResult}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CachedCompactData {
+
+    /**
+     * The cached compact result.
+     */
+    private final CompactAddressData data;
+
+    /**
+     * The time the result expires, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Creates a CachedCompactData.
+     *
+     * @param data      The cached compact result.
+     * @param fetchedAt The time the result was fetched, in milliseconds since the epoch.
+     * @param ttl       The time the result stays valid after it was fetched.
+     * @return The CachedCompactData.
+     */
+    public static CachedCompactData of(@NonNull CompactAddressData data, long fetchedAt, @NonNull Duration ttl) {
+        return new CachedCompactData(data, fetchedAt + ttl.toMillis());
+    }
+
+    /**
+     * Compacts a CachedResult, keeping the time it expires.
+     *
+     * @param cachedResult The cached result.
+     * @return The CachedCompactData.
+     */
+    public static CachedCompactData from(@NonNull CachedResult cachedResult) {
+        return new CachedCompactData(CompactAddressData.from(cachedResult.getResult()), cachedResult.getExpiresAt());
+    }
+
+    /**
+     * Checks if the result has expired.
+     *
+     * @param now The current time in milliseconds since the epoch.
+     * @return true if the result has expired.
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
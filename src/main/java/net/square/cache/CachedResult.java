@@ -0,0 +1,68 @@
+package net.square.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import net.square.wrapper.impl.SuccessWrapper;
+
+import java.time.Duration;
+
+/**
+ * The CachedResult class is a cached {@link SuccessWrapper} together with the time it was fetched from
+ * proxycheck.io and the time it expires, which may differ per result. Results restored from disk keep their
+ * original times, so they expire as if they had never left the memory.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CachedResult {
+
+    /**
+     * The cached result.
+     */
+    private final SuccessWrapper result;
+
+    /**
+     * The time the result was fetched, in milliseconds since the epoch.
+     */
+    private final long fetchedAt;
+
+    /**
+     * The time the result expires, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Creates a CachedResult.
+     *
+     * @param result    The cached result.
+     * @param fetchedAt The time the result was fetched, in milliseconds since the epoch.
+     * @param ttl       The time the result stays valid after it was fetched.
+     * @return The CachedResult.
+     */
+    public static CachedResult of(@NonNull SuccessWrapper result, long fetchedAt, @NonNull Duration ttl) {
+        return new CachedResult(result, fetchedAt, fetchedAt + ttl.toMillis());
+    }
+
+    /**
+     * Restores a CachedResult with the times it was originally cached with.
+     *
+     * @param result    The cached result.
+     * @param fetchedAt The time the result was fetched, in milliseconds since the epoch.
+     * @param expiresAt The time the result expires, in milliseconds since the epoch.
+     * @return The CachedResult.
+     */
+    public static CachedResult restore(@NonNull SuccessWrapper result, long fetchedAt, long expiresAt) {
+        return new CachedResult(result, fetchedAt, expiresAt);
+    }
+
+    /**
+     * Checks if the result has expired.
+     *
+     * @param now The current time in milliseconds since the epoch.
+     * @return true if the result has expired.
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
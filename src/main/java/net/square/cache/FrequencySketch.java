@@ -0,0 +1,183 @@
+package net.square.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The FrequencySketch class estimates how often an address was accessed recently, in constant memory.
+ * It is a count-min sketch with four 4-bit counters per address, as used by TinyLFU admission policies: each
+ * address increments one counter in each of four rows and its frequency is the smallest of them, so collisions can
+ * only overestimate it. Once the number of increments reaches ten times the capacity, all counters are halved,
+ * so that the sketch follows changing access patterns.
+ * <p>
+ * The sketch is safe to use from several threads. A word packs sixteen counters, so every update of a word is a
+ * compare-and-set that checks the saturation of the counter again on each attempt: no increment is lost and none
+ * carries over into the neighbouring counter. Halving happens word by word, so an increment racing with it may or
+ * may not be halved, and only one thread halves the counters per sample.
+ */
+public class FrequencySketch {
+
+    /**
+     * The highest value of a 4-bit counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * The mask of the lower bit of every counter in a word, used when halving the counters.
+     */
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+
+    /**
+     * The seeds of the four rows.
+     */
+    private static final long[] SEEDS = {
+        0xC3A5_C85C_97CB_3127L, 0xB492_B66F_BE98_F273L, 0x9AE1_6A3B_2F90_404FL, 0xCBF2_9CE4_8422_2325L
+    };
+
+    /**
+     * The counters, sixteen per word.
+     */
+    private final AtomicLongArray table;
+
+    /**
+     * The mask turning a hash into a word index.
+     */
+    private final int mask;
+
+    /**
+     * The number of increments after which all counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The number of increments since the counters were last halved.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructs a FrequencySketch.
+     *
+     * @param capacity The number of addresses expected to be tracked, such as the number of cached entries.
+     */
+    public FrequencySketch(int capacity) {
+        int words = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 26)) - 1) << 1;
+        this.table = new AtomicLongArray(words);
+        this.mask = words - 1;
+        this.sampleSize = 10 * Math.max(capacity, 1);
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of an address.
+     *
+     * @param addressKey The address.
+     * @return The estimated frequency, from 0 to 15.
+     */
+    public int frequency(AddressKey addressKey) {
+        int hash = spread(addressKey.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counter(hash, row));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of an address.
+     *
+     * @param addressKey The address.
+     */
+    public void increment(AddressKey addressKey) {
+        int hash = spread(addressKey.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            added |= incrementAt(hash, row);
+        }
+
+        if (added && size.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the counter of a hash in a row.
+     *
+     * @param hash The spread hash of the address.
+     * @param row  The row, from 0 to 3.
+     * @return The value of the counter.
+     */
+    private int counter(int hash, int row) {
+        int index = indexOf(hash, row);
+        int shift = offsetOf(hash, row) << 2;
+        return (int) ((table.get(index) >>> shift) & MAX_COUNT);
+    }
+
+    /**
+     * Increments the counter of a hash in a row, unless it is saturated.
+     *
+     * @param hash The spread hash of the address.
+     * @param row  The row, from 0 to 3.
+     * @return true if the counter was incremented.
+     */
+    private boolean incrementAt(int hash, int row) {
+        int index = indexOf(hash, row);
+        int shift = offsetOf(hash, row) << 2;
+        long bits = (long) MAX_COUNT << shift;
+        long word;
+        do {
+            word = table.get(index);
+            if ((word & bits) == bits) {
+                return false;
+            }
+        } while (!table.compareAndSet(index, word, word + (1L << shift)));
+        return true;
+    }
+
+    /**
+     * Halves all counters, unless another thread already did so for this sample.
+     */
+    private void reset() {
+        int current = size.get();
+        if (current < sampleSize || !size.compareAndSet(current, current >>> 1)) {
+            return;
+        }
+        for (int index = 0; index < table.length(); index++) {
+            table.getAndUpdate(index, word -> (word >>> 1) & RESET_MASK);
+        }
+    }
+
+    /**
+     * Returns the word holding the counter of a hash in a row.
+     *
+     * @param hash The spread hash of the address.
+     * @param row  The row, from 0 to 3.
+     * @return The index of the word.
+     */
+    private int indexOf(int hash, int row) {
+        long rowHash = (hash + SEEDS[row]) * SEEDS[row];
+        rowHash += rowHash >>> 32;
+        return (int) rowHash & mask;
+    }
+
+    /**
+     * Returns the position of the counter of a hash in a row within its word.
+     * Each row uses its own quarter of the sixteen counters of a word.
+     *
+     * @param hash The spread hash of the address.
+     * @param row  The row, from 0 to 3.
+     * @return The position of the counter, from 0 to 15.
+     */
+    private static int offsetOf(int hash, int row) {
+        return (row << 2) + ((hash >>> (row << 3)) & 3);
+    }
+
+    /**
+     * Applies a supplemental hash to the hash code of an address.
+     *
+     * @param hashCode The hash code of the address.
+     * @return The spread hash.
+     */
+    private static int spread(int hashCode) {
+        int hash = hashCode * 0x31848BAB;
+        return hash ^ (hash >>> 14);
+    }
+}
@@ -0,0 +1,522 @@
+package net.square.cache;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.NonNull;
+import net.square.wrapper.DefaultWrapper;
+import net.square.wrapper.impl.AddressJsonEncoder;
+import net.square.wrapper.impl.SuccessWrapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The PersistentCache class is an on-disk tier behind the in-memory cache, so that cached results survive restarts.
+ * Results are appended to a single file as compact records: the binary address, the times the result was fetched
+ * and expires, a hash of the settings it was fetched with and the JSON text of the address.
+ * <p>
+ * The file is opened lazily on first access. Opening only reads the fixed-size record headers to build an index of
+ * the offsets of the valid records; a record is read and decoded when its address is requested, and the decoding of
+ * its address data is deferred until first access. Records that have expired or were fetched with other settings are
+ * ignored. The index holds at most the maximum number of entries: expired records are dropped from it every
+ * {@value #SWEEP_INTERVAL} appends, and the records stored longest ago once it is full. The file is compacted
+ * whenever most of its records are obsolete, on opening as well as while it is in use.
+ * A record cut off by a crash while it was written is dropped.
+ */
+public class PersistentCache implements AutoCloseable {
+
+    /**
+     * The magic number at the beginning of the file, {@code "PXC2"}.
+     */
+    private static final int MAGIC = 0x5058_4332;
+
+    /**
+     * The size of the file header, which only holds the magic number.
+     */
+    private static final int FILE_HEADER = 4;
+
+    /**
+     * The size of a record header: length (4), upper address half (8), lower address half (8), fetched at (8),
+     * expires at (8), settings hash (4).
+     */
+    private static final int RECORD_HEADER = 40;
+
+    /**
+     * The number of records a file needs before it is considered for compaction.
+     */
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    /**
+     * The number of appends after which expired records are dropped from the index.
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    /**
+     * The file holding the records.
+     */
+    private final Path file;
+
+    /**
+     * The hash of the settings the results are fetched with. Records with another hash are ignored.
+     */
+    private final int settingsHash;
+
+    /**
+     * Whether restored results retain a raw JSON object.
+     */
+    private final boolean retainRawObject;
+
+    /**
+     * The maximum number of addresses kept in the index.
+     */
+    private final int maxEntries;
+
+    /**
+     * The valid records, keyed by address.
+     */
+    private final Map<AddressKey, Slot> index = new ConcurrentHashMap<>();
+
+    /**
+     * Guards opening the file, appending to it and sweeping the index.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Keeps reads out while the file is compacted: reads hold the read lock, compaction holds the write lock.
+     */
+    private final ReadWriteLock compaction = new ReentrantReadWriteLock();
+
+    /**
+     * The channel of the opened file, or null until it is first accessed.
+     */
+    private volatile FileChannel channel;
+
+    /**
+     * The offset the next record is appended at. Guarded by the lock.
+     */
+    private long size;
+
+    /**
+     * The number of records in the file, valid or obsolete. Guarded by the lock.
+     */
+    private int records;
+
+    /**
+     * The number of appends since expired records were last dropped from the index. Guarded by the lock.
+     */
+    private int appendsSinceSweep;
+
+    /**
+     * Constructs a PersistentCache. The file is not opened before the first access.
+     *
+     * @param file            The file holding the records. It is created if it does not exist.
+     * @param settings        The query parameters the results are fetched with.
+     * @param maxEntries      The maximum number of addresses kept.
+     * @param retainRawObject Whether restored results retain a raw JSON object.
+     */
+    public PersistentCache(@NonNull Path file, @NonNull String settings, int maxEntries, boolean retainRawObject) {
+        this.file = file;
+        this.settingsHash = settings.hashCode();
+        this.maxEntries = maxEntries;
+        this.retainRawObject = retainRawObject;
+    }
+
+    /**
+     * Returns the result of an address stored on disk.
+     *
+     * @param addressKey The address.
+     * @return The result with the time it was originally fetched, or null if no valid result is stored.
+     * @throws IOException If the file cannot be read.
+     */
+    public CachedResult get(@NonNull AddressKey addressKey) throws IOException {
+        channel();
+
+        ByteBuffer record;
+        compaction.readLock().lock();
+        try {
+            // The file may have been closed in between
+            FileChannel fileChannel = channel;
+            Slot slot = index.get(addressKey);
+            if (fileChannel == null || slot == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= slot.expiresAt()) {
+                index.remove(addressKey, slot);
+                return null;
+            }
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(fileChannel, length, slot.offset());
+            record = ByteBuffer.allocate(length.getInt(0));
+            readFully(fileChannel, record, slot.offset());
+        } finally {
+            compaction.readLock().unlock();
+        }
+
+        record.position(4 + 16);
+        long fetchedAt = record.getLong();
+        long expiresAt = record.getLong();
+        record.getInt();
+
+        String ipAddress = readString(record);
+        String status = readString(record);
+        String node = readString(record);
+        String queryTime = readString(record);
+        String addressJson = readString(record);
+
+        return CachedResult.restore(
+            toSuccessWrapper(status, node, ipAddress, queryTime, addressJson), fetchedAt, expiresAt);
+    }
+
+    /**
+     * Appends the result of an address to the file. It supersedes any result of the address stored before.
+     * Every {@value #SWEEP_INTERVAL} appends, or once the index is full, the index is swept and the file is
+     * compacted if most of its records are obsolete.
+     *
+     * @param addressKey   The address.
+     * @param cachedResult The result and the time it was fetched.
+     * @throws IOException If the file cannot be written.
+     */
+    public void put(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) throws IOException {
+        SuccessWrapper result = cachedResult.getResult();
+        byte[][] strings = {
+            bytes(result.getIpAddress()), bytes(result.getStatus()), bytes(result.getNode()),
+            bytes(result.getQueryTime()), bytes(addressJson(result))
+        };
+
+        int length = RECORD_HEADER;
+        for (byte[] string : strings) {
+            length += 4 + string.length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length)
+            .putInt(length)
+            .putLong(addressKey.getHigh())
+            .putLong(addressKey.getLow())
+            .putLong(cachedResult.getFetchedAt())
+            .putLong(cachedResult.getExpiresAt())
+            .putInt(settingsHash);
+        for (byte[] string : strings) {
+            record.putInt(string.length).put(string);
+        }
+        record.flip();
+
+        synchronized (lock) {
+            FileChannel fileChannel = channel();
+            long offset = size;
+            writeFully(fileChannel, record, offset);
+            size += length;
+            records++;
+            index.put(addressKey, new Slot(offset, cachedResult.getExpiresAt()));
+
+            if (++appendsSinceSweep >= SWEEP_INTERVAL || index.size() > maxEntries) {
+                sweep();
+            }
+        }
+    }
+
+    /**
+     * Closes the file, if it was opened. A later access opens it again.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            compaction.writeLock().lock();
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            } finally {
+                compaction.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the channel of the file, opening it and building the index on first access.
+     *
+     * @return The channel of the file.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    private FileChannel channel() throws IOException {
+        FileChannel current = channel;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (channel == null) {
+                channel = open();
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Opens the file, builds the index of its valid records and compacts it if most records are obsolete.
+     *
+     * @return The channel of the file.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    private FileChannel open() throws IOException {
+        FileChannel fileChannel = FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long fileSize = fileChannel.size();
+        ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER);
+        if (fileSize < FILE_HEADER || fileChannel.read(magic, 0) < FILE_HEADER || magic.getInt(0) != MAGIC) {
+            // A new file or one of another format, start over
+            fileChannel.truncate(0);
+            writeFully(fileChannel, magic.clear().putInt(MAGIC).flip(), 0);
+            size = FILE_HEADER;
+            return fileChannel;
+        }
+
+        long now = System.currentTimeMillis();
+        int records = 0;
+        long offset = FILE_HEADER;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+
+        while (offset + RECORD_HEADER <= fileSize) {
+            readFully(fileChannel, header.clear(), offset);
+            int length = header.getInt(0);
+            if (length < RECORD_HEADER || offset + length > fileSize) {
+                break;
+            }
+
+            AddressKey addressKey = AddressKey.ofIPv6(header.getLong(4), header.getLong(12));
+            long expiresAt = header.getLong(28);
+            if (header.getInt(36) == settingsHash && now < expiresAt) {
+                index.put(addressKey, new Slot(offset, expiresAt));
+            } else {
+                index.remove(addressKey);
+            }
+            records++;
+            offset += length;
+        }
+
+        // Drop a record cut off while it was written
+        if (offset < fileSize) {
+            fileChannel.truncate(offset);
+        }
+        size = offset;
+        this.records = records;
+
+        dropOldest();
+        if (mostlyObsolete()) {
+            return compact(fileChannel);
+        }
+        return fileChannel;
+    }
+
+    /**
+     * Drops expired records from the index, and the records stored longest ago if it is full. Compacts the file
+     * if most of its records are obsolete afterwards. Called with the lock held.
+     *
+     * @throws IOException If the file cannot be compacted.
+     */
+    private void sweep() throws IOException {
+        appendsSinceSweep = 0;
+        long now = System.currentTimeMillis();
+        index.values().removeIf(slot -> now >= slot.expiresAt());
+        dropOldest();
+
+        if (mostlyObsolete()) {
+            compaction.writeLock().lock();
+            try {
+                channel = compact(channel);
+            } finally {
+                compaction.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops the records stored longest ago from the index if it holds more than the maximum number of entries.
+     * An eighth of the entries is dropped at once, so that appends to a full index do not sweep it every time.
+     * Called with the lock held.
+     */
+    private void dropOldest() {
+        if (index.size() <= maxEntries) {
+            return;
+        }
+
+        // Offsets grow with every append, so the lowest ones belong to the records stored longest ago
+        long[] offsets = index.values().stream().mapToLong(Slot::offset).sorted().toArray();
+        long oldestKept = offsets[offsets.length - (maxEntries - maxEntries / 8)];
+        index.values().removeIf(slot -> slot.offset() < oldestKept);
+    }
+
+    /**
+     * Checks if the file is worth compacting. Called with the lock held.
+     *
+     * @return true if the file holds enough records and most of them are obsolete, false otherwise.
+     */
+    private boolean mostlyObsolete() {
+        return records >= MIN_COMPACTION_RECORDS && index.size() * 2 < records;
+    }
+
+    /**
+     * Rewrites the file with only its valid records and atomically replaces the old file. Called with the lock
+     * held, and the write lock of the compaction while the file is in use.
+     *
+     * @param fileChannel The channel of the old file.
+     * @return The channel of the compacted file.
+     * @throws IOException If the file cannot be rewritten.
+     */
+    private FileChannel compact(FileChannel fileChannel) throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<AddressKey, Slot> slots = new HashMap<>();
+
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = FILE_HEADER;
+            writeFully(target, ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).flip(), 0);
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            for (Map.Entry<AddressKey, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                readFully(fileChannel, length.clear(), slot.offset());
+                ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+                readFully(fileChannel, record, slot.offset());
+
+                writeFully(target, record.flip(), position);
+                slots.put(entry.getKey(), new Slot(position, slot.expiresAt()));
+                position += record.limit();
+            }
+            target.force(true);
+            size = position;
+        }
+        fileChannel.close();
+
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index.putAll(slots);
+        records = slots.size();
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Creates the SuccessWrapper of a restored record.
+     *
+     * @param status      The status of the response.
+     * @param node        The node that answered the request.
+     * @param ipAddress   The IP address the response belongs to.
+     * @param queryTime   The query time of the response.
+     * @param addressJson The JSON text of the address object.
+     * @return The SuccessWrapper, decoding its address data on first access unless raw objects are retained.
+     */
+    private SuccessWrapper toSuccessWrapper(String status, String node, String ipAddress, String queryTime,
+                                            String addressJson) {
+        if (!retainRawObject) {
+            return SuccessWrapper.lazy(status, node, ipAddress, queryTime, addressJson);
+        }
+
+        JsonObject jsonObject = new JsonObject();
+        if (!DefaultWrapper.ERROR.equals(status)) {
+            jsonObject.addProperty("status", status);
+        }
+        if (!DefaultWrapper.ERROR.equals(node)) {
+            jsonObject.addProperty("node", node);
+        }
+        jsonObject.add(ipAddress, JsonParser.parseString(addressJson));
+        if (!DefaultWrapper.ERROR.equals(queryTime)) {
+            jsonObject.addProperty("query time", queryTime);
+        }
+        return new SuccessWrapper(jsonObject, ipAddress);
+    }
+
+    /**
+     * Returns the JSON text of the address of a result. The original object is used if the result retains it.
+     *
+     * @param result The result.
+     * @return The JSON text of the address object.
+     */
+    private static String addressJson(SuccessWrapper result) {
+        JsonObject rawObject = result.getRawObject();
+        if (rawObject != null) {
+            JsonElement address = rawObject.get(result.getIpAddress());
+            if (address != null && address.isJsonObject()) {
+                return address.toString();
+            }
+        }
+        return AddressJsonEncoder.encode(result.getAddressWrapper());
+    }
+
+    /**
+     * Encodes a string in UTF-8. Null is encoded as {@link DefaultWrapper#ERROR}.
+     *
+     * @param string The string to encode.
+     * @return The bytes of the string.
+     */
+    private static byte[] bytes(String string) {
+        return (string != null ? string : DefaultWrapper.ERROR).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param buffer The buffer to read from.
+     * @return The string.
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Reads bytes at a position until the buffer is full.
+     *
+     * @param fileChannel The channel to read from.
+     * @param buffer      The buffer to fill.
+     * @param position    The position of the first byte.
+     * @throws IOException If the bytes cannot be read or the file ends before.
+     */
+    private static void readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at offset %d".formatted(position));
+            }
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer at a position.
+     *
+     * @param fileChannel The channel to write to.
+     * @param buffer      The buffer to write.
+     * @param position    The position of the first byte.
+     * @throws IOException If the bytes cannot be written.
+     */
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * The location of a valid record in the file.
+     *
+     * @param offset    The offset of the record.
+     * @param expiresAt The time the result of the record expires.
+     */
+    private record Slot(long offset, long expiresAt) {
+    }
+}
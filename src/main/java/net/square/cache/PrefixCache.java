@@ -0,0 +1,93 @@
+package net.square.cache;
+
+import lombok.NonNull;
+import net.square.settings.PrefixSettings;
+import net.square.wrapper.compact.CompactAddressData;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The PrefixCache class shares the results of hosting and VPN ranges between the addresses of their prefix.
+ * Results qualifying under the {@link PrefixSettings} are stored in a {@link PrefixTrie} under the prefix of their
+ * address; a lookup of another address within the prefix is answered with a copy of the result carrying the
+ * requested address, which expires together with the original.
+ */
+public class PrefixCache {
+
+    /**
+     * The number of stored results after which expired prefixes are removed from the trie.
+     */
+    private static final int SWEEP_INTERVAL = 4096;
+
+    /**
+     * The settings deciding which results are shared with which prefix.
+     */
+    private final PrefixSettings prefixSettings;
+
+    /**
+     * The shared results by prefix.
+     */
+    private final PrefixTrie<CachedResult> trie = new PrefixTrie<>();
+
+    /**
+     * The number of results stored since the last sweep.
+     */
+    private final AtomicInteger stored = new AtomicInteger();
+
+    /**
+     * Constructs a PrefixCache.
+     *
+     * @param prefixSettings The settings deciding which results are shared with which prefix.
+     */
+    public PrefixCache(@NonNull PrefixSettings prefixSettings) {
+        this.prefixSettings = prefixSettings;
+    }
+
+    /**
+     * Returns the result shared with the prefix of an address.
+     *
+     * @param addressKey The address.
+     * @param now        The current time in milliseconds since the epoch.
+     * @return The result of the longest prefix containing the address, carrying the address, or null if no prefix
+     *         holds a result that has not expired.
+     */
+    public CachedResult get(@NonNull AddressKey addressKey, long now) {
+        CachedResult shared = trie.longestMatch(addressKey);
+        if (shared == null || shared.isExpired(now)) {
+            return null;
+        }
+        return CachedResult.restore(shared.getResult().withIpAddress(addressKey.toString()),
+                                    shared.getFetchedAt(), shared.getExpiresAt());
+    }
+
+    /**
+     * Shares a fetched result with the prefix of its address, if the result qualifies.
+     *
+     * @param addressKey   The address of the result.
+     * @param cachedResult The fetched result.
+     */
+    public void put(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) {
+        boolean ipv4 = addressKey.isIPv4();
+        int prefixLength = prefixSettings.prefixLengthFor(CompactAddressData.from(cachedResult.getResult()), ipv4);
+        if (prefixLength < 0) {
+            return;
+        }
+
+        trie.put(addressKey, ipv4 ? PrefixTrie.IPV4_MAPPED_BITS + prefixLength : prefixLength, cachedResult);
+
+        if (stored.incrementAndGet() >= SWEEP_INTERVAL) {
+            stored.set(0);
+            long now = System.currentTimeMillis();
+            trie.removeIf(shared -> shared.isExpired(now));
+        }
+    }
+
+    /**
+     * Returns the number of prefixes holding a shared result, including expired ones that were not swept yet.
+     *
+     * @return The number of prefixes.
+     */
+    public int size() {
+        return trie.size();
+    }
+}
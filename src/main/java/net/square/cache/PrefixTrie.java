@@ -0,0 +1,366 @@
+package net.square.cache;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The PrefixTrie class maps network prefixes to values and finds the longest prefix containing an address.
+ * It is a path-compressed binary radix trie over the 128 bits of an {@link AddressKey}, so that a prefix takes one
+ * or two nodes regardless of its length. IPv4 prefixes are stored in their IPv4-mapped form, a /24 is therefore a
+ * prefix of 120 bits.
+ * <p>
+ * Lookups are lock-free and only retried if a write happened concurrently; writes are serialized.
+ *
+ * @param <V> The type of the values.
+ */
+public class PrefixTrie<V> {
+
+    /**
+     * The number of bits of an address.
+     */
+    public static final int ADDRESS_BITS = 128;
+
+    /**
+     * The number of bits of the IPv4-mapped prefix preceding an IPv4 address.
+     */
+    public static final int IPV4_MAPPED_BITS = 96;
+
+    /**
+     * Guards the nodes. Readers use optimistic stamps, writers the write lock.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * The root of the trie, or null if it is empty.
+     */
+    private Node<V> root;
+
+    /**
+     * The number of prefixes holding a value.
+     */
+    private int size;
+
+    /**
+     * Maps a prefix to a value, replacing the value the prefix was mapped to before.
+     *
+     * @param addressKey   An address within the prefix. The bits after the prefix are ignored.
+     * @param prefixLength The length of the prefix in bits, from 0 to 128.
+     * @param value        The value.
+     */
+    public void put(@NonNull AddressKey addressKey, int prefixLength, @NonNull V value) {
+        if (prefixLength < 0 || prefixLength > ADDRESS_BITS) {
+            throw new IllegalArgumentException("The prefix length must be between 0 and %d".formatted(ADDRESS_BITS));
+        }
+        long high = maskHigh(addressKey.getHigh(), prefixLength);
+        long low = maskLow(addressKey.getLow(), prefixLength);
+
+        long stamp = lock.writeLock();
+        try {
+            insert(high, low, prefixLength, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value of the longest prefix containing an address.
+     *
+     * @param addressKey The address.
+     * @return The value of the longest matching prefix, or null if no prefix contains the address.
+     */
+    public V longestMatch(@NonNull AddressKey addressKey) {
+        long stamp = lock.tryOptimisticRead();
+        V value = find(addressKey.getHigh(), addressKey.getLow());
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(addressKey.getHigh(), addressKey.getLow());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of prefixes holding a value.
+     *
+     * @return The number of prefixes.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Passes every prefix and its value to an action, in no particular order.
+     *
+     * @param action The action receiving an address of the prefix, with the bits after the prefix cleared, and the
+     *               value.
+     */
+    public void forEach(@NonNull BiConsumer<PrefixKey, V> action) {
+        long stamp = lock.readLock();
+        try {
+            visit(root, action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes the prefixes whose values match a condition. The trie is rebuilt from the remaining prefixes,
+     * so that no empty branches are left behind.
+     *
+     * @param condition The condition of the values to remove.
+     */
+    public void removeIf(@NonNull Predicate<V> condition) {
+        long stamp = lock.writeLock();
+        try {
+            List<Node<V>> retained = new ArrayList<>();
+            collect(root, condition, retained);
+
+            root = null;
+            size = 0;
+            for (Node<V> node : retained) {
+                insert(node.high, node.low, node.length, node.value);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Inserts a prefix. Must be called under the write lock.
+     *
+     * @param high   The upper 64 bits of the prefix, masked.
+     * @param low    The lower 64 bits of the prefix, masked.
+     * @param length The length of the prefix.
+     * @param value  The value.
+     */
+    private void insert(long high, long low, int length, V value) {
+        Node<V> parent = null;
+        Node<V> node = root;
+
+        while (node != null) {
+            int common = commonPrefixLength(node.high, node.low, high, low, Math.min(node.length, length));
+
+            if (common < node.length) {
+                // The new prefix branches off within this node, so a node at the branching point takes its place
+                Node<V> branch = new Node<>(maskHigh(high, common), maskLow(low, common), common);
+                if (common == length) {
+                    branch.value = value;
+                    size++;
+                } else {
+                    branch.setChild(bit(high, low, common), new Node<>(high, low, length, value));
+                    size++;
+                }
+                branch.setChild(bit(node.high, node.low, common), node);
+                replace(parent, node, branch);
+                return;
+            }
+
+            if (node.length == length) {
+                if (node.value == null) {
+                    size++;
+                }
+                node.value = value;
+                return;
+            }
+
+            Node<V> child = node.getChild(bit(high, low, node.length));
+            if (child == null) {
+                node.setChild(bit(high, low, node.length), new Node<>(high, low, length, value));
+                size++;
+                return;
+            }
+            parent = node;
+            node = child;
+        }
+
+        root = new Node<>(high, low, length, value);
+        size++;
+    }
+
+    /**
+     * Finds the value of the longest prefix containing an address.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     * @return The value, or null if no prefix contains the address.
+     */
+    private V find(long high, long low) {
+        V best = null;
+        Node<V> node = root;
+        while (node != null && commonPrefixLength(node.high, node.low, high, low, node.length) == node.length) {
+            if (node.value != null) {
+                best = node.value;
+            }
+            if (node.length == ADDRESS_BITS) {
+                break;
+            }
+            node = node.getChild(bit(high, low, node.length));
+        }
+        return best;
+    }
+
+    /**
+     * Replaces a node in its parent, or the root.
+     *
+     * @param parent      The parent of the node, or null if it is the root.
+     * @param node        The node to replace.
+     * @param replacement The replacement.
+     */
+    private void replace(Node<V> parent, Node<V> node, Node<V> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.zero == node) {
+            parent.zero = replacement;
+        } else {
+            parent.one = replacement;
+        }
+    }
+
+    /**
+     * Visits a node and its children.
+     *
+     * @param node   The node to visit, may be null.
+     * @param action The action receiving the prefixes and values.
+     */
+    private void visit(Node<V> node, BiConsumer<PrefixKey, V> action) {
+        if (node == null) {
+            return;
+        }
+        if (node.value != null) {
+            action.accept(new PrefixKey(AddressKey.ofIPv6(node.high, node.low), node.length), node.value);
+        }
+        visit(node.zero, action);
+        visit(node.one, action);
+    }
+
+    /**
+     * Collects the nodes holding a value that does not match a condition.
+     *
+     * @param node      The node to start at, may be null.
+     * @param condition The condition of the values to leave out.
+     * @param retained  The list receiving the nodes.
+     */
+    private void collect(Node<V> node, Predicate<V> condition, List<Node<V>> retained) {
+        if (node == null) {
+            return;
+        }
+        if (node.value != null && !condition.test(node.value)) {
+            retained.add(node);
+        }
+        collect(node.zero, condition, retained);
+        collect(node.one, condition, retained);
+    }
+
+    /**
+     * Returns the number of leading bits two addresses have in common.
+     *
+     * @param aHigh The upper 64 bits of the first address.
+     * @param aLow  The lower 64 bits of the first address.
+     * @param bHigh The upper 64 bits of the second address.
+     * @param bLow  The lower 64 bits of the second address.
+     * @param max   The highest result of interest.
+     * @return The number of common leading bits, at most max.
+     */
+    private static int commonPrefixLength(long aHigh, long aLow, long bHigh, long bLow, int max) {
+        long difference = aHigh ^ bHigh;
+        int common = difference != 0
+            ? Long.numberOfLeadingZeros(difference)
+            : 64 + Long.numberOfLeadingZeros(aLow ^ bLow);
+        return Math.min(common, max);
+    }
+
+    /**
+     * Returns a bit of an address.
+     *
+     * @param high  The upper 64 bits of the address.
+     * @param low   The lower 64 bits of the address.
+     * @param index The index of the bit, 0 being the most significant one.
+     * @return The bit, 0 or 1.
+     */
+    private static int bit(long high, long low, int index) {
+        return index < 64 ? (int) (high >>> (63 - index)) & 1 : (int) (low >>> (127 - index)) & 1;
+    }
+
+    /**
+     * Clears the bits of the upper half of an address after a prefix.
+     *
+     * @param high   The upper 64 bits of the address.
+     * @param length The length of the prefix.
+     * @return The masked bits.
+     */
+    private static long maskHigh(long high, int length) {
+        return length >= 64 ? high : length == 0 ? 0 : high & (-1L << (64 - length));
+    }
+
+    /**
+     * Clears the bits of the lower half of an address after a prefix.
+     *
+     * @param low    The lower 64 bits of the address.
+     * @param length The length of the prefix.
+     * @return The masked bits.
+     */
+    private static long maskLow(long low, int length) {
+        return length <= 64 ? 0 : length == ADDRESS_BITS ? low : low & (-1L << (ADDRESS_BITS - length));
+    }
+
+    /**
+     * A network prefix: an address with the bits after the prefix cleared, and the length of the prefix.
+     *
+     * @param addressKey   The address of the prefix.
+     * @param prefixLength The length of the prefix in bits.
+     */
+    public record PrefixKey(AddressKey addressKey, int prefixLength) {
+    }
+
+    /**
+     * A node of the trie: a prefix, its value if one is mapped to it, and the subtrees of the prefixes continuing
+     * with a 0 and with a 1 bit.
+     *
+     * @param <V> The type of the values.
+     */
+    private static final class Node<V> {
+
+        private final long high;
+        private final long low;
+        private final int length;
+        private V value;
+        private Node<V> zero;
+        private Node<V> one;
+
+        private Node(long high, long low, int length) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+        }
+
+        private Node(long high, long low, int length, V value) {
+            this(high, low, length);
+            this.value = value;
+        }
+
+        private Node<V> getChild(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        private void setChild(int bit, Node<V> child) {
+            if (bit == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package net.square.cache;
+
+import lombok.NonNull;
+import net.square.settings.ProxyCheckSettings;
+
+/**
+ * The ProfileKey record is the cache key of a result fetched with other settings than those of the client, see
+ * {@link net.square.ProxyAPI#fetchAddressDataForIP(String, ProxyCheckSettings)}. The same address fetched with
+ * two profiles results in two keys, so that a result never answers a lookup asking for data it lacks.
+ *
+ * @param address The address.
+ * @param profile The settings the result was fetched with.
+ */
+public record ProfileKey(@NonNull AddressKey address, @NonNull ProxyCheckSettings profile) {
+}
@@ -0,0 +1,47 @@
+package net.square.cache;
+
+import com.google.common.cache.Weigher;
+import lombok.NonNull;
+
+/**
+ * The ResultWeigher estimates the heap size of a cached result, so that the lookup cache can be bounded by memory
+ * instead of by entry count. The estimate only depends on how the result was decoded and does not walk the result,
+ * which keeps weighing cheap and does not force lazily decoded results to be decoded.
+ * <p>
+ * The estimates were measured for a full response with ASN, location, operator and attack history: about
+ * 8.5 kilobytes for a result retaining its JsonObject tree and about 2.3 kilobytes for one of the streaming decoder.
+ * Lazily decoded results are decoded by the streaming decoder as well, so they never outgrow that estimate.
+ * A {@link CachedCompactData} of the same response takes about 300 bytes unless it retains the JsonObject tree.
+ */
+public class ResultWeigher implements Weigher<AddressKey, CachedResult> {
+
+    /**
+     * The estimated size of a result retaining its JsonObject tree.
+     */
+    public static final int TREE_BYTES = 8_600;
+
+    /**
+     * The estimated size of a result of the streaming decoder.
+     */
+    public static final int STREAMING_BYTES = 2_400;
+
+    /**
+     * The estimated size of a compact result without a retained JsonObject tree.
+     */
+    public static final int COMPACT_BYTES = 400;
+
+    @Override
+    public int weigh(@NonNull AddressKey addressKey, @NonNull CachedResult cachedResult) {
+        return cachedResult.getResult().getRawObject() != null ? TREE_BYTES : STREAMING_BYTES;
+    }
+
+    /**
+     * Estimates the heap size of a cached compact result.
+     *
+     * @param cachedCompactData The cached compact result.
+     * @return The estimated size in bytes.
+     */
+    public int weigh(@NonNull CachedCompactData cachedCompactData) {
+        return cachedCompactData.getData().getRawObject() != null ? TREE_BYTES : COMPACT_BYTES;
+    }
+}
@@ -0,0 +1,194 @@
+package net.square.cache;
+
+import net.square.wrapper.DefaultWrapper;
+import net.square.wrapper.compact.AddressType;
+import net.square.wrapper.compact.CompactAddressData;
+import net.square.wrapper.compact.ProxyStatus;
+import net.square.wrapper.impl.AddressWrapper;
+import net.square.wrapper.impl.SuccessWrapper;
+
+/**
+ * The Verdict class is the few bits a connection gate needs about an address: whether it is a proxy,
+ * whether it is a VPN and in which bucket its risk score falls. It is encoded into a single byte;
+ * all possible verdicts are pre-allocated, so resolving a verdict never allocates.
+ */
+public final class Verdict {
+
+    /**
+     * The bit marking an encoded verdict as set. An encoded value of 0 means no verdict is stored.
+     */
+    private static final int KNOWN = 1;
+
+    /**
+     * The bit marking the address as a proxy.
+     */
+    private static final int PROXY = 1 << 1;
+
+    /**
+     * The bit marking the address as a VPN.
+     */
+    private static final int VPN = 1 << 2;
+
+    /**
+     * The shift of the two bits holding the ordinal of the risk bucket.
+     */
+    private static final int RISK_SHIFT = 3;
+
+    /**
+     * All possible verdicts, indexed by their encoded value.
+     */
+    private static final Verdict[] VERDICTS = new Verdict[1 << (RISK_SHIFT + 2)];
+
+    static {
+        for (int encoded = 0; encoded < VERDICTS.length; encoded++) {
+            VERDICTS[encoded] = new Verdict((byte) (encoded | KNOWN));
+        }
+    }
+
+    /**
+     * The encoded verdict.
+     */
+    private final byte encoded;
+
+    private Verdict(byte encoded) {
+        this.encoded = encoded;
+    }
+
+    /**
+     * Returns the verdict of the given properties.
+     *
+     * @param proxy      Whether the address is a proxy.
+     * @param vpn        Whether the address is a VPN.
+     * @param riskBucket The bucket of the risk score of the address.
+     * @return The verdict.
+     */
+    public static Verdict of(boolean proxy, boolean vpn, RiskBucket riskBucket) {
+        return VERDICTS[(proxy ? PROXY : 0) | (vpn ? VPN : 0) | riskBucket.ordinal() << RISK_SHIFT | KNOWN];
+    }
+
+    /**
+     * Returns the verdict of a compact result.
+     *
+     * @param compactAddressData The compact result.
+     * @return The verdict.
+     */
+    public static Verdict of(CompactAddressData compactAddressData) {
+        AddressType type = compactAddressData.getType();
+        return of(compactAddressData.getProxy() == ProxyStatus.YES,
+                  type == AddressType.VPN || type == AddressType.OPENVPN,
+                  RiskBucket.of(compactAddressData.getRisk()));
+    }
+
+    /**
+     * Returns the verdict of a full result.
+     *
+     * @param successWrapper The full result.
+     * @return The verdict.
+     */
+    public static Verdict of(SuccessWrapper successWrapper) {
+        AddressWrapper addressWrapper = successWrapper.getAddressWrapper();
+        String type = addressWrapper.getType();
+        AddressType addressType = AddressType.of(DefaultWrapper.ERROR.equals(type) ? null : type);
+
+        int risk;
+        try {
+            risk = Integer.parseInt(addressWrapper.getRisk().trim());
+        } catch (NumberFormatException e) {
+            risk = -1;
+        }
+
+        return of(ProxyStatus.of(addressWrapper.getProxy()) == ProxyStatus.YES,
+                  addressType == AddressType.VPN || addressType == AddressType.OPENVPN,
+                  RiskBucket.of(risk));
+    }
+
+    /**
+     * Decodes a verdict out of its encoded value.
+     *
+     * @param encoded The encoded value.
+     * @return The verdict, or null if the value does not hold a verdict.
+     */
+    static Verdict decode(byte encoded) {
+        return (encoded & KNOWN) == 0 ? null : VERDICTS[encoded & (VERDICTS.length - 1)];
+    }
+
+    /**
+     * Returns the encoded value of this verdict.
+     *
+     * @return The encoded value, never 0.
+     */
+    byte encode() {
+        return encoded;
+    }
+
+    /**
+     * Checks if the address is a proxy.
+     *
+     * @return true if the address is a proxy.
+     */
+    public boolean isProxy() {
+        return (encoded & PROXY) != 0;
+    }
+
+    /**
+     * Checks if the address is a VPN.
+     *
+     * @return true if the address is a VPN.
+     */
+    public boolean isVpn() {
+        return (encoded & VPN) != 0;
+    }
+
+    /**
+     * Returns the bucket of the risk score of the address.
+     *
+     * @return The risk bucket.
+     */
+    public RiskBucket getRiskBucket() {
+        return RiskBucket.values()[(encoded >>> RISK_SHIFT) & 0b11];
+    }
+
+    @Override
+    public String toString() {
+        return "Verdict{proxy=%s, vpn=%s, risk=%s}".formatted(isProxy(), isVpn(), getRiskBucket());
+    }
+
+    /**
+     * The RiskBucket enum groups the risk scores reported by proxycheck.io.
+     */
+    public enum RiskBucket {
+
+        /**
+         * The risk score is not known.
+         */
+        UNKNOWN,
+
+        /**
+         * A risk score from 0 to 33.
+         */
+        LOW,
+
+        /**
+         * A risk score from 34 to 66.
+         */
+        MEDIUM,
+
+        /**
+         * A risk score from 67 to 100.
+         */
+        HIGH;
+
+        /**
+         * Resolves the bucket of a risk score.
+         *
+         * @param risk The risk score, or a negative value if it is not known.
+         * @return The bucket of the risk score.
+         */
+        public static RiskBucket of(int risk) {
+            if (risk < 0) {
+                return UNKNOWN;
+            }
+            return risk <= 33 ? LOW : risk <= 66 ? MEDIUM : HIGH;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package net.square.cache;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The VerdictStore keeps a {@link Verdict} per address in off-heap memory, either a direct buffer or a
+ * memory-mapped file. Each address takes a fixed slot of an open-addressing table: 12 bytes for IPv4 and 24 bytes
+ * for IPv6, holding the address, the time the verdict was written and the encoded verdict. The table does not
+ * create any object per entry, so even millions of addresses neither grow the heap nor add work for the GC.
+ * <p>
+ * Verdicts expire after the configured time to live. When all slots of a probe window are taken, the oldest
+ * verdict of the window is replaced. Reads are lock-free and only retried if a write happened concurrently.
+ */
+public class VerdictStore {
+
+    /**
+     * The number of slots probed for an address before the oldest verdict of the window is replaced.
+     */
+    private static final int MAX_PROBES = 8;
+
+    /**
+     * The size of an IPv4 slot: address (4), written at (4), verdict (1), padding (3).
+     */
+    private static final int IPV4_SLOT = 12;
+
+    /**
+     * The size of an IPv6 slot: upper half (8), lower half (8), written at (4), verdict (1), padding (3).
+     */
+    private static final int IPV6_SLOT = 24;
+
+    /**
+     * The table of IPv4 verdicts.
+     */
+    private final ByteBuffer ipv4Table;
+
+    /**
+     * The table of IPv6 verdicts.
+     */
+    private final ByteBuffer ipv6Table;
+
+    /**
+     * The mask turning a hash into a slot index. The number of slots per table is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The time to live of a verdict in seconds.
+     */
+    private final long ttlSeconds;
+
+    /**
+     * Guards the tables. Readers use optimistic stamps, writers the write lock.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Constructs a VerdictStore on the given buffers.
+     *
+     * @param ipv4Table The buffer of the IPv4 table.
+     * @param ipv6Table The buffer of the IPv6 table.
+     * @param slots     The number of slots per table, a power of two.
+     * @param ttl       The time to live of a verdict.
+     */
+    private VerdictStore(ByteBuffer ipv4Table, ByteBuffer ipv6Table, int slots, Duration ttl) {
+        this.ipv4Table = ipv4Table;
+        this.ipv6Table = ipv6Table;
+        this.mask = slots - 1;
+        this.ttlSeconds = Math.max(1, ttl.toSeconds());
+    }
+
+    /**
+     * Creates a VerdictStore in direct memory.
+     *
+     * @param capacity The number of addresses per family to make room for. Rounded up to a power of two.
+     * @param ttl      The time to live of a verdict.
+     * @return The VerdictStore.
+     */
+    public static VerdictStore allocate(int capacity, @NonNull Duration ttl) {
+        int slots = slots(capacity);
+        return new VerdictStore(ByteBuffer.allocateDirect(slots * IPV4_SLOT),
+                                ByteBuffer.allocateDirect(slots * IPV6_SLOT), slots, ttl);
+    }
+
+    /**
+     * Creates a VerdictStore in a memory-mapped file. The verdicts survive restarts as long as the file is opened
+     * with the same capacity again; the operating system writes the pages back in the background.
+     *
+     * @param file     The file to map. It is created if it does not exist.
+     * @param capacity The number of addresses per family to make room for. Rounded up to a power of two.
+     * @param ttl      The time to live of a verdict.
+     * @return The VerdictStore.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static VerdictStore mapped(@NonNull Path file, int capacity, @NonNull Duration ttl) throws IOException {
+        int slots = slots(capacity);
+        long ipv4Size = (long) slots * IPV4_SLOT;
+        long ipv6Size = (long) slots * IPV6_SLOT;
+
+        try (FileChannel channel = FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new VerdictStore(channel.map(FileChannel.MapMode.READ_WRITE, 0, ipv4Size),
+                                    channel.map(FileChannel.MapMode.READ_WRITE, ipv4Size, ipv6Size), slots, ttl);
+        }
+    }
+
+    /**
+     * Returns the verdict of an address.
+     *
+     * @param addressKey The address.
+     * @return The verdict, or null if no verdict is stored or it has expired.
+     */
+    public Verdict get(@NonNull AddressKey addressKey) {
+        return addressKey.isIPv4() ? get(addressKey.toIPv4()) : get(addressKey.getHigh(), addressKey.getLow());
+    }
+
+    /**
+     * Returns the verdict of an IPv4 address.
+     *
+     * @param address The IPv4 address packed into an int, in network byte order.
+     * @return The verdict, or null if no verdict is stored or it has expired.
+     */
+    public Verdict get(int address) {
+        long stamp = lock.tryOptimisticRead();
+        byte encoded = readIPv4(address);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                encoded = readIPv4(address);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Verdict.decode(encoded);
+    }
+
+    /**
+     * Returns the verdict of an IPv6 address.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     * @return The verdict, or null if no verdict is stored or it has expired.
+     */
+    public Verdict get(long high, long low) {
+        long stamp = lock.tryOptimisticRead();
+        byte encoded = readIPv6(high, low);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                encoded = readIPv6(high, low);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Verdict.decode(encoded);
+    }
+
+    /**
+     * Stores the verdict of an address, replacing a previous verdict of the same address.
+     *
+     * @param addressKey The address.
+     * @param verdict    The verdict.
+     */
+    public void put(@NonNull AddressKey addressKey, @NonNull Verdict verdict) {
+        int now = now();
+        long stamp = lock.writeLock();
+        try {
+            if (addressKey.isIPv4()) {
+                writeIPv4(addressKey.toIPv4(), verdict.encode(), now);
+            } else {
+                writeIPv6(addressKey.getHigh(), addressKey.getLow(), verdict.encode(), now);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Looks up the encoded verdict of an IPv4 address.
+     *
+     * @param address The IPv4 address.
+     * @return The encoded verdict, or 0 if none is stored or it has expired.
+     */
+    private byte readIPv4(int address) {
+        int now = now();
+        int index = hash(address) & mask;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = ((index + probe) & mask) * IPV4_SLOT;
+            int writtenAt = ipv4Table.getInt(offset + 4);
+            if (writtenAt == 0) {
+                return 0;
+            }
+            if (ipv4Table.getInt(offset) == address) {
+                return isExpired(writtenAt, now) ? 0 : ipv4Table.get(offset + 8);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Looks up the encoded verdict of an IPv6 address.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     * @return The encoded verdict, or 0 if none is stored or it has expired.
+     */
+    private byte readIPv6(long high, long low) {
+        int now = now();
+        int index = hash(high, low) & mask;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = ((index + probe) & mask) * IPV6_SLOT;
+            int writtenAt = ipv6Table.getInt(offset + 16);
+            if (writtenAt == 0) {
+                return 0;
+            }
+            if (ipv6Table.getLong(offset) == high && ipv6Table.getLong(offset + 8) == low) {
+                return isExpired(writtenAt, now) ? 0 : ipv6Table.get(offset + 20);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the encoded verdict of an IPv4 address into its slot, or into the oldest slot of its probe window.
+     *
+     * @param address The IPv4 address.
+     * @param encoded The encoded verdict.
+     * @param now     The current time.
+     */
+    private void writeIPv4(int address, byte encoded, int now) {
+        int index = hash(address) & mask;
+        int target = -1;
+        long oldest = Long.MAX_VALUE;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = ((index + probe) & mask) * IPV4_SLOT;
+            int writtenAt = ipv4Table.getInt(offset + 4);
+            if (writtenAt == 0 || ipv4Table.getInt(offset) == address) {
+                target = offset;
+                break;
+            }
+            if (Integer.toUnsignedLong(writtenAt) < oldest) {
+                oldest = Integer.toUnsignedLong(writtenAt);
+                target = offset;
+            }
+        }
+
+        ipv4Table.putInt(target, address);
+        ipv4Table.putInt(target + 4, now);
+        ipv4Table.put(target + 8, encoded);
+    }
+
+    /**
+     * Writes the encoded verdict of an IPv6 address into its slot, or into the oldest slot of its probe window.
+     *
+     * @param high    The upper 64 bits of the address.
+     * @param low     The lower 64 bits of the address.
+     * @param encoded The encoded verdict.
+     * @param now     The current time.
+     */
+    private void writeIPv6(long high, long low, byte encoded, int now) {
+        int index = hash(high, low) & mask;
+        int target = -1;
+        long oldest = Long.MAX_VALUE;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = ((index + probe) & mask) * IPV6_SLOT;
+            int writtenAt = ipv6Table.getInt(offset + 16);
+            if (writtenAt == 0 || ipv6Table.getLong(offset) == high && ipv6Table.getLong(offset + 8) == low) {
+                target = offset;
+                break;
+            }
+            if (Integer.toUnsignedLong(writtenAt) < oldest) {
+                oldest = Integer.toUnsignedLong(writtenAt);
+                target = offset;
+            }
+        }
+
+        ipv6Table.putLong(target, high);
+        ipv6Table.putLong(target + 8, low);
+        ipv6Table.putInt(target + 16, now);
+        ipv6Table.put(target + 20, encoded);
+    }
+
+    /**
+     * Checks if a verdict has expired.
+     *
+     * @param writtenAt The time the verdict was written.
+     * @param now       The current time.
+     * @return true if the verdict has expired.
+     */
+    private boolean isExpired(int writtenAt, int now) {
+        return Integer.toUnsignedLong(now) - Integer.toUnsignedLong(writtenAt) >= ttlSeconds;
+    }
+
+    /**
+     * Returns the current time in seconds since the epoch as an unsigned int, which never is 0.
+     *
+     * @return The current time.
+     */
+    private static int now() {
+        return (int) (System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Hashes an IPv4 address, spreading neighbouring addresses over the table.
+     *
+     * @param address The IPv4 address.
+     * @return The hash.
+     */
+    private static int hash(int address) {
+        int hash = address * 0x9E37_79B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Hashes an IPv6 address, spreading neighbouring addresses over the table.
+     *
+     * @param high The upper 64 bits of the address.
+     * @param low  The lower 64 bits of the address.
+     * @return The hash.
+     */
+    private static int hash(long high, long low) {
+        long hash = (high * 0x9E37_79B9_7F4A_7C15L) ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51_AFD7_ED55_8CCDL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Returns the number of slots for a capacity: the next power of two with a quarter of headroom.
+     *
+     * @param capacity The number of addresses to make room for.
+     * @return The number of slots.
+     */
+    private static int slots(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        long wanted = Math.max(MAX_PROBES, capacity + (capacity >> 2));
+        if (wanted > (1 << 26)) {
+            throw new IllegalArgumentException("The capacity must not exceed %d".formatted((1 << 26) * 4 / 5));
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+}
@@ -27,4 +27,16 @@ public class ProxyException extends RuntimeException {
     public ProxyException(String cause, Throwable throwable) {
         super(cause, throwable);
     }
+
+    /**
+     * Constructs a new ProxyException with the specified detail message that records neither a stack trace nor
+     * suppressed exceptions. Such an exception is cheap to create and can be shared, which suits refusals that
+     * are raised at a high rate and always originate from the same place.
+     *
+     * @param cause              the detail message.
+     * @param writableStackTrace whether the stack trace is recorded.
+     */
+    protected ProxyException(String cause, boolean writableStackTrace) {
+        super(cause, null, false, writableStackTrace);
+    }
 }
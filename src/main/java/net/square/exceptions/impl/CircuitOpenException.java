@@ -0,0 +1,42 @@
+package net.square.exceptions.impl;
+
+import net.square.exceptions.ProxyException;
+
+/**
+ * The CircuitOpenException class represents an exception that occurs when a request to proxycheck.io is not sent
+ * because the circuit breaker is open after too many failed or slow requests.
+ * It extends the ProxyException class, which is a custom exception class for handling proxy-related errors.
+ * <p>
+ * It only reaches the caller if none of the configured fallbacks can answer the lookup.
+ */
+public class CircuitOpenException extends ProxyException {
+
+    /**
+     * CircuitOpenException is an exception that occurs when a request is not sent because the circuit is open.
+     *
+     * @param message The description of the state of the circuit.
+     */
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a CircuitOpenException without a stack trace, to be created once and thrown repeatedly.
+     *
+     * @param message The description of the state of the circuit.
+     * @return The stackless exception.
+     */
+    public static CircuitOpenException stackless(String message) {
+        return new CircuitOpenException(message, false);
+    }
+
+    /**
+     * Constructs a CircuitOpenException that may record no stack trace.
+     *
+     * @param message            The reason of the exception.
+     * @param writableStackTrace Whether the stack trace is recorded.
+     */
+    private CircuitOpenException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
+}
@@ -0,0 +1,44 @@
+package net.square.exceptions.impl;
+
+import net.square.exceptions.ProxyException;
+
+/**
+ * The ConcurrencyLimitExceededException class represents an exception that occurs when a request to proxycheck.io
+ * is not sent because too many requests are already in flight.
+ * It extends the ProxyException class, which is a custom exception class for handling proxy-related errors.
+ * <p>
+ * It is thrown when the queue of requests waiting for a free slot is full, or when a request waited longer than
+ * allowed for one.
+ */
+public class ConcurrencyLimitExceededException extends ProxyException {
+
+    /**
+     * ConcurrencyLimitExceededException is an exception that occurs when a request is not sent because of the
+     * concurrency limit.
+     *
+     * @param message The reason the request was rejected.
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a ConcurrencyLimitExceededException without a stack trace, to be created once and thrown repeatedly.
+     *
+     * @param message The reason the request was rejected.
+     * @return The stackless exception.
+     */
+    public static ConcurrencyLimitExceededException stackless(String message) {
+        return new ConcurrencyLimitExceededException(message, false);
+    }
+
+    /**
+     * Constructs a ConcurrencyLimitExceededException that may record no stack trace.
+     *
+     * @param message            The reason of the exception.
+     * @param writableStackTrace Whether the stack trace is recorded.
+     */
+    private ConcurrencyLimitExceededException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
+}
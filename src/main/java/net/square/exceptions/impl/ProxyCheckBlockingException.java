@@ -21,4 +21,24 @@ public class ProxyCheckBlockingException extends ProxyException {
     public ProxyCheckBlockingException(String message) {
         super(message);
     }
+
+    /**
+     * Creates a ProxyCheckBlockingException without a stack trace, to be created once and thrown repeatedly.
+     *
+     * @param message The status and message of the blocking response.
+     * @return The stackless exception.
+     */
+    public static ProxyCheckBlockingException stackless(String message) {
+        return new ProxyCheckBlockingException(message, false);
+    }
+
+    /**
+     * Constructs a ProxyCheckBlockingException that may record no stack trace.
+     *
+     * @param message            The reason of the exception.
+     * @param writableStackTrace Whether the stack trace is recorded.
+     */
+    private ProxyCheckBlockingException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
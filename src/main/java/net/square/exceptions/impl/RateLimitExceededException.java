@@ -0,0 +1,43 @@
+package net.square.exceptions.impl;
+
+import net.square.exceptions.ProxyException;
+
+/**
+ * The RateLimitExceededException class represents an exception that occurs when a request to proxycheck.io is not
+ * sent because the configured rate limit or daily quota does not allow it.
+ * It extends the ProxyException class, which is a custom exception class for handling proxy-related errors.
+ * <p>
+ * It is thrown when the daily quota is used up, when the waiting queue of the priority is full, when a request
+ * waited longer than allowed for its turn, or when every license key of the pool is used up or denied.
+ */
+public class RateLimitExceededException extends ProxyException {
+
+    /**
+     * RateLimitExceededException is an exception that occurs when a request is not sent because of the rate limit.
+     *
+     * @param message The reason the request was rejected.
+     */
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a RateLimitExceededException without a stack trace, to be created once and thrown repeatedly.
+     *
+     * @param message The reason the request was rejected.
+     * @return The stackless exception.
+     */
+    public static RateLimitExceededException stackless(String message) {
+        return new RateLimitExceededException(message, false);
+    }
+
+    /**
+     * Constructs a RateLimitExceededException that may record no stack trace.
+     *
+     * @param message            The reason of the exception.
+     * @param writableStackTrace Whether the stack trace is recorded.
+     */
+    private RateLimitExceededException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
+}
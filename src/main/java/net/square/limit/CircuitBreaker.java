@@ -0,0 +1,232 @@
+package net.square.limit;
+
+import lombok.NonNull;
+import net.square.settings.CircuitBreakerSettings;
+
+/**
+ * The CircuitBreaker class decides whether requests to proxycheck.io may be sent, according to the
+ * {@link CircuitBreakerSettings}. The outcomes of the last requests are kept in a ring buffer; once the share of
+ * failures reaches the threshold, the circuit opens and {@link #tryAcquire()} refuses all requests until the open
+ * duration has passed. Then a single probe is let through, whose outcome closes or reopens the circuit.
+ * <p>
+ * A refused request costs a lock acquisition and a few comparisons.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of the circuit.
+     */
+    public enum State {
+
+        /**
+         * Requests are sent and their outcomes recorded.
+         */
+        CLOSED,
+
+        /**
+         * Requests are refused.
+         */
+        OPEN,
+
+        /**
+         * A single probe request is sent, all others are refused.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * The share of failures that opens the circuit.
+     */
+    private final double failureRateThreshold;
+
+    /**
+     * The duration in nanoseconds after which a successful request counts as failed.
+     */
+    private final long slowCallNanos;
+
+    /**
+     * The number of outcomes needed before the circuit may open.
+     */
+    private final int minimumCalls;
+
+    /**
+     * How long the circuit stays open, in nanoseconds.
+     */
+    private final long openNanos;
+
+    /**
+     * The outcomes of the last requests, true for a failure.
+     */
+    private final boolean[] outcomes;
+
+    /**
+     * The position of the next outcome in the ring buffer.
+     */
+    private int next;
+
+    /**
+     * The number of outcomes in the ring buffer.
+     */
+    private int recorded;
+
+    /**
+     * The number of failures in the ring buffer.
+     */
+    private int failures;
+
+    /**
+     * The state of the circuit.
+     */
+    private volatile State state = State.CLOSED;
+
+    /**
+     * The time the circuit opened, in nanoseconds of {@link System#nanoTime()}.
+     */
+    private long openedAt;
+
+    /**
+     * Whether the probe of the half-open circuit is in flight.
+     */
+    private boolean probing;
+
+    /**
+     * Constructs a CircuitBreaker.
+     *
+     * @param settings The thresholds of the breaker.
+     */
+    public CircuitBreaker(@NonNull CircuitBreakerSettings settings) {
+        this.failureRateThreshold = settings.getFailureRateThreshold();
+        this.slowCallNanos = settings.getSlowCallThreshold().toNanos();
+        this.minimumCalls = Math.max(1, Math.min(settings.getMinimumCalls(), settings.getWindowSize()));
+        this.openNanos = settings.getOpenDuration().toNanos();
+        this.outcomes = new boolean[Math.max(1, settings.getWindowSize())];
+    }
+
+    /**
+     * Asks for the permission to send a request. The caller must report the outcome of a permitted request through
+     * {@link #onSuccess(long)}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return true if the request may be sent, false if the circuit is open.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            }
+            default -> {
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks if requests are currently refused, without letting a probe through. A closed circuit is recognized
+     * without taking the lock.
+     *
+     * @return true if the circuit is open and its open duration has not passed, or a probe is in flight.
+     */
+    public boolean isRefusing() {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        synchronized (this) {
+            return state == State.OPEN
+                ? System.nanoTime() - openedAt < openNanos
+                : state == State.HALF_OPEN && probing;
+        }
+    }
+
+    /**
+     * Records a request that received a response. Slow requests count as failures.
+     *
+     * @param durationNanos The duration of the request in nanoseconds.
+     */
+    public synchronized void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Records a request that failed, such as an I/O error or a blocking response.
+     */
+    public synchronized void onFailure() {
+        record(true);
+    }
+
+    /**
+     * Records a permitted request that was not sent, such as one refused by the rate limit. It does not count
+     * towards the failure rate; if it was the probe, the next request becomes the probe.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    /**
+     * Returns the state of the circuit.
+     *
+     * @return The state.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Records an outcome and moves the circuit to its next state. Must be called while holding the lock.
+     *
+     * @param failure Whether the request failed.
+     */
+    private void record(boolean failure) {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                recorded = 0;
+                failures = 0;
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A request permitted before the circuit opened
+            return;
+        }
+
+        if (recorded == outcomes.length) {
+            failures -= outcomes[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % outcomes.length;
+
+        if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * Opens the circuit and clears the recorded outcomes. Must be called while holding the lock.
+     */
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        recorded = 0;
+        failures = 0;
+        next = 0;
+    }
+}
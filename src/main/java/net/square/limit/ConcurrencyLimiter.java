@@ -0,0 +1,285 @@
+package net.square.limit;
+
+import lombok.NonNull;
+import net.square.exceptions.impl.ConcurrencyLimitExceededException;
+import net.square.settings.ConcurrencySettings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ConcurrencyLimiter class bounds the number of requests to proxycheck.io in flight at once, according to the
+ * {@link ConcurrencySettings}. The limit adapts to the round-trip times in the manner of TCP Vegas: the fastest
+ * recent round trip is taken as the time of an unloaded request, and the share by which a round trip exceeds it
+ * estimates how many requests are queued upstream. Few queued requests let the limit grow, many shrink it, and a
+ * failed request cuts it by a factor.
+ * <p>
+ * A request beyond the limit waits in a bounded queue without blocking a thread, until a slot is released or its
+ * waiting time runs out. Every granted slot must be released through {@link #onSuccess(long)},
+ * {@link #onFailure()} or {@link #onIgnored()}.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * The number of round trips per slot of the limit after which the fastest round trip is measured anew, so that
+     * the limit follows a slower upstream instead of shrinking forever.
+     */
+    private static final int MIN_RTT_RESET_PER_SLOT = 30;
+
+    /**
+     * The lowest limit.
+     */
+    private final int minLimit;
+
+    /**
+     * The highest limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * The estimated number of queued requests below which the limit grows.
+     */
+    private final int alpha;
+
+    /**
+     * The estimated number of queued requests above which the limit shrinks.
+     */
+    private final int beta;
+
+    /**
+     * The factor the limit is multiplied with after a failed request.
+     */
+    private final double backoffRatio;
+
+    /**
+     * The number of requests that may wait for a slot.
+     */
+    private final int maxQueued;
+
+    /**
+     * How long a request may wait for a slot, in nanoseconds.
+     */
+    private final long maxWaitNanos;
+
+    /**
+     * The requests waiting for a slot, in the order of their arrival.
+     */
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    /**
+     * The refusal of a request finding the queue full. It carries no stack trace and is shared.
+     */
+    private final ConcurrencyLimitExceededException queueFull;
+
+    /**
+     * The refusal of a request waiting too long for a slot. It carries no stack trace and is shared.
+     */
+    private final ConcurrencyLimitExceededException waitedTooLong;
+
+    /**
+     * The current limit. Kept as a fraction so that repeated multiplicative decreases add up.
+     */
+    private double limit;
+
+    /**
+     * The number of granted slots that were not released yet.
+     */
+    private int inFlight;
+
+    /**
+     * The fastest round trip since the last reset, in nanoseconds, or 0 if none was measured.
+     */
+    private long minRttNanos;
+
+    /**
+     * The number of round trips measured since the fastest one was last reset.
+     */
+    private long samples;
+
+    /**
+     * Constructs a ConcurrencyLimiter.
+     *
+     * @param settings The bounds and thresholds of the limit.
+     */
+    public ConcurrencyLimiter(@NonNull ConcurrencySettings settings) {
+        this.minLimit = Math.max(1, settings.getMinLimit());
+        this.maxLimit = Math.max(this.minLimit, settings.getMaxLimit());
+        this.alpha = settings.getAlpha();
+        this.beta = settings.getBeta();
+        this.backoffRatio = settings.getBackoffRatio();
+        this.maxQueued = settings.getMaxQueued();
+        this.maxWaitNanos = settings.getMaxWait().toNanos();
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, settings.getInitialLimit()));
+        this.queueFull = ConcurrencyLimitExceededException.stackless(
+            "The queue of requests waiting for a slot is full");
+        this.waitedTooLong = ConcurrencyLimitExceededException.stackless(
+            "Waited longer than %d ms for a request slot".formatted(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)));
+    }
+
+    /**
+     * Acquires a slot, waiting for it if necessary.
+     *
+     * @throws ConcurrencyLimitExceededException If the slot cannot be granted.
+     */
+    public void acquire() {
+        try {
+            acquireAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires a slot without blocking the calling thread.
+     *
+     * @return A CompletableFuture that completes once the slot is granted, or exceptionally with a
+     *         {@link ConcurrencyLimitExceededException} if it cannot be granted.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        synchronized (this) {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiters.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(queueFull);
+            }
+            waiters.addLast(waiter);
+        }
+
+        CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            boolean expired;
+            synchronized (this) {
+                expired = waiters.remove(waiter);
+            }
+            if (expired) {
+                waiter.completeExceptionally(waitedTooLong);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Releases the slot of a request that received a response and adapts the limit to its round trip.
+     *
+     * @param rttNanos The round-trip time of the request in nanoseconds.
+     */
+    public void onSuccess(long rttNanos) {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            int current = (int) limit;
+            boolean saturated = inFlight * 2 >= current;
+            inFlight--;
+
+            if (minRttNanos == 0 || rttNanos < minRttNanos || ++samples >= (long) MIN_RTT_RESET_PER_SLOT * current) {
+                minRttNanos = Math.max(1, rttNanos);
+                samples = 0;
+            }
+
+            double queued = current * (1 - (double) minRttNanos / Math.max(rttNanos, minRttNanos));
+            if (queued <= alpha) {
+                // Only grow while the slots are actually used, or an idle client would inflate the limit
+                if (saturated) {
+                    limit = Math.min(maxLimit, current + 1);
+                }
+            } else if (queued >= beta) {
+                limit = Math.max(minLimit, current - 1);
+            }
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Releases the slot of a request that failed, such as an I/O error, a timeout or a blocking response, and
+     * shrinks the limit.
+     */
+    public void onFailure() {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            inFlight--;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Releases the slot of a request that says nothing about the load of proxycheck.io, such as an interrupted one.
+     */
+    public void onIgnored() {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return The number of requests that may be in flight at once.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of requests in flight.
+     *
+     * @return The number of granted slots that were not released yet.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the number of requests waiting for a slot.
+     *
+     * @return The number of waiting requests.
+     */
+    public synchronized int queued() {
+        return waiters.size();
+    }
+
+    /**
+     * Takes the free slots for the longest waiting requests. A grown limit may free more than one slot at once.
+     * Must be called while holding the lock.
+     *
+     * @return The futures of the requests the slots were granted to.
+     */
+    private List<CompletableFuture<Void>> grant() {
+        if (inFlight >= (int) limit || waiters.isEmpty()) {
+            return List.of();
+        }
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            inFlight++;
+            granted.add(waiters.pollFirst());
+        }
+        return granted;
+    }
+
+    /**
+     * Completes the futures of the requests slots were granted to, outside the lock. If a request gave up waiting
+     * in the meantime, its slot is passed on.
+     *
+     * @param granted The futures of the requests.
+     */
+    private void complete(List<CompletableFuture<Void>> granted) {
+        for (CompletableFuture<Void> waiter : granted) {
+            if (!waiter.complete(null)) {
+                onIgnored();
+            }
+        }
+    }
+}
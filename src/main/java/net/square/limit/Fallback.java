@@ -0,0 +1,23 @@
+package net.square.limit;
+
+/**
+ * The Fallback enum represents the sources a lookup is answered from while the circuit breaker is open.
+ */
+public enum Fallback {
+
+    /**
+     * The cached result of the address, even if it has expired. Expired results are kept in memory while the
+     * circuit is open instead of being removed.
+     */
+    STALE,
+
+    /**
+     * The verdict of the address in the verdict store, as a result holding only the proxy, VPN and risk fields.
+     */
+    VERDICT,
+
+    /**
+     * A result whose proxy status is unknown. It always answers the lookup.
+     */
+    UNKNOWN
+}
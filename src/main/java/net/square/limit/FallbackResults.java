@@ -0,0 +1,81 @@
+package net.square.limit;
+
+import com.google.gson.JsonObject;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.square.cache.Verdict;
+import net.square.wrapper.impl.SuccessWrapper;
+
+/**
+ * The FallbackResults class creates the results a lookup is answered with while the circuit breaker is open and no
+ * cached result is available. Fallback results come from the node {@value #NODE}, so that callers can tell them
+ * apart from the answers of proxycheck.io, and are never cached.
+ */
+@UtilityClass
+public class FallbackResults {
+
+    /**
+     * The node reported by fallback results.
+     */
+    public static final String NODE = "fallback";
+
+    /**
+     * The address data of the unknown result.
+     */
+    private static final String UNKNOWN_JSON = "{\"proxy\":\"unknown\"}";
+
+    /**
+     * Checks if a result is a fallback result.
+     *
+     * @param successWrapper The result.
+     * @return true if the result was created by this class.
+     */
+    public boolean isFallback(@NonNull SuccessWrapper successWrapper) {
+        return NODE.equals(successWrapper.getNode());
+    }
+
+    /**
+     * Checks if a result is the fallback result of an address whose proxy status is unknown.
+     *
+     * @param successWrapper The result.
+     * @return true if the result was created by {@link #unknown(String)}.
+     */
+    public boolean isUnknown(@NonNull SuccessWrapper successWrapper) {
+        return isFallback(successWrapper) && "unknown".equals(successWrapper.getStatus());
+    }
+
+    /**
+     * Creates the result of an address whose proxy status is unknown.
+     *
+     * @param ipAddress The IP address.
+     * @return The SuccessWrapper with the status "unknown".
+     */
+    public SuccessWrapper unknown(@NonNull String ipAddress) {
+        return SuccessWrapper.lazy("unknown", NODE, ipAddress, "0s", UNKNOWN_JSON);
+    }
+
+    /**
+     * Creates the result of an address out of its verdict. The risk score is the lowest score of the risk bucket,
+     * so that the result falls into the same bucket as the verdict.
+     *
+     * @param verdict   The verdict of the address.
+     * @param ipAddress The IP address.
+     * @return The SuccessWrapper holding the proxy, VPN and risk fields.
+     */
+    public SuccessWrapper of(@NonNull Verdict verdict, @NonNull String ipAddress) {
+        JsonObject addressObject = new JsonObject();
+        addressObject.addProperty("proxy", verdict.isProxy() ? "yes" : "no");
+        if (verdict.isVpn()) {
+            addressObject.addProperty("type", "VPN");
+        }
+        switch (verdict.getRiskBucket()) {
+            case LOW -> addressObject.addProperty("risk", "0");
+            case MEDIUM -> addressObject.addProperty("risk", "34");
+            case HIGH -> addressObject.addProperty("risk", "67");
+            default -> {
+                // The risk score is not known and left out
+            }
+        }
+        return SuccessWrapper.lazy("ok", NODE, ipAddress, "0s", addressObject.toString());
+    }
+}
@@ -0,0 +1,201 @@
+package net.square.limit;
+
+import lombok.NonNull;
+import net.square.exceptions.impl.RateLimitExceededException;
+import net.square.settings.KeyPoolSettings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The KeyPool class picks the license key of each request to proxycheck.io out of the pool configured by the
+ * {@link KeyPoolSettings}. A key is picked with a probability proportional to the queries it has left on the current
+ * quota day, so that the keys are used up evenly. Keys that were denied are set aside for the rest of the day.
+ * <p>
+ * The usage of a key is counted when its response arrives rather than when it is picked, so requests in flight may
+ * overdraw a nearly used up key. Its next request is then denied and the key set aside.
+ */
+public class KeyPool {
+
+    /**
+     * The length of a quota day in milliseconds.
+     */
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The license keys.
+     */
+    private final String[] keys;
+
+    /**
+     * The positions of the keys in the arrays.
+     */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * The number of queries each key allows per day.
+     */
+    private final long[] queriesPerDay;
+
+    /**
+     * The number of queries answered for each key on the current quota day.
+     */
+    private final long[] queriesToday;
+
+    /**
+     * Whether each key was denied on the current quota day.
+     */
+    private final boolean[] denied;
+
+    /**
+     * The refusal of requests finding no key with queries left. It carries no stack trace and is shared.
+     */
+    private final RateLimitExceededException exhausted;
+
+    /**
+     * The current quota day, in days since the epoch.
+     */
+    private long day;
+
+    /**
+     * Constructs a KeyPool.
+     *
+     * @param settings The license keys and their daily query limits.
+     */
+    public KeyPool(@NonNull KeyPoolSettings settings) {
+        int size = settings.getKeys().size();
+        this.keys = new String[size];
+        this.queriesPerDay = new long[size];
+        this.queriesToday = new long[size];
+        this.denied = new boolean[size];
+
+        int index = 0;
+        for (Map.Entry<String, Long> entry : settings.getKeys().entrySet()) {
+            keys[index] = entry.getKey();
+            queriesPerDay[index] = entry.getValue();
+            indexes.put(entry.getKey(), index++);
+        }
+        this.exhausted = RateLimitExceededException.stackless(
+            "All %d license keys of the pool are used up or denied for today".formatted(size));
+        this.day = currentDay();
+    }
+
+    /**
+     * Picks the key of a request, weighted by the queries the keys have left.
+     *
+     * @return The license key.
+     * @throws RateLimitExceededException If every key is used up or was denied today.
+     */
+    public synchronized String select() {
+        rollDay();
+        long total = 0;
+        for (int index = 0; index < keys.length; index++) {
+            total += remaining(index);
+        }
+        if (total == 0) {
+            throw exhausted;
+        }
+
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (int index = 0; index < keys.length; index++) {
+            pick -= remaining(index);
+            if (pick < 0) {
+                return keys[index];
+            }
+        }
+        // Unreachable, as the picks add up to the total
+        throw exhausted;
+    }
+
+    /**
+     * Counts the queries of a response that was answered for a key.
+     *
+     * @param key     The license key of the request.
+     * @param queries The number of addresses of the request.
+     */
+    public synchronized void onResponse(@NonNull String key, int queries) {
+        Integer index = indexes.get(key);
+        if (index != null) {
+            rollDay();
+            queriesToday[index] += queries;
+        }
+    }
+
+    /**
+     * Sets a key aside for the rest of the quota day, because its request was denied.
+     *
+     * @param key The license key of the request.
+     */
+    public synchronized void onDenied(@NonNull String key) {
+        Integer index = indexes.get(key);
+        if (index != null) {
+            rollDay();
+            denied[index] = true;
+        }
+    }
+
+    /**
+     * Returns the number of queries a key has left on the current quota day.
+     *
+     * @param key The license key.
+     * @return The number of queries left, 0 if the key was denied or is not in the pool.
+     */
+    public synchronized long remaining(@NonNull String key) {
+        Integer index = indexes.get(key);
+        if (index == null) {
+            return 0;
+        }
+        rollDay();
+        return remaining(index);
+    }
+
+    /**
+     * Checks if any key has queries left on the current quota day.
+     *
+     * @return true if a request can be sent with a key of the pool.
+     */
+    public synchronized boolean hasRemaining() {
+        rollDay();
+        for (int index = 0; index < keys.length; index++) {
+            if (remaining(index) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of queries a key has left. Must be called while holding the lock.
+     *
+     * @param index The position of the key.
+     * @return The number of queries left, 0 if the key was denied.
+     */
+    private long remaining(int index) {
+        return denied[index] ? 0 : Math.max(0, queriesPerDay[index] - queriesToday[index]);
+    }
+
+    /**
+     * Starts a new quota day if necessary, clearing the usage and the denials of all keys. Must be called while
+     * holding the lock.
+     */
+    private void rollDay() {
+        long today = currentDay();
+        if (today != day) {
+            day = today;
+            Arrays.fill(queriesToday, 0);
+            Arrays.fill(denied, false);
+        }
+    }
+
+    /**
+     * Returns the current quota day.
+     *
+     * @return The days since the epoch.
+     */
+    private static long currentDay() {
+        return System.currentTimeMillis() / DAY_MILLIS;
+    }
+}
@@ -0,0 +1,97 @@
+package net.square.limit;
+
+import java.util.Arrays;
+
+/**
+ * The LatencyTracker class keeps the latencies of the most recent requests and estimates their percentiles.
+ * Percentiles are recomputed from a sorted copy of the samples at most once per {@value #RECOMPUTE_INTERVAL}
+ * recorded latencies, so that asking for them is cheap.
+ */
+public class LatencyTracker {
+
+    /**
+     * The number of recorded latencies after which a percentile is recomputed.
+     */
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    /**
+     * The most recent latencies in nanoseconds.
+     */
+    private final long[] samples;
+
+    /**
+     * The position of the next latency in the ring buffer.
+     */
+    private int next;
+
+    /**
+     * The number of latencies in the ring buffer.
+     */
+    private int count;
+
+    /**
+     * The percentile that was last computed.
+     */
+    private double computedPercentile = Double.NaN;
+
+    /**
+     * The value of the percentile that was last computed, in nanoseconds.
+     */
+    private long computedValue;
+
+    /**
+     * The number of latencies recorded since the percentile was last computed.
+     */
+    private int sinceComputed;
+
+    /**
+     * Constructs a LatencyTracker.
+     *
+     * @param capacity The number of recent latencies to keep.
+     */
+    public LatencyTracker(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Records the latency of a request.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceComputed++;
+    }
+
+    /**
+     * Returns the number of latencies kept.
+     *
+     * @return The number of latencies, at most the capacity.
+     */
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Estimates a percentile of the recent latencies.
+     *
+     * @param percentile The percentile, between 0 and 1.
+     * @return The latency in nanoseconds, or -1 if no latency was recorded.
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        if (percentile != computedPercentile || sinceComputed >= RECOMPUTE_INTERVAL) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            computedValue = sorted[Math.max(0, Math.min(count - 1, index))];
+            computedPercentile = percentile;
+            sinceComputed = 0;
+        }
+        return computedValue;
+    }
+}
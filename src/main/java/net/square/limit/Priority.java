@@ -0,0 +1,29 @@
+package net.square.limit;
+
+/**
+ * The Priority enum represents the priority class of an outbound request. When requests wait for the rate limit,
+ * waiting requests of a higher priority are always sent first.
+ */
+public enum Priority {
+
+    /**
+     * Requests a user is waiting for, such as the check of a login. This is the priority of all lookups that do
+     * not state one.
+     */
+    INTERACTIVE,
+
+    /**
+     * Requests no one is waiting for, such as background refreshes and enrichment jobs.
+     */
+    BACKGROUND;
+
+    /**
+     * Checks if requests of this priority are sent before requests of another priority.
+     *
+     * @param other The other priority.
+     * @return true if this priority is higher than the other one.
+     */
+    public boolean outranks(Priority other) {
+        return ordinal() < other.ordinal();
+    }
+}
@@ -0,0 +1,18 @@
+package net.square.limit;
+
+/**
+ * The RejectionPolicy enum decides which request fails when the waiting queue of a priority is full.
+ */
+public enum RejectionPolicy {
+
+    /**
+     * The new request fails, the waiting requests keep their place.
+     */
+    REJECT_NEW,
+
+    /**
+     * The request that has waited longest in the queue fails, and the new request takes a place at the end.
+     * This favours fresh requests, whose callers are more likely to still be waiting.
+     */
+    DROP_OLDEST
+}
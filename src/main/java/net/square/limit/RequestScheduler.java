@@ -0,0 +1,408 @@
+package net.square.limit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+import net.square.exceptions.impl.RateLimitExceededException;
+import net.square.settings.RateLimitSettings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RequestScheduler class hands out the permits to send requests to proxycheck.io, according to the
+ * {@link RateLimitSettings}. A permit is granted right away if a token is available and no request of the same or a
+ * higher priority is waiting; otherwise the request waits in the queue of its priority until a timer grants it the
+ * next token, its waiting time runs out or the daily quota is used up.
+ * <p>
+ * Waiting requests do not block a thread. The futures of granted permits are completed on the timer thread, so
+ * callers should only start their request in the continuation and leave the heavy lifting to another executor.
+ */
+public class RequestScheduler implements AutoCloseable {
+
+    /**
+     * The length of a quota day in milliseconds.
+     */
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The number of tokens added per nanosecond, or 0 if the tokens are unlimited.
+     */
+    private final double tokensPerNano;
+
+    /**
+     * The highest number of tokens the bucket holds.
+     */
+    private final double burst;
+
+    /**
+     * The number of queries allowed per day, or 0 for no limit.
+     */
+    private final long queriesPerDay;
+
+    /**
+     * The number of queries background requests may use per day.
+     */
+    private final long backgroundQueriesPerDay;
+
+    /**
+     * The number of requests that may wait per priority.
+     */
+    private final int maxQueued;
+
+    /**
+     * How long a request may wait for its turn, in nanoseconds.
+     */
+    private final long maxWaitNanos;
+
+    /**
+     * Decides which request fails when a queue is full.
+     */
+    private final RejectionPolicy rejectionPolicy;
+
+    /**
+     * The timer granting the permits of waiting requests.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Guards the bucket, the quota and the queues.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The waiting requests, one queue per priority in the order of {@link Priority}.
+     */
+    private final List<ArrayDeque<Waiter>> queues = new ArrayList<>();
+
+    /**
+     * The refusal of requests exceeding the daily quota. Like the other refusals, it carries no stack trace and is
+     * shared, as refusals are raised at a high rate once the plan is used up.
+     */
+    private final RateLimitExceededException quotaExhausted;
+
+    /**
+     * The refusal of requests that waited longer than allowed for their turn.
+     */
+    private final RateLimitExceededException waitedTooLong;
+
+    /**
+     * The refusals of requests finding the queue of their priority full.
+     */
+    private final Map<Priority, RateLimitExceededException> queueFull = new EnumMap<>(Priority.class);
+
+    /**
+     * The refusals of requests dropped from the full queue of their priority.
+     */
+    private final Map<Priority, RateLimitExceededException> dropped = new EnumMap<>(Priority.class);
+
+    /**
+     * The number of tokens in the bucket.
+     */
+    private double tokens;
+
+    /**
+     * The time the bucket was last refilled, in nanoseconds of {@link System#nanoTime()}.
+     */
+    private long refilledAt;
+
+    /**
+     * The current quota day, in days since the epoch.
+     */
+    private long day;
+
+    /**
+     * The number of queries used on the current quota day.
+     */
+    private long queriesToday;
+
+    /**
+     * The timer task granting the next permits, or null if no request is waiting.
+     */
+    private ScheduledFuture<?> drainTask;
+
+    /**
+     * The time the timer task runs, in nanoseconds of {@link System#nanoTime()}.
+     */
+    private long drainAt;
+
+    /**
+     * Constructs a RequestScheduler.
+     *
+     * @param settings The rate limit and quota of the plan.
+     */
+    public RequestScheduler(@NonNull RateLimitSettings settings) {
+        double requestsPerSecond = settings.getRequestsPerSecond();
+        this.tokensPerNano = requestsPerSecond > 0 ? requestsPerSecond / TimeUnit.SECONDS.toNanos(1) : 0;
+        this.burst = requestsPerSecond <= 0
+            ? Double.POSITIVE_INFINITY
+            : settings.getBurst() > 0 ? settings.getBurst() : Math.ceil(requestsPerSecond);
+        this.queriesPerDay = settings.getQueriesPerDay();
+        this.backgroundQueriesPerDay = (long) (queriesPerDay * settings.getBackgroundQuotaShare());
+        this.maxQueued = settings.getMaxQueued();
+        this.maxWaitNanos = settings.getMaxWait().toNanos();
+        this.rejectionPolicy = settings.getRejectionPolicy();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("proxyapi-rate-limit-%d").build());
+
+        this.quotaExhausted = RateLimitExceededException.stackless(
+            "The daily quota of %d queries is used up".formatted(queriesPerDay));
+        this.waitedTooLong = RateLimitExceededException.stackless(
+            "Waited longer than %d ms for a request permit".formatted(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)));
+        for (Priority priority : Priority.values()) {
+            queues.add(new ArrayDeque<>());
+            String name = priority.name().toLowerCase();
+            queueFull.put(priority, RateLimitExceededException.stackless(
+                "The queue of %s requests is full".formatted(name)));
+            dropped.put(priority, RateLimitExceededException.stackless(
+                "Dropped from the full queue of %s requests".formatted(name)));
+        }
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Acquires a permit to send a request, waiting for it if necessary.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of queries of the request, that is the number of addresses.
+     * @throws RateLimitExceededException If the permit cannot be granted.
+     */
+    public void acquire(@NonNull Priority priority, int queries) {
+        try {
+            acquireAsync(priority, queries).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires a permit to send a request without blocking the calling thread.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of queries of the request, that is the number of addresses.
+     * @return A CompletableFuture that completes once the permit is granted, or exceptionally with a
+     *         {@link RateLimitExceededException} if it cannot be granted.
+     */
+    public CompletableFuture<Void> acquireAsync(@NonNull Priority priority, int queries) {
+        Waiter droppedWaiter = null;
+        Waiter waiter;
+
+        synchronized (lock) {
+            long now = System.nanoTime();
+            refill(now);
+
+            if (!hasQuota(priority, queries)) {
+                return CompletableFuture.failedFuture(quotaExhausted);
+            }
+            if (tokens >= 1 && noneWaiting(priority)) {
+                take(queries);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            ArrayDeque<Waiter> queue = queues.get(priority.ordinal());
+            if (queue.size() >= maxQueued) {
+                if (rejectionPolicy == RejectionPolicy.REJECT_NEW || queue.isEmpty()) {
+                    return CompletableFuture.failedFuture(queueFull.get(priority));
+                }
+                droppedWaiter = queue.pollFirst();
+            }
+
+            waiter = new Waiter(priority, queries, now + maxWaitNanos);
+            queue.addLast(waiter);
+            scheduleDrain(now);
+        }
+
+        if (droppedWaiter != null) {
+            droppedWaiter.future.completeExceptionally(dropped.get(priority));
+        }
+        return waiter.future;
+    }
+
+    /**
+     * Returns the number of requests waiting for a permit.
+     *
+     * @param priority The priority of the requests.
+     * @return The number of waiting requests.
+     */
+    public int queued(@NonNull Priority priority) {
+        synchronized (lock) {
+            return queues.get(priority.ordinal()).size();
+        }
+    }
+
+    /**
+     * Returns the number of queries left on the current quota day.
+     *
+     * @return The number of queries left, or {@link Long#MAX_VALUE} if the queries are not limited.
+     */
+    public long remainingQueries() {
+        synchronized (lock) {
+            refill(System.nanoTime());
+            return queriesPerDay > 0 ? Math.max(0, queriesPerDay - queriesToday) : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Stops the timer. Requests still waiting for their permit are cancelled.
+     */
+    @Override
+    public void close() {
+        List<Waiter> waiting = new ArrayList<>();
+        synchronized (lock) {
+            queues.forEach(waiting::addAll);
+            queues.forEach(ArrayDeque::clear);
+        }
+        scheduler.shutdownNow();
+        waiting.forEach(waiter -> waiter.future.cancel(false));
+    }
+
+    /**
+     * Grants the permits of waiting requests as long as tokens are available, and fails the requests that waited
+     * too long or cannot be granted within the daily quota. Called by the timer.
+     */
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        List<Waiter> exhausted = new ArrayList<>();
+
+        synchronized (lock) {
+            drainTask = null;
+            long now = System.nanoTime();
+            refill(now);
+
+            for (ArrayDeque<Waiter> queue : queues) {
+                Waiter waiter;
+                while ((waiter = queue.peekFirst()) != null) {
+                    if (waiter.deadline - now <= 0) {
+                        expired.add(queue.pollFirst());
+                    } else if (!hasQuota(waiter.priority, waiter.queries)) {
+                        exhausted.add(queue.pollFirst());
+                    } else if (tokens >= 1) {
+                        take(waiter.queries);
+                        granted.add(queue.pollFirst());
+                    } else {
+                        break;
+                    }
+                }
+            }
+            scheduleDrain(now);
+        }
+
+        expired.forEach(waiter -> waiter.future.completeExceptionally(waitedTooLong));
+        exhausted.forEach(waiter -> waiter.future.completeExceptionally(quotaExhausted));
+        granted.forEach(waiter -> waiter.future.complete(null));
+    }
+
+    /**
+     * Arms the timer for the next token or the next waiting time to run out, if any request is waiting.
+     * Must be called while holding the lock.
+     *
+     * @param now The current time in nanoseconds of {@link System#nanoTime()}.
+     */
+    private void scheduleDrain(long now) {
+        long next = Long.MAX_VALUE;
+        for (ArrayDeque<Waiter> queue : queues) {
+            Waiter head = queue.peekFirst();
+            if (head != null) {
+                long tokenAt = tokens >= 1 ? now : now + (long) Math.ceil((1 - tokens) / tokensPerNano);
+                next = Math.min(next, Math.min(tokenAt, head.deadline));
+            }
+        }
+        if (next == Long.MAX_VALUE) {
+            return;
+        }
+
+        if (drainTask != null) {
+            if (drainAt - next <= 0) {
+                return;
+            }
+            drainTask.cancel(false);
+        }
+        drainAt = next;
+        drainTask = scheduler.schedule(this::drain, Math.max(0, next - now), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill and starts a new quota day if necessary.
+     * Must be called while holding the lock.
+     *
+     * @param now The current time in nanoseconds of {@link System#nanoTime()}.
+     */
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+
+        long today = System.currentTimeMillis() / DAY_MILLIS;
+        if (today != day) {
+            day = today;
+            queriesToday = 0;
+        }
+    }
+
+    /**
+     * Takes a token and the queries of a request. Must be called while holding the lock.
+     *
+     * @param queries The number of queries of the request.
+     */
+    private void take(int queries) {
+        tokens--;
+        queriesToday += queries;
+    }
+
+    /**
+     * Checks if the daily quota of a priority allows a request. Must be called while holding the lock.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of queries of the request.
+     * @return true if the quota is not limited or has enough queries left.
+     */
+    private boolean hasQuota(Priority priority, int queries) {
+        if (queriesPerDay <= 0) {
+            return true;
+        }
+        long limit = priority == Priority.INTERACTIVE ? queriesPerDay : backgroundQueriesPerDay;
+        return queriesToday + queries <= limit;
+    }
+
+    /**
+     * Checks if no request of the same or a higher priority is waiting. Must be called while holding the lock.
+     *
+     * @param priority The priority of the new request.
+     * @return true if the new request may overtake all waiting requests.
+     */
+    private boolean noneWaiting(Priority priority) {
+        for (int ordinal = 0; ordinal <= priority.ordinal(); ordinal++) {
+            if (!queues.get(ordinal).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A request waiting for its permit.
+     *
+     * @param priority The priority of the request.
+     * @param queries  The number of queries of the request.
+     * @param deadline The time the request stops waiting, in nanoseconds of {@link System#nanoTime()}.
+     * @param future   The future completed once the permit is granted.
+     */
+    private record Waiter(Priority priority, int queries, long deadline, CompletableFuture<Void> future) {
+
+        private Waiter(Priority priority, int queries, long deadline) {
+            this(priority, queries, deadline, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.square.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.square.Validation;
+
+import java.time.Duration;
+
+/**
+ * The HistogramSnapshot class is an immutable copy of a {@link LatencyHistogram}. Percentiles are accurate to 1/32
+ * of their value; the mean and the maximum are exact.
+ * <p>
+ * Snapshots count everything recorded since the client was built. The latencies of a report interval are the
+ * difference of two snapshots:
+ * <pre>{@code
+ * HistogramSnapshot interval = current.minus(previous);
+ * Duration p99 = interval.percentile(0.99);
+ * }</pre>
+ */
+public class HistogramSnapshot {
+
+    /**
+     * The number of recorded values per bucket.
+     */
+    private final long[] counts;
+
+    /**
+     * The number of recorded values.
+     */
+    @Getter
+    private final long count;
+
+    /**
+     * The sum of the recorded values in nanoseconds.
+     */
+    private final long totalNanos;
+
+    /**
+     * The largest recorded value in nanoseconds.
+     */
+    private final long maxNanos;
+
+    /**
+     * Constructs a HistogramSnapshot.
+     *
+     * @param counts     The number of recorded values per bucket.
+     * @param count      The number of recorded values.
+     * @param totalNanos The sum of the recorded values in nanoseconds.
+     * @param maxNanos   The largest recorded value in nanoseconds.
+     */
+    HistogramSnapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, or zero if no value was recorded.
+     */
+    public Duration getMean() {
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos / count);
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The maximum, or zero if no value was recorded.
+     */
+    public Duration getMax() {
+        return Duration.ofNanos(maxNanos);
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values lies.
+     *
+     * @param percentile The percentile, between 0 and 1, such as 0.99 for the 99th percentile.
+     * @return The value of the percentile, or zero if no value was recorded.
+     * @throws IllegalArgumentException If the percentile is not between 0 and 1.
+     */
+    public Duration percentile(double percentile) {
+        Validation.checkArgument(percentile >= 0 && percentile <= 1, "Field percentile must be between 0 and 1");
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(LatencyHistogram.highestValue(i), maxNanos));
+            }
+        }
+        return Duration.ofNanos(maxNanos);
+    }
+
+    /**
+     * Returns the values recorded after an earlier snapshot of the same histogram. The maximum of the difference
+     * is the maximum of this snapshot, as the maximum of the interval alone is not known.
+     *
+     * @param earlier The earlier snapshot.
+     * @return The snapshot of the values recorded in between.
+     */
+    public HistogramSnapshot minus(@NonNull HistogramSnapshot earlier) {
+        long[] difference = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            difference[i] = Math.max(0, counts[i] - earlier.counts[i]);
+        }
+        return new HistogramSnapshot(difference, Math.max(0, count - earlier.count),
+                                     Math.max(0, totalNanos - earlier.totalNanos), maxNanos);
+    }
+}
@@ -0,0 +1,106 @@
+package net.square.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records latencies into log-linear buckets, like an HDR histogram: every power of two
+ * is split into {@value #SUB_BUCKETS} buckets of equal width, so that a recorded value is off by at most 1/32 of
+ * itself across the whole range of a long. Values below {@value #SUB_BUCKETS} nanoseconds are exact.
+ * <p>
+ * Recording is lock-free and never allocates: it increments a bucket, adds to a striped sum and raises the maximum.
+ * Threads recording into the same histogram only contend if they hit the same bucket.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of a value kept beyond its highest one bit.
+     */
+    static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets every power of two is split into.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets covering all non-negative longs.
+     */
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The number of recorded values per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The sum of the recorded values in nanoseconds.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * The largest recorded value in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency. Negative latencies, caused by a clock that stepped back, are recorded as zero.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        total.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the recorded latencies. Values recorded while the snapshot is taken may be missing from it.
+     *
+     * @return The snapshot.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new HistogramSnapshot(copy, count, total.sum(), max.get());
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value The non-negative value.
+     * @return The index of its bucket.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((exponent + 1) << SUB_BUCKET_BITS) + (int) (value >>> exponent) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value that falls into a bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The largest value of the bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << exponent;
+        return lowest + (1L << exponent) - 1;
+    }
+}
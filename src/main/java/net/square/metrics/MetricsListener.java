@@ -0,0 +1,19 @@
+package net.square.metrics;
+
+/**
+ * The MetricsListener interface receives the metrics of a client every report interval of the
+ * {@link net.square.settings.MetricsSettings}, such as to forward them to a monitoring system.
+ * <p>
+ * Listeners are called one after another on a single reporting thread; a listener that throws does not keep the
+ * others from being called, nor stop later reports.
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    /**
+     * Receives the metrics of a client.
+     *
+     * @param snapshot The current metrics.
+     */
+    void onMetrics(MetricsSnapshot snapshot);
+}
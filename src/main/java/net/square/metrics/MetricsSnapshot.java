@@ -0,0 +1,82 @@
+package net.square.metrics;
+
+import com.google.common.cache.CacheStats;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * The MetricsSnapshot class holds the metrics of a client at one point in time. Counters and histograms count
+ * everything since the client was built; gauges hold the current value.
+ */
+@Builder
+@Getter
+public class MetricsSnapshot {
+
+    /**
+     * The time the snapshot was taken.
+     */
+    private final Instant takenAt;
+
+    /**
+     * The statistics of the cache of address data, both tiers together. A hit in either tier is a hit; a lookup
+     * missing both is a miss and loads the address.
+     */
+    private final CacheStats cacheStats;
+
+    /**
+     * The statistics of the cache of address data fetched with settings profiles.
+     */
+    private final CacheStats profileCacheStats;
+
+    /**
+     * The statistics of the cache of compact address data.
+     */
+    private final CacheStats compactCacheStats;
+
+    /**
+     * The time from sending a request until its response arrived, for every answered request, including retries,
+     * hedges and HTTP error responses.
+     */
+    private final HistogramSnapshot networkLatency;
+
+    /**
+     * The time of reading and decoding the body of a successful response.
+     */
+    private final HistogramSnapshot parseLatency;
+
+    /**
+     * The time of a successful fetch of addresses that missed the cache, from asking for the permit of its first
+     * request until its response was decoded, including waits for the rate limit, retries and hedges.
+     */
+    private final HistogramSnapshot endToEndLatency;
+
+    /**
+     * The number of requests sent and not yet answered.
+     */
+    private final int inFlightRequests;
+
+    /**
+     * The number of asynchronous lookups waiting for their request, counting concurrent lookups of the same address
+     * once.
+     */
+    private final int inFlightLookups;
+
+    /**
+     * The number of requests waiting for a permit of the rate limit or a slot of the concurrency limit.
+     */
+    private final int queuedRequests;
+
+    /**
+     * The number of addresses waiting for their batch to be sent.
+     */
+    private final int pendingBatchAddresses;
+
+    /**
+     * The number of failed fetches per simple name of the exception type. Failed I/O is counted under the type of
+     * the I/O exception, such as {@code HttpTimeoutException}, rather than {@code AddressDataFetchingException}.
+     */
+    private final Map<String, Long> failures;
+}
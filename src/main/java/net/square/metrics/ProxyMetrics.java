@@ -0,0 +1,351 @@
+package net.square.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.NonNull;
+import net.square.exceptions.impl.AddressDataFetchingException;
+import net.square.settings.MetricsSettings;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The ProxyMetrics class records the metrics of a client measured on its requests, according to the
+ * {@link MetricsSettings}, and reports the snapshots of the client to the listeners and through JMX.
+ * <p>
+ * The hit and miss counts are kept by the caches themselves. This class is only called on requests, never on
+ * cache hits.
+ */
+public class ProxyMetrics implements ProxyMetricsMXBean, AutoCloseable {
+
+    /**
+     * The time from sending a request until its response arrived.
+     */
+    private final LatencyHistogram networkLatency = new LatencyHistogram();
+
+    /**
+     * The time of decoding a response.
+     */
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+
+    /**
+     * The time of a successful fetch.
+     */
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+    /**
+     * The number of requests sent and not yet answered.
+     */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    /**
+     * The number of failed fetches per simple name of the exception type.
+     */
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    /**
+     * The settings of the metrics.
+     */
+    private final MetricsSettings settings;
+
+    /**
+     * The snapshots of the client, set once reporting started.
+     */
+    private volatile Supplier<MetricsSnapshot> snapshots;
+
+    /**
+     * The name the metrics are registered under in the platform MBean server, or null if they are not registered.
+     */
+    private ObjectName objectName;
+
+    /**
+     * The thread reporting to the listeners, or null if there are no listeners.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a ProxyMetrics.
+     *
+     * @param settings The settings of the metrics.
+     */
+    public ProxyMetrics(@NonNull MetricsSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Starts reporting the snapshots of the client: they are handed to the listeners every report interval on a
+     * daemon thread, and registered in the platform MBean server if a JMX name is set. Both last until the metrics
+     * are closed.
+     *
+     * @param snapshots The supplier taking a snapshot of the client.
+     * @throws IllegalArgumentException If the JMX name is malformed or already registered.
+     */
+    public synchronized void start(@NonNull Supplier<MetricsSnapshot> snapshots) {
+        this.snapshots = snapshots;
+
+        if (settings.getJmxName() != null) {
+            try {
+                ObjectName name = new ObjectName(settings.getJmxName());
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+                objectName = name;
+            } catch (JMException e) {
+                throw new IllegalArgumentException(
+                    "Cannot register the metrics under %s".formatted(settings.getJmxName()), e);
+            }
+        }
+
+        if (!settings.getListeners().isEmpty()) {
+            long intervalNanos = settings.getReportInterval().toNanos();
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("proxyapi-metrics-%d").build());
+            scheduler.scheduleAtFixedRate(this::report, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops reporting: the reporting thread is shut down and the metrics are unregistered from the platform MBean
+     * server, so that their JMX name can be used again.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+                // The name was unregistered in the meantime, so there is nothing left to release
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Records that a request was sent.
+     */
+    public void onRequestSent() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    /**
+     * Records that a sent request was answered or failed.
+     */
+    public void onRequestDone() {
+        inFlightRequests.decrementAndGet();
+    }
+
+    /**
+     * Records the time from sending a request until its response arrived.
+     *
+     * @param nanos The time in nanoseconds.
+     */
+    public void recordNetwork(long nanos) {
+        networkLatency.record(nanos);
+    }
+
+    /**
+     * Records the time of decoding a response.
+     *
+     * @param nanos The time in nanoseconds.
+     */
+    public void recordParse(long nanos) {
+        parseLatency.record(nanos);
+    }
+
+    /**
+     * Records the outcome of a fetch: the time of a successful one, or the exception type of a failed one.
+     *
+     * @param nanos   The time of the fetch in nanoseconds.
+     * @param failure The failure of the fetch, or null if it succeeded.
+     */
+    public void recordFetch(long nanos, Throwable failure) {
+        if (failure == null) {
+            endToEndLatency.record(nanos);
+            return;
+        }
+        failures.computeIfAbsent(failureType(failure), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the number of requests sent and not yet answered.
+     *
+     * @return The number of requests in flight.
+     */
+    @Override
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * Takes a snapshot of the network time of requests.
+     *
+     * @return The snapshot.
+     */
+    public HistogramSnapshot networkLatency() {
+        return networkLatency.snapshot();
+    }
+
+    /**
+     * Takes a snapshot of the parse time of responses.
+     *
+     * @return The snapshot.
+     */
+    public HistogramSnapshot parseLatency() {
+        return parseLatency.snapshot();
+    }
+
+    /**
+     * Takes a snapshot of the end-to-end time of fetches.
+     *
+     * @return The snapshot.
+     */
+    public HistogramSnapshot endToEndLatency() {
+        return endToEndLatency.snapshot();
+    }
+
+    /**
+     * Returns the number of failed fetches per exception type.
+     *
+     * @return The failure counts, sorted by the name of the exception type.
+     */
+    public Map<String, Long> failures() {
+        Map<String, Long> counts = new TreeMap<>();
+        failures.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getHitCount() {
+        return snapshot().getCacheStats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return snapshot().getCacheStats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return snapshot().getCacheStats().hitRate();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return snapshot().getCacheStats().loadCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return snapshot().getCacheStats().evictionCount();
+    }
+
+    @Override
+    public int getInFlightLookups() {
+        return snapshot().getInFlightLookups();
+    }
+
+    @Override
+    public int getQueuedRequests() {
+        return snapshot().getQueuedRequests();
+    }
+
+    @Override
+    public int getPendingBatchAddresses() {
+        return snapshot().getPendingBatchAddresses();
+    }
+
+    @Override
+    public Map<String, Double> getNetworkLatency() {
+        return summarize(networkLatency.snapshot());
+    }
+
+    @Override
+    public Map<String, Double> getParseLatency() {
+        return summarize(parseLatency.snapshot());
+    }
+
+    @Override
+    public Map<String, Double> getEndToEndLatency() {
+        return summarize(endToEndLatency.snapshot());
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        return failures();
+    }
+
+    /**
+     * Hands a snapshot of the client to every listener. Called by the reporting thread.
+     */
+    private void report() {
+        MetricsSnapshot snapshot = snapshot();
+        for (MetricsListener listener : settings.getListeners()) {
+            try {
+                listener.onMetrics(snapshot);
+            } catch (RuntimeException ignored) {
+                // A failing listener must neither silence the others nor cancel the reports
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the client.
+     *
+     * @return The snapshot.
+     */
+    private MetricsSnapshot snapshot() {
+        return snapshots.get();
+    }
+
+    /**
+     * Summarizes a histogram for JMX.
+     *
+     * @param histogram The snapshot of the histogram.
+     * @return The count, and the mean, percentiles and maximum in milliseconds.
+     */
+    private static Map<String, Double> summarize(HistogramSnapshot histogram) {
+        Map<String, Double> summary = new LinkedHashMap<>();
+        summary.put("count", (double) histogram.getCount());
+        summary.put("mean", histogram.getMean().toNanos() / 1e6);
+        summary.put("p50", histogram.percentile(0.5).toNanos() / 1e6);
+        summary.put("p90", histogram.percentile(0.9).toNanos() / 1e6);
+        summary.put("p99", histogram.percentile(0.99).toNanos() / 1e6);
+        summary.put("p999", histogram.percentile(0.999).toNanos() / 1e6);
+        summary.put("max", histogram.getMax().toNanos() / 1e6);
+        return summary;
+    }
+
+    /**
+     * Returns the name a failure is counted under. The wrappers added by futures and the cache are removed, and a
+     * failed fetch is counted under the type of the I/O exception that caused it.
+     *
+     * @param failure The failure, possibly wrapped.
+     * @return The simple name of the exception type.
+     */
+    private static String failureType(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+            || cause instanceof UncheckedExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof AddressDataFetchingException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,102 @@
+package net.square.metrics;
+
+import java.util.Map;
+
+/**
+ * The ProxyMetricsMXBean interface exposes the metrics of a client through JMX. Latencies are summarized as maps
+ * of their {@code count} and their {@code mean}, {@code p50}, {@code p90}, {@code p99}, {@code p999} and
+ * {@code max} in milliseconds.
+ */
+public interface ProxyMetricsMXBean {
+
+    /**
+     * Returns the number of lookups answered by the cache of address data.
+     *
+     * @return The hit count.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups that missed the cache of address data.
+     *
+     * @return The miss count.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the share of lookups answered by the cache of address data.
+     *
+     * @return The hit rate between 0 and 1, or 1 if no lookup was made.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of loads of missed addresses, successful or not.
+     *
+     * @return The load count.
+     */
+    long getLoadCount();
+
+    /**
+     * Returns the number of entries evicted from the cache of address data, for size or expiry.
+     *
+     * @return The eviction count.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of requests sent and not yet answered.
+     *
+     * @return The number of requests in flight.
+     */
+    int getInFlightRequests();
+
+    /**
+     * Returns the number of asynchronous lookups waiting for their request.
+     *
+     * @return The number of lookups in flight.
+     */
+    int getInFlightLookups();
+
+    /**
+     * Returns the number of requests waiting for a permit or a slot.
+     *
+     * @return The number of queued requests.
+     */
+    int getQueuedRequests();
+
+    /**
+     * Returns the number of addresses waiting for their batch to be sent.
+     *
+     * @return The number of pending addresses.
+     */
+    int getPendingBatchAddresses();
+
+    /**
+     * Returns the summary of the network time of requests.
+     *
+     * @return The summary.
+     */
+    Map<String, Double> getNetworkLatency();
+
+    /**
+     * Returns the summary of the parse time of responses.
+     *
+     * @return The summary.
+     */
+    Map<String, Double> getParseLatency();
+
+    /**
+     * Returns the summary of the end-to-end time of fetches.
+     *
+     * @return The summary.
+     */
+    Map<String, Double> getEndToEndLatency();
+
+    /**
+     * Returns the number of failed fetches per exception type.
+     *
+     * @return The failure counts.
+     */
+    Map<String, Long> getFailures();
+}
@@ -0,0 +1,329 @@
+package net.square.range;
+
+import lombok.NonNull;
+import net.square.cache.AddressKey;
+import net.square.cache.PrefixTrie;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CidrRangeIndex class is an immutable RangeIndex of CIDR ranges. Nested ranges are allowed; the most specific
+ * range containing an address wins.
+ * <p>
+ * The IPv4 ranges are flattened into a sorted array of disjoint intervals when the index is built. A lookup picks
+ * the slice of intervals sharing the upper 16 bits of the address from a bucket table and searches it binarily,
+ * which touches only a few cache lines even for hundreds of thousands of ranges. The IPv6 ranges, which are usually
+ * far fewer, are held in a {@link PrefixTrie}, which is not written once the index is built.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * RangeIndex rangeIndex = CidrRangeIndex.builder()
+ *     .reserved()
+ *     .file(Path.of("datacenter.txt"), KnownRange.of("Datacenter", "Hosting", false, 66))
+ *     .build();
+ * }</pre>
+ */
+public final class CidrRangeIndex implements RangeIndex {
+
+    /**
+     * The reserved IPv4 and IPv6 ranges, which are not routed on the internet, and their names.
+     */
+    private static final String[][] RESERVED_RANGES = {
+        {"0.0.0.0/8", "This network (RFC 1122)"},
+        {"10.0.0.0/8", "Private network (RFC 1918)"},
+        {"100.64.0.0/10", "Carrier-grade NAT (RFC 6598)"},
+        {"127.0.0.0/8", "Loopback (RFC 1122)"},
+        {"169.254.0.0/16", "Link-local (RFC 3927)"},
+        {"172.16.0.0/12", "Private network (RFC 1918)"},
+        {"192.168.0.0/16", "Private network (RFC 1918)"},
+        {"224.0.0.0/4", "Multicast (RFC 5771)"},
+        {"240.0.0.0/4", "Reserved (RFC 1112)"},
+        {"::/128", "Unspecified (RFC 4291)"},
+        {"::1/128", "Loopback (RFC 4291)"},
+        {"fc00::/7", "Unique local (RFC 4193)"},
+        {"fe80::/10", "Link-local (RFC 4291)"},
+        {"ff00::/8", "Multicast (RFC 4291)"}
+    };
+
+    /**
+     * The index holding only the reserved ranges.
+     */
+    private static final CidrRangeIndex RESERVED = builder().reserved().build();
+
+    /**
+     * The number of bits of an IPv4 address selecting its bucket.
+     */
+    private static final int BUCKET_BITS = 16;
+
+    /**
+     * The first address of each IPv4 interval, in ascending unsigned order.
+     */
+    private final int[] ipv4Starts;
+
+    /**
+     * The range of each IPv4 interval, null for the gaps between ranges.
+     */
+    private final KnownRange[] ipv4Ranges;
+
+    /**
+     * The index of the first IPv4 interval starting in each bucket, followed by the number of intervals.
+     */
+    private final int[] ipv4Buckets;
+
+    /**
+     * The IPv6 ranges by prefix.
+     */
+    private final PrefixTrie<KnownRange> ipv6Trie;
+
+    /**
+     * The number of ranges in the index.
+     */
+    private final int size;
+
+    private CidrRangeIndex(int[] ipv4Starts, KnownRange[] ipv4Ranges, PrefixTrie<KnownRange> ipv6Trie, int size) {
+        this.ipv4Starts = ipv4Starts;
+        this.ipv4Ranges = ipv4Ranges;
+        this.ipv6Trie = ipv6Trie;
+        this.size = size;
+
+        this.ipv4Buckets = new int[(1 << BUCKET_BITS) + 1];
+        int index = 0;
+        for (int bucket = 0; bucket < 1 << BUCKET_BITS; bucket++) {
+            while (index < ipv4Starts.length && ipv4Starts[index] >>> (32 - BUCKET_BITS) < bucket) {
+                index++;
+            }
+            ipv4Buckets[bucket] = index;
+        }
+        ipv4Buckets[1 << BUCKET_BITS] = ipv4Starts.length;
+    }
+
+    /**
+     * Returns the index of the reserved ranges: the private networks of RFC 1918, the carrier-grade NAT range,
+     * loopback, link-local, multicast and the unique local IPv6 addresses.
+     *
+     * @return The CidrRangeIndex of the reserved ranges.
+     */
+    public static CidrRangeIndex reserved() {
+        return RESERVED;
+    }
+
+    /**
+     * Creates a builder of a CidrRangeIndex.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public KnownRange find(@NonNull AddressKey addressKey) {
+        return addressKey.isIPv4() ? findIPv4(addressKey.toIPv4()) : ipv6Trie.longestMatch(addressKey);
+    }
+
+    /**
+     * Returns the number of ranges in the index.
+     *
+     * @return The number of ranges.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the range of the IPv4 interval containing an address.
+     *
+     * @param address The IPv4 address packed into an int.
+     * @return The range, or null if the address is in no range.
+     */
+    private KnownRange findIPv4(int address) {
+        int bucket = address >>> (32 - BUCKET_BITS);
+
+        // Find the last interval of the bucket starting at or before the address; if there is none, the address
+        // belongs to the last interval of a preceding bucket
+        int low = ipv4Buckets[bucket];
+        int high = ipv4Buckets[bucket + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Integer.compareUnsigned(ipv4Starts[middle], address) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= 0 ? ipv4Ranges[high] : null;
+    }
+
+    /**
+     * The Builder class collects the ranges of a CidrRangeIndex. A range added later replaces an earlier one with
+     * the same prefix.
+     */
+    public static final class Builder {
+
+        /**
+         * The IPv4 ranges, keyed by their first address shifted left by six bits and combined with their prefix
+         * length, so that the keys sort by address and nested ranges after the ranges containing them.
+         */
+        private Map<Long, KnownRange> ipv4Ranges = new HashMap<>();
+
+        /**
+         * The trie receiving the IPv6 ranges.
+         */
+        private PrefixTrie<KnownRange> ipv6Trie = new PrefixTrie<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the reserved ranges, see {@link CidrRangeIndex#reserved()}.
+         *
+         * @return This builder.
+         */
+        public Builder reserved() {
+            for (String[] range : RESERVED_RANGES) {
+                range(range[0], KnownRange.reserved(range[1]));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a range.
+         *
+         * @param cidr       The range in CIDR notation, such as {@code "45.142.112.0/22"}. A single address counts
+         *                   as a range of its own.
+         * @param knownRange The data of the addresses in the range.
+         * @return This builder.
+         * @throws IllegalArgumentException If the text is not in CIDR notation.
+         */
+        public Builder range(@NonNull String cidr, @NonNull KnownRange knownRange) {
+            int slash = cidr.indexOf('/');
+            AddressKey addressKey = AddressKey.of(slash < 0 ? cidr : cidr.substring(0, slash));
+            int addressBits = addressKey.isIPv4() ? 32 : PrefixTrie.ADDRESS_BITS;
+
+            int prefixLength;
+            try {
+                prefixLength = slash < 0 ? addressBits : Integer.parseInt(cidr.substring(slash + 1).strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length in range %s".formatted(cidr), e);
+            }
+            if (prefixLength < 0 || prefixLength > addressBits) {
+                throw new IllegalArgumentException("Invalid prefix length in range %s".formatted(cidr));
+            }
+
+            if (addressKey.isIPv4()) {
+                long start = addressKey.toIPv4() & (prefixLength == 0 ? 0 : 0xFFFF_FFFFL << (32 - prefixLength))
+                    & 0xFFFF_FFFFL;
+                ipv4Ranges.put(start << 6 | prefixLength, knownRange);
+            } else {
+                ipv6Trie.put(addressKey, prefixLength, knownRange);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the ranges of a file, one range in CIDR notation per line. Blank lines and everything after a
+         * {@code #} are ignored.
+         *
+         * @param file       The file to read.
+         * @param knownRange The data of the addresses in the ranges.
+         * @return This builder.
+         * @throws IOException If the file cannot be read.
+         * @throws IllegalArgumentException If a line is not in CIDR notation.
+         */
+        public Builder file(@NonNull Path file, @NonNull KnownRange knownRange) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String cidr = (comment < 0 ? line : line.substring(0, comment)).strip();
+                    if (!cidr.isEmpty()) {
+                        range(cidr, knownRange);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds the CidrRangeIndex. The builder must not be used afterwards.
+         *
+         * @return The CidrRangeIndex.
+         */
+        public CidrRangeIndex build() {
+            long[] keys = ipv4Ranges.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            Intervals intervals = new Intervals(keys.length * 2 + 1);
+
+            // Walk the ranges in address order, keeping the ranges containing the current address on a stack.
+            // CIDR ranges are either nested or disjoint, so a range ends before any range containing it
+            long[] ends = new long[33];
+            KnownRange[] open = new KnownRange[33];
+            int depth = 0;
+            for (long key : keys) {
+                long start = key >>> 6;
+                int prefixLength = (int) (key & 63);
+                while (depth > 0 && ends[depth - 1] < start) {
+                    depth--;
+                    intervals.add(ends[depth] + 1, depth > 0 ? open[depth - 1] : null);
+                }
+
+                KnownRange knownRange = ipv4Ranges.get(key);
+                intervals.add(start, knownRange);
+                ends[depth] = start + (1L << (32 - prefixLength)) - 1;
+                open[depth++] = knownRange;
+            }
+            while (depth > 0) {
+                depth--;
+                if (ends[depth] < 0xFFFF_FFFFL) {
+                    intervals.add(ends[depth] + 1, depth > 0 ? open[depth - 1] : null);
+                }
+            }
+
+            CidrRangeIndex index = new CidrRangeIndex(
+                Arrays.copyOf(intervals.starts, intervals.count), Arrays.copyOf(intervals.ranges, intervals.count),
+                ipv6Trie, keys.length + ipv6Trie.size());
+            ipv4Ranges = null;
+            ipv6Trie = null;
+            return index;
+        }
+    }
+
+    /**
+     * The Intervals class collects the disjoint IPv4 intervals while the ranges are flattened.
+     */
+    private static final class Intervals {
+
+        private final int[] starts;
+        private final KnownRange[] ranges;
+        private int count;
+
+        private Intervals(int capacity) {
+            this.starts = new int[capacity];
+            this.ranges = new KnownRange[capacity];
+        }
+
+        /**
+         * Starts an interval. An interval starting at the same address as the last one replaces it, and an interval
+         * of the same range as the last one merges into it.
+         *
+         * @param start      The first address of the interval.
+         * @param knownRange The range of the interval, or null for a gap.
+         */
+        private void add(long start, KnownRange knownRange) {
+            if (count > 0 && starts[count - 1] == (int) start) {
+                count--;
+            }
+            if (count > 0 ? ranges[count - 1] == knownRange : knownRange == null) {
+                return;
+            }
+            starts[count] = (int) start;
+            ranges[count++] = knownRange;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.square.range;
+
+import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import net.square.cache.Verdict;
+import net.square.wrapper.impl.SuccessWrapper;
+
+/**
+ * The KnownRange class describes the addresses of a known range, such as the ranges of a hosting provider or the
+ * reserved private networks. The address data and the verdict of the range are built once; answering an address
+ * within the range only creates a SuccessWrapper carrying the address.
+ * <p>
+ * Synthesized results come from the node {@value #NODE} and never retain a raw JSON object.
+ */
+@Getter
+public final class KnownRange {
+
+    /**
+     * The node reported by synthesized results.
+     */
+    public static final String NODE = "local";
+
+    /**
+     * The name of the range, reported as the provider of its addresses.
+     */
+    private final String name;
+
+    /**
+     * The type of the addresses, as used in the "type" field, such as "Hosting" or "VPN".
+     */
+    private final String type;
+
+    /**
+     * Whether the addresses are proxies.
+     */
+    private final boolean proxy;
+
+    /**
+     * The risk score of the addresses, from 0 to 100.
+     */
+    private final int risk;
+
+    /**
+     * The verdict of the addresses.
+     */
+    private final Verdict verdict;
+
+    /**
+     * The result of the range, shared by the results of its addresses.
+     */
+    @Getter(AccessLevel.NONE)
+    private final SuccessWrapper template;
+
+    private KnownRange(String name, String type, boolean proxy, int risk) {
+        this.name = name;
+        this.type = type;
+        this.proxy = proxy;
+        this.risk = risk;
+
+        JsonObject addressObject = new JsonObject();
+        addressObject.addProperty("provider", name);
+        addressObject.addProperty("proxy", proxy ? "yes" : "no");
+        addressObject.addProperty("type", type);
+        addressObject.addProperty("risk", String.valueOf(risk));
+
+        // The address of the template is replaced by the address of each result
+        this.template = SuccessWrapper.lazy("ok", NODE, "0.0.0.0", "0s", addressObject.toString());
+        this.verdict = Verdict.of(template);
+    }
+
+    /**
+     * Creates a KnownRange.
+     *
+     * @param name  The name of the range, reported as the provider of its addresses.
+     * @param type  The type of the addresses, as used in the "type" field, such as "Hosting" or "VPN".
+     * @param proxy Whether the addresses are proxies.
+     * @param risk  The risk score of the addresses, from 0 to 100.
+     * @return The KnownRange.
+     */
+    public static KnownRange of(@NonNull String name, @NonNull String type, boolean proxy, int risk) {
+        return new KnownRange(name, type, proxy, risk);
+    }
+
+    /**
+     * Creates a KnownRange of reserved addresses, such as private networks, which are neither proxies nor risky.
+     *
+     * @param name The name of the range.
+     * @return The KnownRange.
+     */
+    public static KnownRange reserved(@NonNull String name) {
+        return of(name, "Reserved", false, 0);
+    }
+
+    /**
+     * Returns the result of an address within the range.
+     *
+     * @param ipAddress The IP address.
+     * @return The SuccessWrapper of the address carrying the data of the range.
+     */
+    public SuccessWrapper toSuccessWrapper(@NonNull String ipAddress) {
+        return template.withIpAddress(ipAddress);
+    }
+}
@@ -0,0 +1,24 @@
+package net.square.range;
+
+import lombok.NonNull;
+import net.square.cache.AddressKey;
+
+/**
+ * The RangeIndex interface is a local index of known address ranges, consulted before the cache and proxycheck.io.
+ * Addresses within a known range are answered with the data of the range, without a request.
+ * <p>
+ * Implementations are read by many threads at once and must not block them.
+ *
+ * @see CidrRangeIndex
+ * @see SwappableRangeIndex
+ */
+public interface RangeIndex {
+
+    /**
+     * Finds the known range containing an address.
+     *
+     * @param addressKey The address.
+     * @return The most specific range containing the address, or null if the address is not in a known range.
+     */
+    KnownRange find(@NonNull AddressKey addressKey);
+}
@@ -0,0 +1,52 @@
+package net.square.range;
+
+import lombok.NonNull;
+import net.square.cache.AddressKey;
+
+/**
+ * The SwappableRangeIndex class is a RangeIndex whose ranges can be replaced at runtime, such as after the range
+ * files were updated. A new index is built aside and then swapped in with a single volatile write, so readers are
+ * never blocked and always see either the old or the new index completely.
+ */
+public class SwappableRangeIndex implements RangeIndex {
+
+    /**
+     * The index currently answering lookups.
+     */
+    private volatile RangeIndex current;
+
+    /**
+     * Constructs a SwappableRangeIndex.
+     *
+     * @param initial The index answering lookups until it is swapped.
+     */
+    public SwappableRangeIndex(@NonNull RangeIndex initial) {
+        this.current = initial;
+    }
+
+    @Override
+    public KnownRange find(@NonNull AddressKey addressKey) {
+        return current.find(addressKey);
+    }
+
+    /**
+     * Replaces the index answering lookups.
+     *
+     * @param replacement The new index.
+     * @return The replaced index.
+     */
+    public synchronized RangeIndex swap(@NonNull RangeIndex replacement) {
+        RangeIndex replaced = current;
+        current = replacement;
+        return replaced;
+    }
+
+    /**
+     * Returns the index currently answering lookups.
+     *
+     * @return The current index.
+     */
+    public RangeIndex current() {
+        return current;
+    }
+}
@@ -0,0 +1,97 @@
+package net.square.result;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.NonNull;
+import net.square.exceptions.impl.ProxyCheckBlockingException;
+import net.square.limit.FallbackResults;
+import net.square.wrapper.impl.SuccessWrapper;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The LookupResult interface represents the outcome of a lookup that reports failures as values instead of
+ * exceptions. A lookup either found the address data ({@link Success}), was refused by a blocking response of
+ * proxycheck.io ({@link Blocked}), failed ({@link Failed}), or only knows that the proxy status of the address is
+ * unknown ({@link Unknown}).
+ * <p>
+ * Refusals raised at a high rate, such as an open circuit or a remembered blocking response, share a single
+ * exception without a stack trace, so that a lookup storm against an unavailable API stays cheap.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * LookupResult result = proxyAPI.lookupAddress(address);
+ * if (result instanceof LookupResult.Success success) {
+ *     allow(success.data());
+ * } else if (result instanceof LookupResult.Blocked blocked) {
+ *     alert(blocked.exception().getMessage());
+ * } else {
+ *     challenge(address);
+ * }
+ * }</pre>
+ */
+public sealed interface LookupResult {
+
+    /**
+     * Creates the result of a lookup that returned address data. The unknown fallback result of an open circuit
+     * becomes an {@link Unknown} result.
+     *
+     * @param successWrapper The returned address data.
+     * @return The Success or Unknown result.
+     */
+    static LookupResult of(@NonNull SuccessWrapper successWrapper) {
+        return FallbackResults.isUnknown(successWrapper)
+            ? new Unknown(successWrapper.getIpAddress())
+            : new Success(successWrapper);
+    }
+
+    /**
+     * Creates the result of a failed lookup. The wrappers added by the cache and by futures are removed.
+     *
+     * @param throwable The failure, possibly wrapped.
+     * @return The Blocked result if proxycheck.io answered with a blocking response, the Failed result otherwise.
+     */
+    static LookupResult failure(@NonNull Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException
+            || cause instanceof UncheckedExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof ProxyCheckBlockingException blocking ? new Blocked(blocking) : new Failed(cause);
+    }
+
+    /**
+     * The result of a lookup that found the address data, from the cache, a known range or proxycheck.io.
+     *
+     * @param data The address data.
+     */
+    record Success(@NonNull SuccessWrapper data) implements LookupResult {
+    }
+
+    /**
+     * The result of a lookup refused by a blocking response of proxycheck.io, such as the denial of a used up plan.
+     *
+     * @param exception The exception describing the blocking response. It carries no stack trace if the response
+     *                  was remembered.
+     */
+    record Blocked(@NonNull ProxyCheckBlockingException exception) implements LookupResult {
+    }
+
+    /**
+     * The result of a lookup that failed, such as an I/O error, a refusal of the rate limit or an open circuit
+     * without a fallback.
+     *
+     * @param cause The failure.
+     */
+    record Failed(@NonNull Throwable cause) implements LookupResult {
+    }
+
+    /**
+     * The result of a lookup that only knows that the proxy status of the address is unknown, because the circuit
+     * to proxycheck.io is open and no other fallback applied.
+     *
+     * @param ipAddress The IP address.
+     */
+    record Unknown(@NonNull String ipAddress) implements LookupResult {
+    }
+}
@@ -0,0 +1,42 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The BatchSettings class represents the settings for merging single address lookups into batched requests.
+ * Concurrent cache misses that arrive within the configured window are sent to proxycheck.io as one multi-address
+ * request. A window of {@link Duration#ZERO} disables the coalescing and every miss is fetched on its own.
+ */
+@Builder
+@Getter
+public class BatchSettings {
+
+    /**
+     * The maximum number of addresses proxycheck.io accepts in a single multi-address request.
+     */
+    public static final int MAX_ADDRESSES_PER_REQUEST = 1000;
+
+    /**
+     * How long a pending miss waits for other misses before the batch is sent.
+     */
+    @Builder.Default
+    private Duration window = Duration.ZERO;
+
+    /**
+     * The number of pending addresses that sends the batch right away, without waiting for the window to pass.
+     */
+    @Builder.Default
+    private int maxAddresses = 100;
+
+    /**
+     * Checks if coalescing of single address misses is enabled.
+     *
+     * @return true if the window is positive, false otherwise.
+     */
+    public boolean isEnabled() {
+        return !window.isZero() && !window.isNegative();
+    }
+}
@@ -0,0 +1,69 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import net.square.limit.Fallback;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The CircuitBreakerSettings class represents the settings of the circuit breaker around the requests to
+ * proxycheck.io.
+ * <p>
+ * The breaker tracks the outcome of the last {@link #getWindowSize()} requests; errors, blocking responses and
+ * requests slower than {@link #getSlowCallThreshold()} count as failures. Once the share of failures reaches
+ * {@link #getFailureRateThreshold()}, the circuit opens: for {@link #getOpenDuration()} no request is sent and
+ * lookups that would need one are answered by the first applicable {@link #getFallbacks() fallback} instead.
+ * Afterwards a single probe request is let through; it closes the circuit if it succeeds and opens it again
+ * otherwise. The breaker is disabled by default.
+ */
+@Builder
+@Getter
+public class CircuitBreakerSettings {
+
+    /**
+     * The share of failed requests that opens the circuit, between 0 and 1, or 0 to disable the breaker.
+     */
+    private double failureRateThreshold;
+
+    /**
+     * The duration after which a request counts as failed, even if it succeeds.
+     */
+    @Builder.Default
+    private Duration slowCallThreshold = Duration.ofSeconds(2);
+
+    /**
+     * The number of recent requests the failure rate is calculated over.
+     */
+    @Builder.Default
+    private int windowSize = 20;
+
+    /**
+     * The number of requests that must have been recorded before the circuit may open.
+     */
+    @Builder.Default
+    private int minimumCalls = 10;
+
+    /**
+     * How long the circuit stays open before a probe request is let through.
+     */
+    @Builder.Default
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    /**
+     * The sources a lookup is answered from while the circuit is open, tried in order. If none applies, the lookup
+     * fails with a {@link net.square.exceptions.impl.CircuitOpenException}.
+     */
+    @Builder.Default
+    private List<Fallback> fallbacks = List.of(Fallback.STALE, Fallback.VERDICT, Fallback.UNKNOWN);
+
+    /**
+     * Checks if the circuit breaker is enabled.
+     *
+     * @return true if a failure rate threshold is configured, false otherwise.
+     */
+    public boolean isEnabled() {
+        return failureRateThreshold > 0;
+    }
+}
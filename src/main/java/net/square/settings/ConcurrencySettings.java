@@ -0,0 +1,73 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The ConcurrencySettings class represents the settings of the adaptive limit on the number of requests to
+ * proxycheck.io in flight at once.
+ * <p>
+ * The limit follows the round-trip times of the requests: as long as they stay close to the fastest recent one, the
+ * limit grows by one; once they rise because requests start queueing upstream, it shrinks by one. Failed requests
+ * cut it by {@link #getBackoffRatio()}. Requests beyond the limit wait in a bounded queue. Without the limit, which is
+ * the default, requests are sent right away.
+ */
+@Builder
+@Getter
+public class ConcurrencySettings {
+
+    /**
+     * Whether the number of requests in flight is limited.
+     */
+    private boolean enabled;
+
+    /**
+     * The limit before any round-trip time was measured.
+     */
+    @Builder.Default
+    private int initialLimit = 20;
+
+    /**
+     * The lowest limit.
+     */
+    @Builder.Default
+    private int minLimit = 1;
+
+    /**
+     * The highest limit.
+     */
+    @Builder.Default
+    private int maxLimit = 200;
+
+    /**
+     * The estimated number of requests queued upstream below which the limit grows.
+     */
+    @Builder.Default
+    private int alpha = 3;
+
+    /**
+     * The estimated number of requests queued upstream above which the limit shrinks.
+     */
+    @Builder.Default
+    private int beta = 6;
+
+    /**
+     * The factor the limit is multiplied with after a failed request, between 0 and 1.
+     */
+    @Builder.Default
+    private double backoffRatio = 0.9;
+
+    /**
+     * The number of requests that may wait for a free slot.
+     */
+    @Builder.Default
+    private int maxQueued = 256;
+
+    /**
+     * How long a request may wait for a free slot.
+     */
+    @Builder.Default
+    private Duration maxWait = Duration.ofSeconds(2);
+}
@@ -0,0 +1,44 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The EvictionSettings class represents the settings for bounding the memory of the lookup cache.
+ * <p>
+ * A bounded cache is split into a small window, which takes every newly fetched result, and a main area holding the
+ * rest of the weight. A result only moves to the main area once the frequency sketch has seen its address at least
+ * {@link #getAdmissionFrequency()} times. Addresses that are looked up once, such as those of a scanning botnet,
+ * therefore only cycle through the window and never push the regular addresses out of the main area.
+ * Without a maximum weight, which is the default, the cache is only bounded by the lifetime of its entries.
+ */
+@Builder
+@Getter
+public class EvictionSettings {
+
+    /**
+     * The maximum estimated size of all cached results in bytes, or 0 for an unbounded cache.
+     */
+    private long maximumWeight;
+
+    /**
+     * The fraction of the maximum weight taken by the window, between 0 and 1.
+     */
+    @Builder.Default
+    private double windowFraction = 0.01;
+
+    /**
+     * The number of recent accesses an address needs to be admitted from the window into the main area.
+     */
+    @Builder.Default
+    private int admissionFrequency = 2;
+
+    /**
+     * Checks if the cache is bounded by weight.
+     *
+     * @return true if a maximum weight is configured, false otherwise.
+     */
+    public boolean isEnabled() {
+        return maximumWeight > 0;
+    }
+}
@@ -0,0 +1,87 @@
+package net.square.settings;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import net.square.wrapper.compact.CompactAddressData;
+import net.square.wrapper.compact.ProxyStatus;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * The ExpiryRule class assigns a time to live to the results matching a condition.
+ * The condition is evaluated once, when a result is fetched, on the compact form of the result.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExpiryRule {
+
+    /**
+     * The condition a result has to match.
+     */
+    private final Predicate<CompactAddressData> condition;
+
+    /**
+     * The time to live of the matching results.
+     */
+    private final Duration ttl;
+
+    /**
+     * Creates a rule for the results matching a custom condition.
+     *
+     * @param condition The condition a result has to match.
+     * @param ttl       The time to live of the matching results.
+     * @return The ExpiryRule.
+     */
+    public static ExpiryRule of(@NonNull Predicate<CompactAddressData> condition, @NonNull Duration ttl) {
+        return new ExpiryRule(condition, ttl);
+    }
+
+    /**
+     * Creates a rule for clean addresses: not a proxy and a risk score of at most the given value.
+     * Results without a risk score match as long as they are not a proxy.
+     *
+     * @param maxRisk The highest risk score a clean address may have.
+     * @param ttl     The time to live of the matching results.
+     * @return The ExpiryRule.
+     */
+    public static ExpiryRule clean(int maxRisk, @NonNull Duration ttl) {
+        return of(data -> data.getProxy() == ProxyStatus.NO && data.getRisk() <= maxRisk, ttl);
+    }
+
+    /**
+     * Creates a rule for addresses with a risk score of at least the given value.
+     *
+     * @param minRisk The lowest risk score of the matching results.
+     * @param ttl     The time to live of the matching results.
+     * @return The ExpiryRule.
+     */
+    public static ExpiryRule riskAtLeast(int minRisk, @NonNull Duration ttl) {
+        return of(data -> data.getRisk() >= minRisk, ttl);
+    }
+
+    /**
+     * Creates a rule for proxies that were last seen operating within the given window.
+     *
+     * @param window How recently the proxy must have been seen.
+     * @param ttl    The time to live of the matching results.
+     * @return The ExpiryRule.
+     */
+    public static ExpiryRule seenWithin(@NonNull Duration window, @NonNull Duration ttl) {
+        return of(data -> data.getProxy() == ProxyStatus.YES
+            && data.getLastSeenUnix() != CompactAddressData.UNSET
+            && System.currentTimeMillis() / 1000 - data.getLastSeenUnix() <= window.toSeconds(), ttl);
+    }
+
+    /**
+     * Creates a rule for all proxies.
+     *
+     * @param ttl The time to live of the matching results.
+     * @return The ExpiryRule.
+     */
+    public static ExpiryRule proxy(@NonNull Duration ttl) {
+        return of(data -> data.getProxy() == ProxyStatus.YES, ttl);
+    }
+}
@@ -0,0 +1,68 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import net.square.wrapper.compact.CompactAddressData;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The ExpirySettings class represents the table of rules deciding how long a result stays cached.
+ * The rules are checked in the order they were added; the first matching rule sets the time to live of a result.
+ * Results matching no rule, and all results if the table is empty, which is the default, stay cached for the
+ * cache duration.
+ */
+@Builder
+@Getter
+public class ExpirySettings {
+
+    /**
+     * The rules in the order they are checked.
+     */
+    @Singular
+    private List<ExpiryRule> rules;
+
+    /**
+     * Returns the time to live of a result.
+     *
+     * @param compactAddressData The compact form of the result.
+     * @param defaultTtl         The time to live of results matching no rule.
+     * @return The time to live of the first matching rule, or the default.
+     */
+    public Duration ttlFor(@NonNull CompactAddressData compactAddressData, @NonNull Duration defaultTtl) {
+        for (ExpiryRule rule : rules) {
+            if (rule.getCondition().test(compactAddressData)) {
+                return rule.getTtl();
+            }
+        }
+        return defaultTtl;
+    }
+
+    /**
+     * Returns the longest time to live of the table.
+     *
+     * @param defaultTtl The time to live of results matching no rule.
+     * @return The longest time to live of any rule or the default.
+     */
+    public Duration maxTtl(@NonNull Duration defaultTtl) {
+        Duration max = defaultTtl;
+        for (ExpiryRule rule : rules) {
+            if (rule.getTtl().compareTo(max) > 0) {
+                max = rule.getTtl();
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Checks if any rule is configured.
+     *
+     * @return true if the table holds rules, false otherwise.
+     */
+    public boolean isEnabled() {
+        return !rules.isEmpty();
+    }
+}
@@ -0,0 +1,48 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The HedgingSettings class represents the settings for hedging single address requests.
+ * <p>
+ * A hedged request is sent a second time if it has not been answered after the given percentile of the recent
+ * request latencies, by default the 95th; the first answer wins and the other one is discarded. This cuts the tail
+ * latency caused by slow connections for about 5% more requests. Hedging starts once enough latencies have been
+ * recorded and is disabled by default.
+ */
+@Builder
+@Getter
+public class HedgingSettings {
+
+    /**
+     * Whether single address requests are hedged.
+     */
+    private boolean enabled;
+
+    /**
+     * The percentile of the recent latencies after which the second request is sent, between 0 and 1.
+     */
+    @Builder.Default
+    private double percentile = 0.95;
+
+    /**
+     * The shortest delay before the second request is sent.
+     */
+    @Builder.Default
+    private Duration minDelay = Duration.ofMillis(10);
+
+    /**
+     * The number of latencies that must have been recorded before requests are hedged.
+     */
+    @Builder.Default
+    private int minSamples = 20;
+
+    /**
+     * The number of recent latencies the percentile is estimated from.
+     */
+    @Builder.Default
+    private int samples = 256;
+}
@@ -0,0 +1,36 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.util.Map;
+
+/**
+ * The KeyPoolSettings class represents the license keys of several plans that requests to proxycheck.io are
+ * spread across, so that lookups are not capped by the query limit of a single plan.
+ * <p>
+ * Each request is sent with a key picked at random, weighted by the queries the key has left on the current day.
+ * The queries answered for a key are counted from its responses. A key whose request was denied is set aside until
+ * its quota resets at the start of the next day (UTC). If the pool is empty, which is the default, all requests are
+ * sent with the single proxy key of the client.
+ */
+@Builder
+@Getter
+public class KeyPoolSettings {
+
+    /**
+     * The license keys of the pool, mapped to the number of queries their plan allows per day.
+     */
+    @Singular
+    private Map<String, Long> keys;
+
+    /**
+     * Checks if a pool of keys is configured.
+     *
+     * @return true if the pool holds keys, false otherwise.
+     */
+    public boolean isEnabled() {
+        return !keys.isEmpty();
+    }
+}
@@ -0,0 +1,55 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import net.square.metrics.MetricsListener;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The MetricsSettings class represents the settings for the metrics of a client: the hit and miss counts of its
+ * caches, histograms of the network, parse and end-to-end time of its requests, the number of requests in flight
+ * and waiting, and the number of failures per exception type.
+ * <p>
+ * A cache hit only costs the increment of a striped counter; everything else is measured on requests. The metrics
+ * are read with {@link net.square.ProxyAPI#getMetrics()}, handed to the listeners every report interval, and
+ * exposed as an MXBean if a JMX name is set. Metrics are disabled by default.
+ */
+@Builder
+@Getter
+public class MetricsSettings {
+
+    /**
+     * Whether metrics are recorded. Setting a listener or a JMX name enables them as well.
+     */
+    private boolean enabled;
+
+    /**
+     * The listeners that are handed the metrics every report interval.
+     */
+    @Singular
+    private List<MetricsListener> listeners;
+
+    /**
+     * How often the listeners are handed the metrics.
+     */
+    @Builder.Default
+    private Duration reportInterval = Duration.ofSeconds(10);
+
+    /**
+     * The object name the metrics are registered under in the platform MBean server, such as
+     * {@code net.square.proxy:type=ProxyAPI,name=main}, or null if they are not registered.
+     */
+    private String jmxName;
+
+    /**
+     * Checks if metrics are recorded.
+     *
+     * @return true if metrics are enabled, listeners are set or a JMX name is set, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled || !listeners.isEmpty() || jmxName != null;
+    }
+}
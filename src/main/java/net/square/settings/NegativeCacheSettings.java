@@ -0,0 +1,34 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The NegativeCacheSettings class represents the settings for remembering blocking responses of proxycheck.io.
+ * <p>
+ * A blocking response, such as the denial of a used up plan, applies to the license key rather than the address.
+ * For {@link #getBlockedTtl()} after one was received, no request is sent; lookups that are not answered from the
+ * cache are refused with the remembered response instead. The refusal is created once and carries no stack trace.
+ * With a time to live of zero, which is the default, every lookup sends its request.
+ */
+@Builder
+@Getter
+public class NegativeCacheSettings {
+
+    /**
+     * How long a blocking response is remembered.
+     */
+    @Builder.Default
+    private Duration blockedTtl = Duration.ZERO;
+
+    /**
+     * Checks if blocking responses are remembered.
+     *
+     * @return true if the time to live is positive, false otherwise.
+     */
+    public boolean isEnabled() {
+        return blockedTtl.compareTo(Duration.ZERO) > 0;
+    }
+}
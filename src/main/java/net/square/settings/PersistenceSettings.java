@@ -0,0 +1,38 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * The PersistenceSettings class represents the settings of the on-disk cache tier.
+ * Results stored in the file survive restarts and are served until they are older than the cache duration.
+ * At most {@link #getMaxEntries() maxEntries} addresses are kept; the oldest records give way to new ones.
+ * Without a file, which is the default, results are only cached in memory.
+ */
+@Builder
+@Getter
+public class PersistenceSettings {
+
+    /**
+     * The file holding the cached results, or null to disable the on-disk tier.
+     */
+    private Path file;
+
+    /**
+     * The maximum number of addresses kept in the file. Once it is exceeded, the addresses stored longest ago are
+     * dropped.
+     */
+    @Builder.Default
+    private int maxEntries = 100_000;
+
+    /**
+     * Checks if the on-disk cache tier is enabled.
+     *
+     * @return true if a file is configured, false otherwise.
+     */
+    public boolean isEnabled() {
+        return file != null;
+    }
+}
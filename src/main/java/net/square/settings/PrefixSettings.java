@@ -0,0 +1,96 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import net.square.wrapper.compact.AddressType;
+import net.square.wrapper.compact.CompactAddressData;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The PrefixSettings class represents the settings for sharing results between the addresses of a network prefix.
+ * <p>
+ * Hosting providers and VPN operators assign whole ranges to the same kind of machine, so once one address of such
+ * a range was fetched, the other addresses of its prefix are answered with the same data until the result expires,
+ * without another request. Results qualify by their type, or by their ASN or provider. Prefix sharing is disabled
+ * by default, as it trades the accuracy of single addresses for fewer requests.
+ */
+@Builder
+@Getter
+public class PrefixSettings {
+
+    /**
+     * Whether results are shared between the addresses of a prefix.
+     */
+    private boolean enabled;
+
+    /**
+     * The length of the shared IPv4 prefixes in bits, between 0 and 32.
+     */
+    @Builder.Default
+    private int ipv4PrefixLength = 24;
+
+    /**
+     * The length of the shared IPv6 prefixes in bits, between 0 and 128.
+     */
+    @Builder.Default
+    private int ipv6PrefixLength = 64;
+
+    /**
+     * The types of results that are shared with their prefix.
+     */
+    @Builder.Default
+    private Set<AddressType> types = EnumSet.of(AddressType.HOSTING, AddressType.VPN, AddressType.OPENVPN);
+
+    /**
+     * The IPv4 prefix lengths of single types, overriding {@link #getIpv4PrefixLength()}.
+     * Results of these types are shared even if their type is not listed in {@link #getTypes()}.
+     */
+    @Singular("ipv4TypePrefixLength")
+    private Map<AddressType, Integer> ipv4TypePrefixLengths;
+
+    /**
+     * The IPv6 prefix lengths of single types, overriding {@link #getIpv6PrefixLength()}.
+     * Results of these types are shared even if their type is not listed in {@link #getTypes()}.
+     */
+    @Singular("ipv6TypePrefixLength")
+    private Map<AddressType, Integer> ipv6TypePrefixLengths;
+
+    /**
+     * The ASNs, such as "AS16276", whose results are shared with their prefix regardless of their type.
+     */
+    @Singular
+    private Set<String> asns;
+
+    /**
+     * The providers whose results are shared with their prefix regardless of their type.
+     */
+    @Singular
+    private Set<String> providers;
+
+    /**
+     * Returns the length of the prefix a result is shared with.
+     *
+     * @param compactAddressData The compact form of the result.
+     * @param ipv4               Whether the address of the result is an IPv4 address.
+     * @return The length of the prefix in bits of the address family, or -1 if the result is not shared.
+     */
+    public int prefixLengthFor(@NonNull CompactAddressData compactAddressData, boolean ipv4) {
+        AddressType type = compactAddressData.getType();
+        Integer typeLength = (ipv4 ? ipv4TypePrefixLengths : ipv6TypePrefixLengths).get(type);
+        if (typeLength != null) {
+            return typeLength;
+        }
+
+        if (types.contains(type)
+            || asns.contains(compactAddressData.getAsn())
+            || providers.contains(compactAddressData.getProvider())) {
+            return ipv4 ? ipv4PrefixLength : ipv6PrefixLength;
+        }
+        return -1;
+    }
+}
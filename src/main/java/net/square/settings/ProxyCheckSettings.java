@@ -1,14 +1,21 @@
 package net.square.settings;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NonNull;
 
 /**
  * The ProxyCheckSettings class represents the settings for checking proxy information.
  * These settings include options for checking ASNs, nodes, time, ports, seen status, risk score, and time duration.
+ * <p>
+ * The settings also serve as the profile of a lookup, see {@link net.square.ProxyAPI#fetchAddressDataForIP(String,
+ * ProxyCheckSettings)}. Settings differing only in the response format are equal, as their responses hold the same
+ * data.
  */
 @Builder
 @Getter
+@EqualsAndHashCode
 public class ProxyCheckSettings {
 
     private boolean asn  = true;     // true, false
@@ -16,9 +23,51 @@ public class ProxyCheckSettings {
     private boolean time = true;    // true, false
     private boolean port = true;    // true, false
     private boolean seen = true;    // true, false
+    @EqualsAndHashCode.Exclude
     private boolean shrt = false;   // true, false
 
     private int vpn  = 3;            // 0, 1, 2, 3
     private int risk = 2;           // 0, 1, 2
     private int days = 3;           // 1, 2, 3, 4, 5, 6, 7
+
+    /**
+     * Creates the settings that request the smallest response, for high-volume lookups that only need the proxy
+     * status: the short format, without the ASN, node, query time, port and last seen fields, with the VPN type
+     * but without the risk score.
+     *
+     * @return The minimal ProxyCheckSettings.
+     */
+    public static ProxyCheckSettings minimal() {
+        return ProxyCheckSettings.builder()
+            .asn(false)
+            .node(false)
+            .time(false)
+            .port(false)
+            .seen(false)
+            .shrt(true)
+            .vpn(1)
+            .risk(0)
+            .days(7)
+            .build();
+    }
+
+    /**
+     * Checks if a response requested with these settings holds all the data of a response requested with the
+     * given settings, so that it can answer a lookup with them. Every field requested by the given settings must be
+     * requested by these, and both must agree on the settings changing the proxy status itself: the number of days
+     * and whether VPNs count as proxies (the odd VPN levels).
+     *
+     * @param profile The settings of the lookup.
+     * @return true if a response to these settings answers the lookup as well.
+     */
+    public boolean covers(@NonNull ProxyCheckSettings profile) {
+        return days == profile.days
+            && (vpn & 1) == (profile.vpn & 1) && vpn >= profile.vpn
+            && risk >= profile.risk
+            && (asn || !profile.asn)
+            && (node || !profile.node)
+            && (time || !profile.time)
+            && (port || !profile.port)
+            && (seen || !profile.seen);
+    }
 }
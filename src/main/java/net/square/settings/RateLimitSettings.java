@@ -0,0 +1,71 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+import net.square.limit.RejectionPolicy;
+
+import java.time.Duration;
+
+/**
+ * The RateLimitSettings class represents the settings for pacing the requests sent to proxycheck.io according to
+ * the limits of the plan.
+ * <p>
+ * Requests are paced by a token bucket refilled at {@link #getRequestsPerSecond()}, and the queries of a day, one per
+ * address, are counted against {@link #getQueriesPerDay()}; the day starts at midnight UTC. Requests that cannot be
+ * sent right away wait in a bounded queue per priority, interactive requests ahead of background ones. Background
+ * requests may only use a share of the daily quota, so that a spike of background work leaves queries for the users.
+ * Without limits, which is the default, requests are sent right away.
+ */
+@Builder
+@Getter
+public class RateLimitSettings {
+
+    /**
+     * The number of requests sent per second on average, or 0 for no limit.
+     */
+    private double requestsPerSecond;
+
+    /**
+     * The number of requests that may be sent at once after a quiet period, or 0 for the requests per second
+     * rounded up.
+     */
+    private int burst;
+
+    /**
+     * The number of queries allowed per day, or 0 for no limit.
+     */
+    private long queriesPerDay;
+
+    /**
+     * The share of the daily quota background requests may use, between 0 and 1.
+     */
+    @Builder.Default
+    private double backgroundQuotaShare = 0.8;
+
+    /**
+     * The number of requests that may wait per priority.
+     */
+    @Builder.Default
+    private int maxQueued = 256;
+
+    /**
+     * How long a request may wait for its turn before it fails.
+     */
+    @Builder.Default
+    private Duration maxWait = Duration.ofSeconds(5);
+
+    /**
+     * Decides which request fails when the waiting queue of a priority is full.
+     */
+    @Builder.Default
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.REJECT_NEW;
+
+    /**
+     * Checks if requests are limited.
+     *
+     * @return true if a rate or a daily quota is configured, false otherwise.
+     */
+    public boolean isEnabled() {
+        return requestsPerSecond > 0 || queriesPerDay > 0;
+    }
+}
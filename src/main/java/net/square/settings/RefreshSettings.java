@@ -0,0 +1,56 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The RefreshSettings class represents the settings for refreshing cached results in the background.
+ * <p>
+ * With refresh-ahead, a result that has passed the configured fraction of its lifetime is still served, while a
+ * fresh one is fetched asynchronously. With a grace window, an expired result keeps being served for that long while
+ * it is revalidated, also if the revalidation fails. Both are disabled by default, so that callers wait for a fresh
+ * result once the cached one has expired.
+ */
+@Builder
+@Getter
+public class RefreshSettings {
+
+    /**
+     * The fraction of the lifetime of a result after which it is refreshed in the background, between 0 and 1.
+     * A value of 0 disables refresh-ahead.
+     */
+    @Builder.Default
+    private double refreshAhead = 0;
+
+    /**
+     * How long an expired result is still served while it is revalidated. {@link Duration#ZERO} disables
+     * serving expired results.
+     */
+    @Builder.Default
+    private Duration staleGrace = Duration.ZERO;
+
+    /**
+     * Checks if a result should be refreshed in the background.
+     *
+     * @param fetchedAt The time the result was fetched, in milliseconds since the epoch.
+     * @param expiresAt The time the result expires, in milliseconds since the epoch.
+     * @param now       The current time in milliseconds since the epoch.
+     * @return true if refresh-ahead is enabled and the result has passed the configured fraction of its lifetime.
+     */
+    public boolean isRefreshDue(long fetchedAt, long expiresAt, long now) {
+        return refreshAhead > 0 && now - fetchedAt >= (long) ((expiresAt - fetchedAt) * refreshAhead);
+    }
+
+    /**
+     * Checks if an expired result may still be served while it is revalidated.
+     *
+     * @param expiresAt The time the result expired, in milliseconds since the epoch.
+     * @param now       The current time in milliseconds since the epoch.
+     * @return true if the result is within the grace window.
+     */
+    public boolean isWithinGrace(long expiresAt, long now) {
+        return now - expiresAt < staleGrace.toMillis();
+    }
+}
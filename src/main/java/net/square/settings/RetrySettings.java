@@ -0,0 +1,65 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The RetrySettings class represents the settings for retrying requests that failed with a transient I/O error,
+ * such as a timeout or a reset connection. Blocking responses and rate limits are never retried.
+ * <p>
+ * The n-th retry waits a random time between zero and {@link #getInitialBackoff()} multiplied by
+ * {@link #getMultiplier()} n - 1 times, capped at {@link #getMaxBackoff()}. The randomness spreads the retries of
+ * many clients that failed at the same moment. With one attempt, which is the default, requests are not retried.
+ */
+@Builder
+@Getter
+public class RetrySettings {
+
+    /**
+     * The number of attempts of a request, including the first one.
+     */
+    @Builder.Default
+    private int maxAttempts = 1;
+
+    /**
+     * The upper bound of the backoff before the first retry.
+     */
+    @Builder.Default
+    private Duration initialBackoff = Duration.ofMillis(100);
+
+    /**
+     * The upper bound of the backoff of any retry.
+     */
+    @Builder.Default
+    private Duration maxBackoff = Duration.ofSeconds(2);
+
+    /**
+     * The factor by which the upper bound of the backoff grows per retry.
+     */
+    @Builder.Default
+    private double multiplier = 2;
+
+    /**
+     * Returns the randomized backoff before a retry.
+     *
+     * @param retry The number of the retry, starting at 1.
+     * @return The backoff in nanoseconds.
+     */
+    public long backoffNanos(int retry) {
+        double bound = initialBackoff.toNanos() * Math.pow(multiplier, retry - 1);
+        long cap = (long) Math.min(bound, maxBackoff.toNanos());
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    /**
+     * Checks if failed requests are retried.
+     *
+     * @return true if more than one attempt is allowed, false otherwise.
+     */
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+}
@@ -0,0 +1,40 @@
+package net.square.settings;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * The TransportSettings class represents the settings of the HTTP client used to reach proxycheck.io.
+ * The client is shared by all requests of a ProxyAPI instance, so connections and TLS sessions are reused.
+ */
+@Builder
+@Getter
+public class TransportSettings {
+
+    /**
+     * The maximum time to wait for a connection to be established.
+     */
+    @Builder.Default
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * The maximum time to wait for a response, measured from sending the request.
+     */
+    @Builder.Default
+    private Duration requestTimeout = Duration.ofSeconds(10);
+
+    /**
+     * The preferred HTTP version. The client falls back to HTTP/1.1 if the server does not support HTTP/2.
+     */
+    @Builder.Default
+    private HttpClient.Version version = HttpClient.Version.HTTP_2;
+
+    /**
+     * Whether gzip compressed responses should be requested.
+     */
+    @Builder.Default
+    private boolean compression = true;
+}
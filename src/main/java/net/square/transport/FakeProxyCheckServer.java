@@ -0,0 +1,493 @@
+package net.square.transport;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import net.square.settings.TransportSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The FakeProxyCheckServer class is a local stand-in for the v2 API of proxycheck.io, to measure the throughput and
+ * tail latency of a {@link net.square.ProxyAPI} offline, without spending the quota of a plan.
+ * <p>
+ * It answers single address requests ({@code GET /v2/<address>}) and multi-address requests ({@code POST /v2/} with
+ * the addresses in the {@code ips} form field) in the response format of the API. The fields of an answer follow
+ * the query flags of the request ({@code asn}, {@code node}, {@code time}, {@code port}, {@code seen}, {@code risk}
+ * and {@code short}). Whether an address is a proxy is derived from its hash, so repeated lookups agree.
+ * <p>
+ * Every request is answered after a delay drawn from the {@link LatencyDistribution}, without holding a thread while
+ * it waits. Failures are injected at configurable rates: HTTP errors, {@code denied} responses, and denials of
+ * chosen license keys.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * FakeProxyCheckServer.enableNoDelay();
+ * try (FakeProxyCheckServer server = FakeProxyCheckServer.builder()
+ *         .latency(LatencyDistribution.logNormal(Duration.ofMillis(30), Duration.ofMillis(250)))
+ *         .errorRate(0.01)
+ *         .build()) {
+ *     ProxyAPI proxyAPI = ProxyAPI.builder().transport(server.transport()).build();
+ *     ...
+ * }
+ * }</pre>
+ */
+public class FakeProxyCheckServer implements AutoCloseable {
+
+    /**
+     * The types of the addresses answered as proxies.
+     */
+    private static final String[] PROXY_TYPES = {"VPN", "SOCKS5", "HTTP", "Compromised Server"};
+
+    /**
+     * The HTTP server answering the requests.
+     */
+    private final HttpServer server;
+
+    /**
+     * The timer answering the requests once their delay has passed.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The pool running the internal tasks of the HTTP clients of the transports created by {@link #transport()}.
+     */
+    private final ExecutorService clientExecutor;
+
+    /**
+     * The distribution of the delays of the answers.
+     */
+    private final LatencyDistribution latency;
+
+    /**
+     * The share of requests answered with HTTP status 503.
+     */
+    private final double errorRate;
+
+    /**
+     * The share of requests answered with a {@code denied} response.
+     */
+    private final double deniedRate;
+
+    /**
+     * The share of addresses answered as proxies.
+     */
+    private final double proxyRate;
+
+    /**
+     * The license keys whose requests are always denied.
+     */
+    private final Set<String> deniedKeys;
+
+    /**
+     * The number of requests received.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * The number of addresses answered in successful responses.
+     */
+    private final AtomicLong queries = new AtomicLong();
+
+    /**
+     * The number of requests answered with an injected failure.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * The port the server listens on.
+     */
+    @Getter
+    private final int port;
+
+    /**
+     * Constructs and starts a FakeProxyCheckServer on the loopback address.
+     * Use {@link #builder()} to create instances; every omitted value falls back to its default.
+     *
+     * @param port       The port to listen on, 0 for a free one.
+     * @param latency    The distribution of the delays of the answers. Defaults to answering right away.
+     * @param errorRate  The share of requests answered with HTTP status 503.
+     * @param deniedRate The share of requests answered with a {@code denied} response.
+     * @param proxyRate  The share of addresses answered as proxies.
+     * @param deniedKeys The license keys whose requests are always denied.
+     * @param threads    The number of threads answering the requests. Defaults to the number of processors.
+     * @throws IOException If the server cannot listen on the port.
+     */
+    @Builder
+    private FakeProxyCheckServer(int port, LatencyDistribution latency, double errorRate, double deniedRate,
+                                 double proxyRate, @Singular Set<String> deniedKeys, int threads)
+        throws IOException {
+        this.latency = latency != null ? latency : LatencyDistribution.fixed(Duration.ZERO);
+        this.errorRate = errorRate;
+        this.deniedRate = deniedRate;
+        this.proxyRate = proxyRate;
+        this.deniedKeys = deniedKeys;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.scheduler = Executors.newScheduledThreadPool(
+            poolSize, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fake-proxycheck-%d").build());
+
+        this.clientExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fake-proxycheck-client-%d").build());
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.server.setExecutor(this.scheduler);
+        this.server.createContext("/v2/", this::handle);
+        this.server.start();
+        this.port = this.server.getAddress().getPort();
+    }
+
+    /**
+     * Disables Nagle's algorithm on the connections of the HTTP servers of the JVM. The server writes the headers and
+     * the body of a response separately; with Nagle's algorithm the body waits for the delayed acknowledgement of the
+     * headers, adding about 40 ms to every request. Load tests measuring latency should opt in before creating their
+     * first server.
+     * <p>
+     * This sets the system property {@code sun.net.httpserver.nodelay}, which is read once, when the first HTTP server
+     * of the JVM is created, and applies to all HTTP servers of the JVM, not only to this one. A value set already is
+     * kept.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Returns the endpoint of the server.
+     *
+     * @return The URI of the scheme, host and port of the server.
+     */
+    public URI getEndpoint() {
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+    }
+
+    /**
+     * Creates a transport sending the requests of a client to this server, with default transport settings over
+     * HTTP/1.1, the only version the server speaks. The transports share one pool for the internal tasks of their
+     * HTTP clients, which is shut down when the server is closed.
+     *
+     * @return The transport.
+     */
+    public ProxyCheckTransport transport() {
+        TransportSettings settings = TransportSettings.builder().version(HttpClient.Version.HTTP_1_1).build();
+        return transport(settings, clientExecutor);
+    }
+
+    /**
+     * Creates a transport sending the requests of a client to this server.
+     *
+     * @param settings The settings of the HTTP client.
+     * @param executor The executor running the internal tasks of the HTTP client.
+     * @return The transport.
+     */
+    public ProxyCheckTransport transport(@NonNull TransportSettings settings, @NonNull Executor executor) {
+        return HttpClientTransport.of(settings, executor, getEndpoint());
+    }
+
+    /**
+     * Returns the number of requests received.
+     *
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of addresses answered in successful responses.
+     *
+     * @return The number of queries.
+     */
+    public long getQueries() {
+        return queries.get();
+    }
+
+    /**
+     * Returns the number of requests answered with an injected failure.
+     *
+     * @return The number of failures.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Stops the server and the pool of the transports created by {@link #transport()}. Requests waiting for their
+     * answer are dropped.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    /**
+     * Handles a request: the answer is prepared right away and sent once its delay has passed.
+     *
+     * @param exchange The exchange of the request.
+     */
+    private void handle(HttpExchange exchange) {
+        requests.incrementAndGet();
+        int status;
+        String body;
+        try {
+            Map<String, String> params = parseForm(exchange.getRequestURI().getRawQuery());
+            List<String> addresses = addresses(exchange);
+
+            double draw = ThreadLocalRandom.current().nextDouble();
+            if (draw < errorRate) {
+                failures.incrementAndGet();
+                status = 503;
+                body = "Service Unavailable";
+            } else if (draw < errorRate + deniedRate || deniedKeys.contains(params.get("key"))) {
+                failures.incrementAndGet();
+                status = 200;
+                body = message("denied", "1000 free queries exhausted. Please try the API again tomorrow or "
+                    + "purchase a higher paid plan.");
+            } else if (addresses.isEmpty()) {
+                status = 200;
+                body = message("error", "No valid IP Addresses supplied.");
+            } else {
+                queries.addAndGet(addresses.size());
+                status = 200;
+                body = answer(addresses, params).toString();
+            }
+        } catch (IOException | RuntimeException e) {
+            status = 400;
+            body = message("error", String.valueOf(e.getMessage()));
+        }
+
+        int answerStatus = status;
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        scheduler.schedule(() -> respond(exchange, answerStatus, bytes), latency.nextNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends the answer of a request.
+     *
+     * @param exchange The exchange of the request.
+     * @param status   The HTTP status.
+     * @param bytes    The body.
+     */
+    private void respond(HttpExchange exchange, int status, byte[] bytes) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(bytes);
+            }
+        } catch (IOException ignored) {
+            // The client gave up waiting
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the requested addresses: from the path of a single address request or the form body of a
+     * multi-address request.
+     *
+     * @param exchange The exchange of the request.
+     * @return The requested addresses.
+     * @throws IOException If the body cannot be read.
+     */
+    private static List<String> addresses(HttpExchange exchange) throws IOException {
+        List<String> addresses = new ArrayList<>();
+        if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+            String form;
+            try (InputStream body = exchange.getRequestBody()) {
+                form = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String ips = parseForm(form).get("ips");
+            if (ips != null) {
+                for (String address : ips.split(",")) {
+                    if (!address.isBlank()) {
+                        addresses.add(address.strip());
+                    }
+                }
+            }
+            return addresses;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String address = path.substring(path.indexOf("/v2/") + 4);
+        if (!address.isEmpty()) {
+            addresses.add(address);
+        }
+        return addresses;
+    }
+
+    /**
+     * Creates the successful answer of a request in the response format of the API.
+     *
+     * @param addresses The requested addresses.
+     * @param params    The query flags of the request.
+     * @return The answer.
+     */
+    private JsonObject answer(List<String> addresses, Map<String, String> params) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "ok");
+        if (isSet(params, "node")) {
+            response.addProperty("node", "fake");
+        }
+
+        boolean shortFormat = isSet(params, "short") && addresses.size() == 1;
+        for (String address : addresses) {
+            JsonObject fields = addressFields(address, params);
+            if (shortFormat) {
+                fields.entrySet().forEach(entry -> response.add(entry.getKey(), entry.getValue()));
+            } else {
+                response.add(address, fields);
+            }
+        }
+
+        if (isSet(params, "time")) {
+            response.addProperty("query time", "0.001s");
+        }
+        return response;
+    }
+
+    /**
+     * Creates the fields of an address. They are derived from the hash of the address, so repeated lookups agree.
+     *
+     * @param address The address.
+     * @param params  The query flags of the request.
+     * @return The fields of the address.
+     */
+    private JsonObject addressFields(String address, Map<String, String> params) {
+        int hash = address.hashCode() * 0x9E3779B9;
+        boolean proxy = (hash >>> 8) / (double) (1 << 24) < proxyRate;
+        int risk = proxy ? 66 + Math.floorMod(hash, 34) : Math.floorMod(hash, 33);
+
+        JsonObject fields = new JsonObject();
+        if (isSet(params, "asn")) {
+            fields.addProperty("asn", "AS" + (1000 + Math.floorMod(hash, 60000)));
+            fields.addProperty("provider", "Fake Hosting " + Math.floorMod(hash, 100));
+            fields.addProperty("continent", "Europe");
+            fields.addProperty("continentcode", "EU");
+            fields.addProperty("country", "Germany");
+            fields.addProperty("isocode", "DE");
+            fields.addProperty("timezone", "Europe/Berlin");
+            fields.addProperty("latitude", "51.2993");
+            fields.addProperty("longitude", "9.491");
+
+            JsonObject currency = new JsonObject();
+            currency.addProperty("code", "EUR");
+            currency.addProperty("name", "Euro");
+            currency.addProperty("symbol", "€");
+            fields.add("currency", currency);
+        }
+
+        fields.addProperty("proxy", proxy ? "yes" : "no");
+        fields.addProperty("type", proxy ? PROXY_TYPES[Math.floorMod(hash >> 4, PROXY_TYPES.length)] : "Business");
+
+        int riskLevel = parseInt(params.get("risk"));
+        if (riskLevel >= 1) {
+            fields.addProperty("risk", risk);
+        }
+        if (riskLevel >= 2 && proxy) {
+            JsonObject attackHistory = new JsonObject();
+            attackHistory.addProperty("total", Math.floorMod(hash, 50));
+            attackHistory.addProperty("Login Attempt", Math.floorMod(hash, 30));
+            fields.add("attack history", attackHistory);
+        }
+        if (proxy && isSet(params, "port")) {
+            fields.addProperty("port", 1080 + Math.floorMod(hash, 8000));
+        }
+        if (proxy && isSet(params, "seen")) {
+            long lastSeen = System.currentTimeMillis() / 1000 - Math.floorMod(hash, 86_400);
+            fields.addProperty("last seen human", "%d hours ago".formatted(Math.floorMod(hash, 24)));
+            fields.addProperty("last seen unix", String.valueOf(lastSeen));
+        }
+        return fields;
+    }
+
+    /**
+     * Creates a response carrying only a status and a message, such as a denial.
+     *
+     * @param status  The status.
+     * @param message The message.
+     * @return The response text.
+     */
+    private static String message(String status, String message) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", status);
+        response.addProperty("message", message);
+        return response.toString();
+    }
+
+    /**
+     * Parses form encoded parameters, such as a query string.
+     *
+     * @param form The encoded parameters, may be null.
+     * @return The decoded parameters by name.
+     */
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> params = new HashMap<>();
+        if (form == null || form.isEmpty()) {
+            return params;
+        }
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator >= 0 ? pair.substring(0, separator) : pair;
+            String value = separator >= 0 ? pair.substring(separator + 1) : "";
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT),
+                       URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Checks if a query flag is set.
+     *
+     * @param params The query flags.
+     * @param name   The name of the flag.
+     * @return true if the flag is set to a positive number.
+     */
+    private static boolean isSet(Map<String, String> params, String name) {
+        return parseInt(params.get(name)) > 0;
+    }
+
+    /**
+     * Parses a number of a query flag.
+     *
+     * @param value The value of the flag, may be null.
+     * @return The number, 0 if the value is missing or not a number.
+     */
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value.strip()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.square.transport;
+
+import lombok.NonNull;
+import net.square.settings.TransportSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The HttpClientTransport class sends requests with a shared {@link HttpClient}, which keeps connections alive
+ * between requests. It is the transport of a {@link net.square.ProxyAPI} unless another one is configured.
+ * <p>
+ * If an endpoint is given, requests are sent to its scheme, host and port instead of proxycheck.io, keeping their
+ * path, query and body.
+ */
+public class HttpClientTransport implements ProxyCheckTransport {
+
+    /**
+     * The HTTP client sending the requests.
+     */
+    private final HttpClient httpClient;
+
+    /**
+     * The endpoint the requests are sent to instead of their own host, or null to send them as addressed.
+     */
+    private final URI endpoint;
+
+    /**
+     * Constructs an HttpClientTransport sending the requests as addressed.
+     *
+     * @param httpClient The HTTP client sending the requests.
+     */
+    public HttpClientTransport(@NonNull HttpClient httpClient) {
+        this(httpClient, null);
+    }
+
+    /**
+     * Constructs an HttpClientTransport sending the requests to another endpoint.
+     *
+     * @param httpClient The HTTP client sending the requests.
+     * @param endpoint   The scheme, host and port to send the requests to, or null to send them as addressed.
+     */
+    public HttpClientTransport(@NonNull HttpClient httpClient, URI endpoint) {
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Creates an HttpClientTransport with a new HTTP client configured by the transport settings.
+     *
+     * @param settings The settings of the HTTP client.
+     * @param executor The executor running the internal tasks of the HTTP client.
+     * @param endpoint The scheme, host and port to send the requests to, or null to send them as addressed.
+     * @return The HttpClientTransport.
+     */
+    public static HttpClientTransport of(@NonNull TransportSettings settings, @NonNull Executor executor,
+                                         URI endpoint) {
+        HttpClient httpClient = HttpClient.newBuilder()
+            .executor(executor)
+            .version(settings.getVersion())
+            .connectTimeout(settings.getConnectTimeout())
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        return new HttpClientTransport(httpClient, endpoint);
+    }
+
+    @Override
+    public HttpResponse<InputStream> send(@NonNull HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(redirect(request), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse<InputStream>> sendAsync(@NonNull HttpRequest request) {
+        return httpClient.sendAsync(redirect(request), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Moves a request to the endpoint, if one is configured.
+     *
+     * @param request The request as addressed.
+     * @return The request to send.
+     */
+    private HttpRequest redirect(HttpRequest request) {
+        if (endpoint == null) {
+            return request;
+        }
+        URI uri = request.uri();
+        String query = uri.getRawQuery();
+        URI target = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + uri.getRawPath()
+                                    + (query != null ? "?" + query : ""));
+        return HttpRequest.newBuilder(request, (name, value) -> true).uri(target).build();
+    }
+}
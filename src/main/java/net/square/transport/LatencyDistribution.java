@@ -0,0 +1,77 @@
+package net.square.transport;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The LatencyDistribution interface draws the time a {@link FakeProxyCheckServer} waits before it answers a request,
+ * so that the throughput and tail latency of the client can be measured against a realistic upstream.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * The z-score of the 99th percentile of the standard normal distribution.
+     */
+    double Z_99 = 2.326;
+
+    /**
+     * Draws a latency.
+     *
+     * @return The latency in nanoseconds, at least 0.
+     */
+    long nextNanos();
+
+    /**
+     * Creates a distribution that always answers after the same time.
+     *
+     * @param latency The latency.
+     * @return The distribution.
+     */
+    static LatencyDistribution fixed(@NonNull Duration latency) {
+        long nanos = latency.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * Creates a distribution of latencies spread evenly between two bounds.
+     *
+     * @param min The lowest latency.
+     * @param max The highest latency.
+     * @return The distribution.
+     */
+    static LatencyDistribution uniform(@NonNull Duration min, @NonNull Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = Math.max(minNanos + 1, max.toNanos());
+        return () -> ThreadLocalRandom.current().nextLong(minNanos, maxNanos);
+    }
+
+    /**
+     * Creates a log-normal distribution of latencies, the usual shape of network round trips: most requests take
+     * about the median, a few take far longer.
+     *
+     * @param median The median latency.
+     * @param p99    The 99th percentile of the latencies, at least the median.
+     * @return The distribution.
+     */
+    static LatencyDistribution logNormal(@NonNull Duration median, @NonNull Duration p99) {
+        long medianNanos = Math.max(1, median.toNanos());
+        double mu = Math.log(medianNanos);
+        double sigma = Math.max(0, Math.log((double) Math.max(1, p99.toNanos()) / medianNanos)) / Z_99;
+        return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+    }
+
+    /**
+     * Creates a distribution that draws from another distribution for a share of the requests, such as rare
+     * stalls of several seconds.
+     *
+     * @param probability The share of requests drawn from the tail, between 0 and 1.
+     * @param tail        The distribution of these requests.
+     * @return The distribution.
+     */
+    default LatencyDistribution withTail(double probability, @NonNull LatencyDistribution tail) {
+        return () -> ThreadLocalRandom.current().nextDouble() < probability ? tail.nextNanos() : nextNanos();
+    }
+}
@@ -0,0 +1,36 @@
+package net.square.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The ProxyCheckTransport interface sends the HTTP requests of a {@link net.square.ProxyAPI} and returns their
+ * responses. The requests are addressed to the v2 API of proxycheck.io; a transport may deliver them elsewhere,
+ * such as to a {@link FakeProxyCheckServer} for load tests that should not spend the quota of a plan.
+ * <p>
+ * The client reads the status code, the {@code Content-Encoding} header and the body of a response. Timeouts are
+ * set on the requests themselves. Implementations must be thread safe.
+ */
+public interface ProxyCheckTransport {
+
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param request The request to send.
+     * @return The response, whose body is read by the caller.
+     * @throws IOException If the request fails or times out.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException;
+
+    /**
+     * Sends a request without blocking the calling thread.
+     *
+     * @param request The request to send.
+     * @return A CompletableFuture that resolves to the response, or completes exceptionally if the request fails.
+     */
+    CompletableFuture<HttpResponse<InputStream>> sendAsync(HttpRequest request);
+}
@@ -13,8 +13,9 @@ public class DefaultWrapper {
      * The Gson object used for JSON serialization and deserialization.
      * It is used in the class DefaultWrapper to convert JSON data to Java objects and vice versa.
      * Gson provides efficient, flexible, and easy-to-use methods for handling JSON data.
+     * Gson is thread-safe, so a single instance is shared by all wrappers instead of one per wrapper.
      */
-    private final       Gson   gson  = new Gson();
+    private static final Gson   GSON  = new Gson();
 
     /**
      * The error message indicating that the field is not set.
@@ -36,6 +37,6 @@ public class DefaultWrapper {
      * @return the value associated with the key, or the defaultValue if the key is not found or the JsonObject is null
      */
     public <T> T getJsonValue(JsonObject jsonObject, String key, Class<T> valueType, T defaultValue) {
-        return jsonObject != null && jsonObject.has(key) ? gson.fromJson(jsonObject.get(key), valueType) : defaultValue;
+        return jsonObject != null && jsonObject.has(key) ? GSON.fromJson(jsonObject.get(key), valueType) : defaultValue;
     }
 }
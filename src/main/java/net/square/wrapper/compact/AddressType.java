@@ -0,0 +1,74 @@
+package net.square.wrapper.compact;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The AddressType enum represents the type of an address as reported in the "type" field.
+ * Values proxycheck.io adds in the future resolve to OTHER.
+ */
+public enum AddressType {
+
+    RESIDENTIAL("Residential"),
+    WIRELESS("Wireless"),
+    BUSINESS("Business"),
+    HOSTING("Hosting"),
+    VPN("VPN"),
+    OPENVPN("OpenVPN"),
+    TOR("TOR"),
+    HTTP("HTTP"),
+    HTTPS("HTTPS"),
+    SOCKS("SOCKS"),
+    SOCKS4("SOCKS4"),
+    SOCKS4A("SOCKS4A"),
+    SOCKS5("SOCKS5"),
+    SOCKS5H("SOCKS5H"),
+    SHADOWSOCKS("Shadowsocks"),
+    COMPROMISED_SERVER("Compromised Server"),
+    INFERENCE_ENGINE("Inference Engine"),
+    OTHER("Other"),
+    UNKNOWN("Unknown");
+
+    /**
+     * The types indexed by their lower case name in the response.
+     */
+    private static final Map<String, AddressType> BY_NAME = new HashMap<>();
+
+    static {
+        for (AddressType type : values()) {
+            BY_NAME.put(type.name.toLowerCase(Locale.ROOT), type);
+        }
+    }
+
+    /**
+     * The name of the type as used in the response.
+     */
+    private final String name;
+
+    AddressType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the type as used in the response.
+     *
+     * @return The name of the type.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Resolves the AddressType of a value of the "type" field.
+     *
+     * @param value The value of the field, may be null.
+     * @return The matching AddressType, OTHER for unrecognized values, or UNKNOWN if the value is null.
+     */
+    public static AddressType of(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        return BY_NAME.getOrDefault(value.toLowerCase(Locale.ROOT), OTHER);
+    }
+}
@@ -0,0 +1,38 @@
+package net.square.wrapper.compact;
+
+/**
+ * The ProxyStatus enum represents the proxy verdict of an address as reported in the "proxy" field.
+ */
+public enum ProxyStatus {
+
+    /**
+     * The address is a proxy or VPN.
+     */
+    YES,
+
+    /**
+     * The address is neither a proxy nor a VPN.
+     */
+    NO,
+
+    /**
+     * The field is not set, for example because the lookup failed.
+     */
+    UNKNOWN;
+
+    /**
+     * Resolves the ProxyStatus of a value of the "proxy" field.
+     *
+     * @param value The value of the field, may be null.
+     * @return The matching ProxyStatus, or UNKNOWN if the value is not recognized.
+     */
+    public static ProxyStatus of(String value) {
+        if ("yes".equalsIgnoreCase(value)) {
+            return YES;
+        }
+        if ("no".equalsIgnoreCase(value)) {
+            return NO;
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,107 @@
+package net.square.wrapper.impl;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.square.wrapper.DefaultWrapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * The AddressJsonEncoder turns an {@link AddressWrapper} back into the JSON object of its address, in the format
+ * of the proxy check API. Fields that are not set are left out, all values are written as strings.
+ * The text can be decoded again with {@link SuccessWrapper#lazy}, which results in equal getters.
+ */
+@UtilityClass
+public class AddressJsonEncoder {
+
+    /**
+     * Encodes an AddressWrapper into compact JSON text.
+     *
+     * @param addressWrapper The AddressWrapper to encode.
+     * @return The JSON text of the address object.
+     */
+    public String encode(@NonNull AddressWrapper addressWrapper) {
+        StringWriter text = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(text)) {
+            writer.beginObject();
+            write(writer, "asn", addressWrapper.getAsn());
+            write(writer, "provider", addressWrapper.getProvider());
+            write(writer, "continent", addressWrapper.getContinent());
+            write(writer, "continentcode", addressWrapper.getContinentCode());
+            write(writer, "country", addressWrapper.getCountry());
+            write(writer, "isocode", addressWrapper.getIsoCode());
+            write(writer, "timezone", addressWrapper.getTimezone());
+            write(writer, "latitude", addressWrapper.getLatitude());
+            write(writer, "longitude", addressWrapper.getLongitude());
+            write(writer, "proxy", addressWrapper.getProxy());
+            write(writer, "type", addressWrapper.getType());
+            write(writer, "risk", addressWrapper.getRisk());
+            write(writer, "last seen human", addressWrapper.getLastSeenHuman());
+            write(writer, "last seen unix", addressWrapper.getLastSeenUnix());
+
+            CurrencyWrapper currency = addressWrapper.getCurrencyWrapper();
+            writer.name("currency").beginObject();
+            write(writer, "code", currency.getCode());
+            write(writer, "name", currency.getName());
+            write(writer, "symbol", currency.getSymbol());
+            writer.endObject();
+
+            OperatorWrapper operator = addressWrapper.getOperatorWrapper();
+            writer.name("operator").beginObject();
+            write(writer, "name", operator.getName());
+            write(writer, "url", operator.getUrl());
+            write(writer, "anonymity", operator.getAnonymity());
+            write(writer, "popularity", operator.getPopularity());
+            writer.name("protocols").beginArray();
+            for (String protocol : operator.getProtocols()) {
+                writer.value(protocol);
+            }
+            writer.endArray();
+
+            OperatorPoliciesWrapper policies = operator.getOperatorPoliciesWrapper();
+            writer.name("policies").beginObject();
+            write(writer, "ad_filtering", policies.getAdFiltering());
+            write(writer, "free_access", policies.getFreeAccess());
+            write(writer, "paid_access", policies.getPaidAccess());
+            write(writer, "port_forwarding", policies.getPortForwarding());
+            write(writer, "logging", policies.getLogging());
+            write(writer, "anonymous_payments", policies.getAnonymousPayments());
+            write(writer, "crypto_payments", policies.getCryptoPayments());
+            write(writer, "traceable_ownership", policies.getTraceableOwnership());
+            writer.endObject();
+            writer.endObject();
+
+            AttackHistoryWrapper attackHistory = addressWrapper.getAttackHistory();
+            writer.name("attack history").beginObject();
+            write(writer, "total", attackHistory.getTotal());
+            write(writer, "Vulnerability Probing", attackHistory.getVulnerabilityProbing());
+            write(writer, "Forum Spam", attackHistory.getForumSpam());
+            write(writer, "Login Attempt", attackHistory.getLoginAttempt());
+            write(writer, "Registration Attempt", attackHistory.getRegistrationAttempt());
+            writer.endObject();
+
+            writer.endObject();
+        } catch (IOException e) {
+            // A StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a field unless it is not set.
+     *
+     * @param writer The writer to write to.
+     * @param name   The name of the field.
+     * @param value  The value of the field.
+     * @throws IOException If the field cannot be written.
+     */
+    private void write(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null && !DefaultWrapper.ERROR.equals(value)) {
+            writer.name(name).value(value);
+        }
+    }
+}
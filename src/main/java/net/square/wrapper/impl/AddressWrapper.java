@@ -1,6 +1,10 @@
 package net.square.wrapper.impl;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.square.wrapper.DefaultWrapper;
 
@@ -9,6 +13,7 @@ import net.square.wrapper.DefaultWrapper;
  * It extends the DefaultWrapper class and provides additional functionality for retrieving specific address data.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class AddressWrapper extends DefaultWrapper {
 
     /**
@@ -70,7 +75,8 @@ public class AddressWrapper extends DefaultWrapper {
      * The CurrencyWrapper class is a wrapper class that represents currency information obtained from a JSON object.
      * It provides getters for accessing the currency code, name, symbol, and the raw JSON object.
      */
-    private final CurrencyWrapper currencyWrapper;
+    @Getter(AccessLevel.NONE)
+    private final Supplier<CurrencyWrapper> currencyWrapper;
 
     /**
      * Retrieves the value associated with the specified key from a JsonObject.
@@ -127,7 +133,8 @@ public class AddressWrapper extends DefaultWrapper {
      * <p>
      * This class extends the DefaultWrapper class, which provides methods for retrieving JSON values from a JsonObject.
      */
-    private final OperatorWrapper operatorWrapper;
+    @Getter(AccessLevel.NONE)
+    private final Supplier<OperatorWrapper> operatorWrapper;
 
     /**
      * The rawObject variable represents a JsonObject that holds raw data.
@@ -190,7 +197,8 @@ public class AddressWrapper extends DefaultWrapper {
      * Note: The example code is provided to demonstrate how the attack history information can be accessed.
      * It should not be used as reference code in actual implementations.
      */
-    private final AttackHistoryWrapper attackHistory;
+    @Getter(AccessLevel.NONE)
+    private final Supplier<AttackHistoryWrapper> attackHistory;
 
     /**
      * Constructs an AddressWrapper object by parsing the values from a JsonObject.
@@ -209,22 +217,49 @@ public class AddressWrapper extends DefaultWrapper {
         this.latitude = getJsonValue(jsonObject, "latitude", String.class, ERROR);
         this.longitude = getJsonValue(jsonObject, "longitude", String.class, ERROR);
 
-        this.currencyWrapper = new CurrencyWrapper(
-            getJsonValue(jsonObject, "currency", JsonObject.class, new JsonObject()));
+        this.currencyWrapper = Suppliers.ofInstance(new CurrencyWrapper(
+            getJsonValue(jsonObject, "currency", JsonObject.class, new JsonObject())));
 
         this.proxy = getJsonValue(jsonObject, "proxy", String.class, ERROR);
         this.type = getJsonValue(jsonObject, "type", String.class, ERROR);
         this.risk = getJsonValue(jsonObject, "risk", String.class, ERROR);
 
-        this.operatorWrapper = new OperatorWrapper(
-            getJsonValue(jsonObject, "operator", JsonObject.class, new JsonObject()));
+        this.operatorWrapper = Suppliers.ofInstance(new OperatorWrapper(
+            getJsonValue(jsonObject, "operator", JsonObject.class, new JsonObject())));
 
-        this.attackHistory = new AttackHistoryWrapper(
-            getJsonValue(jsonObject, "attack history", JsonObject.class, new JsonObject()));
+        this.attackHistory = Suppliers.ofInstance(new AttackHistoryWrapper(
+            getJsonValue(jsonObject, "attack history", JsonObject.class, new JsonObject())));
 
         this.lastSeenHuman = getJsonValue(jsonObject, "last seen human", String.class, ERROR);
         this.lastSeenUnix = getJsonValue(jsonObject, "last seen unix", String.class, ERROR);
 
         this.rawObject = jsonObject;
     }
+
+    /**
+     * Returns the currency wrapper of the address.
+     *
+     * @return The CurrencyWrapper of the address.
+     */
+    public CurrencyWrapper getCurrencyWrapper() {
+        return currencyWrapper.get();
+    }
+
+    /**
+     * Returns the operator wrapper of the address.
+     *
+     * @return The OperatorWrapper of the address.
+     */
+    public OperatorWrapper getOperatorWrapper() {
+        return operatorWrapper.get();
+    }
+
+    /**
+     * Returns the attack history wrapper of the address.
+     *
+     * @return The AttackHistoryWrapper of the address.
+     */
+    public AttackHistoryWrapper getAttackHistory() {
+        return attackHistory.get();
+    }
 }
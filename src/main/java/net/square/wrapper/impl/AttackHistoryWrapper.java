@@ -1,6 +1,8 @@
 package net.square.wrapper.impl;
 
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.square.wrapper.DefaultWrapper;
 
@@ -29,6 +31,7 @@ import net.square.wrapper.DefaultWrapper;
  * It is recommended to handle the ERROR constant value when accessing the properties of the AttackHistoryWrapper object.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class AttackHistoryWrapper extends DefaultWrapper {
 
     /**
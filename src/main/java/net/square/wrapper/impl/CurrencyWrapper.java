@@ -1,6 +1,8 @@
 package net.square.wrapper.impl;
 
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.square.wrapper.DefaultWrapper;
 
@@ -12,6 +14,7 @@ import net.square.wrapper.DefaultWrapper;
  * for retrieving JSON values from a JsonObject.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class CurrencyWrapper extends DefaultWrapper {
 
     /**
@@ -1,6 +1,8 @@
 package net.square.wrapper.impl;
 
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.square.wrapper.DefaultWrapper;
 
@@ -10,6 +12,7 @@ import net.square.wrapper.DefaultWrapper;
  * It provides getters for accessing the operator policies and the raw JSON object.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class OperatorPoliciesWrapper extends DefaultWrapper {
 
     /**
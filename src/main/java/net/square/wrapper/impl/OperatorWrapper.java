@@ -2,6 +2,8 @@ package net.square.wrapper.impl;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import net.square.wrapper.DefaultWrapper;
 
@@ -13,6 +15,7 @@ import java.util.List;
  * It provides methods for retrieving operator-related information from a JSON object.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class OperatorWrapper extends DefaultWrapper {
 
     /**
@@ -45,7 +48,7 @@ public class OperatorWrapper extends DefaultWrapper {
      * It is a private final List<String> field.
      * The value of this variable is set in the constructor of the OperatorWrapper class.
      */
-    private final List<String>            protocols = new ArrayList<>();
+    private final List<String>            protocols;
 
     /**
      * The operatorPoliciesWrapper variable is an instance of the OperatorPoliciesWrapper class.
@@ -70,6 +73,7 @@ public class OperatorWrapper extends DefaultWrapper {
         this.anonymity = getJsonValue(jsonObject, "anonymity", String.class, ERROR);
         this.popularity = getJsonValue(jsonObject, "popularity", String.class, ERROR);
 
+        this.protocols = new ArrayList<>();
         if (jsonObject.has("protocols")) {
             for (JsonElement jsonElement : jsonObject.get("protocols").getAsJsonArray().asList()) {
                 protocols.add(jsonElement.getAsString());
@@ -0,0 +1,94 @@
+package net.square.wrapper.impl;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ShortResponses class reads responses in the short format of the proxy check API, requested with
+ * {@code short=1}. A short response of a single address carries the fields of the address at the top level, next
+ * to the status, instead of in an object under the address:
+ * <pre>{@code
+ * {"status": "ok", "proxy": "yes", "type": "VPN", "query time": "0.002s"}
+ * }</pre>
+ * A response is recognized as short if it has no object under the address but a top level {@code proxy} field.
+ */
+@UtilityClass
+public class ShortResponses {
+
+    /**
+     * The top level fields of a response that do not belong to the address.
+     */
+    public static final Set<String> RESPONSE_FIELDS = Set.of("status", "message", "node", "query time");
+
+    /**
+     * The field every address object carries, used to recognize short responses.
+     */
+    private static final String PROXY_FIELD = "proxy";
+
+    /**
+     * Checks if a response is in the short format.
+     *
+     * @param response  The response.
+     * @param ipAddress The requested IP address.
+     * @return true if the fields of the address are at the top level of the response.
+     */
+    public boolean isShort(@NonNull JsonObject response, @NonNull String ipAddress) {
+        JsonElement address = response.get(ipAddress);
+        return (address == null || !address.isJsonObject()) && response.has(PROXY_FIELD);
+    }
+
+    /**
+     * Returns the object of an address out of a response in either format.
+     *
+     * @param response  The response.
+     * @param ipAddress The requested IP address.
+     * @return The object under the address, the top level fields of a short response, or an empty object if the
+     *         response holds no data of the address.
+     */
+    public JsonObject addressObject(@NonNull JsonObject response, @NonNull String ipAddress) {
+        JsonElement address = response.get(ipAddress);
+        if (address != null && address.isJsonObject()) {
+            return address.getAsJsonObject();
+        }
+        if (!response.has(PROXY_FIELD)) {
+            return new JsonObject();
+        }
+
+        JsonObject fields = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : response.entrySet()) {
+            if (!RESPONSE_FIELDS.contains(entry.getKey())) {
+                fields.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Converts a short response into the regular format, with the fields of the address in an object under the
+     * address. Responses in the regular format are returned as they are.
+     *
+     * @param response  The response.
+     * @param ipAddress The requested IP address.
+     * @return The response in the regular format.
+     */
+    public JsonObject normalize(@NonNull JsonObject response, @NonNull String ipAddress) {
+        if (!isShort(response, ipAddress)) {
+            return response;
+        }
+
+        JsonObject normalized = new JsonObject();
+        for (String field : RESPONSE_FIELDS) {
+            JsonElement element = response.get(field);
+            if (element != null) {
+                normalized.add(field, element);
+            }
+        }
+        normalized.add(ipAddress, addressObject(response, ipAddress));
+        return normalized;
+    }
+}
@@ -0,0 +1,564 @@
+package net.square.wrapper.impl;
+
+import com.google.common.base.Suppliers;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.square.wrapper.DefaultWrapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The StreamingResponseDecoder reads a response of the proxy check API token by token and populates the
+ * {@link SuccessWrapper} hierarchy directly, without building a JsonObject tree first.
+ * Unknown fields are skipped. Wrappers created by this decoder do not retain a raw JSON object,
+ * so {@code getRawObject()} returns null for them.
+ * <p>
+ * Responses of a single address in the {@link ShortResponses short format} are decoded as well: if the address has
+ * no object of its own, the top level fields other than the {@link ShortResponses#RESPONSE_FIELDS response fields}
+ * are taken as its fields.
+ */
+@UtilityClass
+public class StreamingResponseDecoder {
+
+    /**
+     * Decodes a response of the proxy check API.
+     *
+     * @param reader      The reader of the response body.
+     * @param ipAddresses The IP addresses whose objects should be decoded. Objects of other keys are skipped.
+     * @return The decoded response.
+     * @throws IOException If the body cannot be read or is not a JSON object.
+     */
+    public DecodedResponse decode(@NonNull Reader reader, @NonNull Collection<String> ipAddresses) throws IOException {
+        return decode(reader, ipAddresses, false);
+    }
+
+    /**
+     * Decodes a response of the proxy check API.
+     * In lazy mode the objects of the addresses are not decoded but kept as compact JSON text,
+     * which the {@link SuccessWrapper#lazy lazy SuccessWrappers} decode on first access.
+     *
+     * @param reader      The reader of the response body.
+     * @param ipAddresses The IP addresses whose objects should be decoded. Objects of other keys are skipped.
+     * @param lazy        Whether the objects of the addresses should be kept as JSON text.
+     * @return The decoded response.
+     * @throws IOException If the body cannot be read or is not a JSON object.
+     */
+    public DecodedResponse decode(@NonNull Reader reader, @NonNull Collection<String> ipAddresses,
+                                  boolean lazy) throws IOException {
+        DecodedResponse response = new DecodedResponse();
+
+        // The fields of a short response, only collected if a single address was requested
+        boolean single = ipAddresses.size() == 1;
+
+        // The keys of a batch response are looked up once each, so a list of addresses is not searched every time
+        Set<String> requested = ipAddresses instanceof Set<String> set ? set : new HashSet<>(ipAddresses);
+        boolean shortFormat = false;
+        AddressReader shortFields = null;
+        StringWriter shortText = null;
+        JsonWriter shortJson = null;
+
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String key = jsonReader.nextName();
+                switch (key) {
+                    case "status" -> response.status = readString(jsonReader, null);
+                    case "message" -> response.message = readString(jsonReader, null);
+                    case "node" -> response.node = readString(jsonReader, DefaultWrapper.ERROR);
+                    case "query time" -> response.queryTime = readString(jsonReader, DefaultWrapper.ERROR);
+                    default -> {
+                        if (requested.contains(key) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                            if (lazy) {
+                                response.addressJson.put(key, copyValue(jsonReader));
+                            } else {
+                                response.addresses.put(key, readAddress(jsonReader));
+                            }
+                        } else if (!single) {
+                            jsonReader.skipValue();
+                        } else if (lazy) {
+                            shortFormat |= key.equals("proxy");
+                            if (shortJson == null) {
+                                shortText = new StringWriter();
+                                shortJson = new JsonWriter(shortText);
+                                shortJson.setSerializeNulls(true);
+                                shortJson.beginObject();
+                            }
+                            shortJson.name(key);
+                            copyValue(jsonReader, shortJson);
+                        } else {
+                            shortFormat |= key.equals("proxy");
+                            if (shortFields == null) {
+                                shortFields = new AddressReader();
+                            }
+                            if (!shortFields.read(key, jsonReader)) {
+                                jsonReader.skipValue();
+                            }
+                        }
+                    }
+                }
+            }
+            jsonReader.endObject();
+        }
+
+        if (shortFormat) {
+            String ipAddress = ipAddresses.iterator().next();
+            if (shortJson != null && !response.addressJson.containsKey(ipAddress)) {
+                shortJson.endObject();
+                shortJson.close();
+                response.addressJson.put(ipAddress, shortText.toString());
+            } else if (shortFields != null && !response.addresses.containsKey(ipAddress)) {
+                response.addresses.put(ipAddress, shortFields.build());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Reads the object of an address.
+     *
+     * @param reader The reader positioned at the beginning of the object.
+     * @return The AddressWrapper of the address.
+     * @throws IOException If the object cannot be read.
+     */
+    private AddressWrapper readAddress(JsonReader reader) throws IOException {
+        AddressReader fields = new AddressReader();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!fields.read(reader.nextName(), reader)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return fields.build();
+    }
+
+    /**
+     * Decodes the compact JSON text of an address, as kept by the {@link SuccessWrapper#lazy lazy SuccessWrappers}.
+     *
+     * @param addressJson The JSON text of the address object.
+     * @return The AddressWrapper of the address.
+     * @throws JsonParseException If the text is not a JSON object.
+     */
+    AddressWrapper decodeAddress(@NonNull String addressJson) {
+        try (JsonReader reader = new JsonReader(new StringReader(addressJson))) {
+            return readAddress(reader);
+        } catch (IOException exception) {
+            throw new JsonParseException("Malformed address object", exception);
+        }
+    }
+
+    /**
+     * Reads the object of a currency.
+     *
+     * @param reader The reader positioned at the beginning of the object.
+     * @return The CurrencyWrapper of the currency.
+     * @throws IOException If the object cannot be read.
+     */
+    private CurrencyWrapper readCurrency(JsonReader reader) throws IOException {
+        String code = DefaultWrapper.ERROR, name = DefaultWrapper.ERROR, symbol = DefaultWrapper.ERROR;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "code" -> code = readString(reader, DefaultWrapper.ERROR);
+                case "name" -> name = readString(reader, DefaultWrapper.ERROR);
+                case "symbol" -> symbol = readString(reader, DefaultWrapper.ERROR);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new CurrencyWrapper(code, name, symbol, null);
+    }
+
+    /**
+     * Reads the object of an operator.
+     *
+     * @param reader The reader positioned at the beginning of the object.
+     * @return The OperatorWrapper of the operator.
+     * @throws IOException If the object cannot be read.
+     */
+    private OperatorWrapper readOperator(JsonReader reader) throws IOException {
+        String name = DefaultWrapper.ERROR, url = DefaultWrapper.ERROR;
+        String anonymity = DefaultWrapper.ERROR, popularity = DefaultWrapper.ERROR;
+        List<String> protocols = new ArrayList<>();
+        OperatorPoliciesWrapper policies = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = readString(reader, DefaultWrapper.ERROR);
+                case "url" -> url = readString(reader, DefaultWrapper.ERROR);
+                case "anonymity" -> anonymity = readString(reader, DefaultWrapper.ERROR);
+                case "popularity" -> popularity = readString(reader, DefaultWrapper.ERROR);
+                case "protocols" -> {
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            protocols.add(readString(reader, DefaultWrapper.ERROR));
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "policies" -> policies = isObject(reader) ? readPolicies(reader) : null;
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new OperatorWrapper(
+            name, url, anonymity, popularity, protocols, policies != null ? policies : emptyPolicies(), null);
+    }
+
+    /**
+     * Reads the object of operator policies.
+     *
+     * @param reader The reader positioned at the beginning of the object.
+     * @return The OperatorPoliciesWrapper of the policies.
+     * @throws IOException If the object cannot be read.
+     */
+    private OperatorPoliciesWrapper readPolicies(JsonReader reader) throws IOException {
+        String adFiltering = DefaultWrapper.ERROR, freeAccess = DefaultWrapper.ERROR;
+        String paidAccess = DefaultWrapper.ERROR, portForwarding = DefaultWrapper.ERROR;
+        String logging = DefaultWrapper.ERROR, anonymousPayments = DefaultWrapper.ERROR;
+        String cryptoPayments = DefaultWrapper.ERROR, traceableOwnership = DefaultWrapper.ERROR;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "ad_filtering" -> adFiltering = readString(reader, DefaultWrapper.ERROR);
+                case "free_access" -> freeAccess = readString(reader, DefaultWrapper.ERROR);
+                case "paid_access" -> paidAccess = readString(reader, DefaultWrapper.ERROR);
+                case "port_forwarding" -> portForwarding = readString(reader, DefaultWrapper.ERROR);
+                case "logging" -> logging = readString(reader, DefaultWrapper.ERROR);
+                case "anonymous_payments" -> anonymousPayments = readString(reader, DefaultWrapper.ERROR);
+                case "crypto_payments" -> cryptoPayments = readString(reader, DefaultWrapper.ERROR);
+                case "traceable_ownership" -> traceableOwnership = readString(reader, DefaultWrapper.ERROR);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new OperatorPoliciesWrapper(adFiltering, freeAccess, paidAccess, portForwarding, logging,
+                                           anonymousPayments, cryptoPayments, traceableOwnership, null);
+    }
+
+    /**
+     * Reads the object of an attack history.
+     *
+     * @param reader The reader positioned at the beginning of the object.
+     * @return The AttackHistoryWrapper of the attack history.
+     * @throws IOException If the object cannot be read.
+     */
+    private AttackHistoryWrapper readAttackHistory(JsonReader reader) throws IOException {
+        String total = DefaultWrapper.ERROR, vulnerabilityProbing = DefaultWrapper.ERROR;
+        String forumSpam = DefaultWrapper.ERROR, loginAttempt = DefaultWrapper.ERROR;
+        String registrationAttempt = DefaultWrapper.ERROR;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "total" -> total = readString(reader, DefaultWrapper.ERROR);
+                case "Vulnerability Probing" -> vulnerabilityProbing = readString(reader, DefaultWrapper.ERROR);
+                case "Forum Spam" -> forumSpam = readString(reader, DefaultWrapper.ERROR);
+                case "Login Attempt" -> loginAttempt = readString(reader, DefaultWrapper.ERROR);
+                case "Registration Attempt" -> registrationAttempt = readString(reader, DefaultWrapper.ERROR);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new AttackHistoryWrapper(total, vulnerabilityProbing, forumSpam, loginAttempt, registrationAttempt,
+                                        null);
+    }
+
+    /**
+     * Reads a primitive value as a string, the same way {@link DefaultWrapper#getJsonValue} converts it.
+     * Nulls, objects and arrays are skipped and reported as the default value.
+     *
+     * @param reader       The reader positioned at the value.
+     * @param defaultValue The value to return for nulls, objects and arrays.
+     * @return The value as a string, or the default value.
+     * @throws IOException If the value cannot be read.
+     */
+    private String readString(JsonReader reader, String defaultValue) throws IOException {
+        return switch (reader.peek()) {
+            case STRING, NUMBER -> reader.nextString();
+            case BOOLEAN -> String.valueOf(reader.nextBoolean());
+            default -> {
+                reader.skipValue();
+                yield defaultValue;
+            }
+        };
+    }
+
+    /**
+     * Copies the next value token by token into compact JSON text, without building a tree.
+     *
+     * @param reader The reader positioned at the value.
+     * @return The JSON text of the value.
+     * @throws IOException If the value cannot be read.
+     */
+    private String copyValue(JsonReader reader) throws IOException {
+        StringWriter text = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(text)) {
+            writer.setSerializeNulls(true);
+            copyValue(reader, writer);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Copies the next value token by token into a writer.
+     *
+     * @param reader The reader positioned at the value.
+     * @param writer The writer receiving the value.
+     * @throws IOException If the value cannot be read.
+     */
+    private void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT -> {
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                }
+                case BEGIN_ARRAY -> {
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                }
+                case NAME -> writer.name(reader.nextName());
+                case STRING -> writer.value(reader.nextString());
+                case NUMBER -> writer.jsonValue(reader.nextString());
+                case BOOLEAN -> writer.value(reader.nextBoolean());
+                case NULL -> {
+                    reader.nextNull();
+                    writer.nullValue();
+                }
+                default -> throw new IOException("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Checks if the next value is an object. Any other value is skipped.
+     *
+     * @param reader The reader positioned at the value.
+     * @return true if the next value is an object, false if it was skipped.
+     * @throws IOException If the value cannot be read.
+     */
+    private boolean isObject(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    /**
+     * Creates an AddressWrapper with all fields unset, used for addresses missing from the response.
+     *
+     * @return The empty AddressWrapper.
+     */
+    AddressWrapper emptyAddress() {
+        String error = DefaultWrapper.ERROR;
+        return new AddressWrapper(error, error, error, error, error, error, error, error, error,
+                                  Suppliers.ofInstance(emptyCurrency()), error, error, error, error, error,
+                                  Suppliers.ofInstance(emptyOperator()), null,
+                                  Suppliers.ofInstance(emptyAttackHistory()));
+    }
+
+    /**
+     * Creates a CurrencyWrapper with all fields unset, used for objects missing from the response.
+     *
+     * @return The empty CurrencyWrapper.
+     */
+    private CurrencyWrapper emptyCurrency() {
+        return new CurrencyWrapper(DefaultWrapper.ERROR, DefaultWrapper.ERROR, DefaultWrapper.ERROR, null);
+    }
+
+    /**
+     * Creates a OperatorWrapper with all fields unset, used for objects missing from the response.
+     *
+     * @return The empty OperatorWrapper.
+     */
+    private OperatorWrapper emptyOperator() {
+        String error = DefaultWrapper.ERROR;
+        return new OperatorWrapper(error, error, error, error, new ArrayList<>(), emptyPolicies(), null);
+    }
+
+    /**
+     * Creates a OperatorPoliciesWrapper with all fields unset, used for objects missing from the response.
+     *
+     * @return The empty OperatorPoliciesWrapper.
+     */
+    private OperatorPoliciesWrapper emptyPolicies() {
+        String error = DefaultWrapper.ERROR;
+        return new OperatorPoliciesWrapper(error, error, error, error, error, error, error, error, null);
+    }
+
+    /**
+     * Creates a AttackHistoryWrapper with all fields unset, used for objects missing from the response.
+     *
+     * @return The empty AttackHistoryWrapper.
+     */
+    private AttackHistoryWrapper emptyAttackHistory() {
+        String error = DefaultWrapper.ERROR;
+        return new AttackHistoryWrapper(error, error, error, error, error, null);
+    }
+
+    /**
+     * The AddressReader class collects the fields of an address one by one, so that they can be read out of the
+     * object of the address as well as out of the top level of a short response.
+     */
+    private static final class AddressReader {
+
+        private String asn = DefaultWrapper.ERROR, provider = DefaultWrapper.ERROR, continent = DefaultWrapper.ERROR;
+        private String continentCode = DefaultWrapper.ERROR, country = DefaultWrapper.ERROR;
+        private String isoCode = DefaultWrapper.ERROR, timezone = DefaultWrapper.ERROR;
+        private String latitude = DefaultWrapper.ERROR, longitude = DefaultWrapper.ERROR;
+        private String proxy = DefaultWrapper.ERROR, type = DefaultWrapper.ERROR, risk = DefaultWrapper.ERROR;
+        private String lastSeenHuman = DefaultWrapper.ERROR, lastSeenUnix = DefaultWrapper.ERROR;
+        private CurrencyWrapper currencyWrapper;
+        private OperatorWrapper operatorWrapper;
+        private AttackHistoryWrapper attackHistory;
+
+        /**
+         * Reads the value of a field, if it is a field of an address.
+         *
+         * @param name   The name of the field.
+         * @param reader The reader positioned at the value.
+         * @return true if the value was read, false if the field is unknown and its value still has to be skipped.
+         * @throws IOException If the value cannot be read.
+         */
+        private boolean read(String name, JsonReader reader) throws IOException {
+            switch (name) {
+                case "asn" -> asn = readString(reader, DefaultWrapper.ERROR);
+                case "provider" -> provider = readString(reader, DefaultWrapper.ERROR);
+                case "continent" -> continent = readString(reader, DefaultWrapper.ERROR);
+                case "continentcode" -> continentCode = readString(reader, DefaultWrapper.ERROR);
+                case "country" -> country = readString(reader, DefaultWrapper.ERROR);
+                case "isocode" -> isoCode = readString(reader, DefaultWrapper.ERROR);
+                case "timezone" -> timezone = readString(reader, DefaultWrapper.ERROR);
+                case "latitude" -> latitude = readString(reader, DefaultWrapper.ERROR);
+                case "longitude" -> longitude = readString(reader, DefaultWrapper.ERROR);
+                case "proxy" -> proxy = readString(reader, DefaultWrapper.ERROR);
+                case "type" -> type = readString(reader, DefaultWrapper.ERROR);
+                case "risk" -> risk = readString(reader, DefaultWrapper.ERROR);
+                case "last seen human" -> lastSeenHuman = readString(reader, DefaultWrapper.ERROR);
+                case "last seen unix" -> lastSeenUnix = readString(reader, DefaultWrapper.ERROR);
+                case "currency" -> currencyWrapper = isObject(reader) ? readCurrency(reader) : null;
+                case "operator" -> operatorWrapper = isObject(reader) ? readOperator(reader) : null;
+                case "attack history" -> attackHistory = isObject(reader) ? readAttackHistory(reader) : null;
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Creates the AddressWrapper of the fields read so far. Missing fields are unset.
+         *
+         * @return The AddressWrapper.
+         */
+        private AddressWrapper build() {
+            return new AddressWrapper(
+                asn, provider, continent, continentCode, country, isoCode, timezone, latitude, longitude,
+                Suppliers.ofInstance(currencyWrapper != null ? currencyWrapper : emptyCurrency()),
+                proxy, type, risk, lastSeenHuman, lastSeenUnix,
+                Suppliers.ofInstance(operatorWrapper != null ? operatorWrapper : emptyOperator()),
+                null,
+                Suppliers.ofInstance(attackHistory != null ? attackHistory : emptyAttackHistory()));
+        }
+    }
+
+    /**
+     * The DecodedResponse class holds the top level fields and the decoded addresses of a response.
+     */
+    @Getter
+    public static class DecodedResponse {
+
+        /**
+         * The status of the response, or null if it is not set.
+         */
+        private String status;
+
+        /**
+         * The message of the response, or null if it is not set.
+         */
+        private String message;
+
+        /**
+         * The node that answered the request.
+         */
+        private String node = DefaultWrapper.ERROR;
+
+        /**
+         * The query time of the response.
+         */
+        private String queryTime = DefaultWrapper.ERROR;
+
+        /**
+         * The decoded addresses, keyed by IP address.
+         */
+        private final Map<String, AddressWrapper> addresses = new HashMap<>();
+
+        /**
+         * The JSON text of the addresses, keyed by IP address. Only filled in lazy mode.
+         */
+        private final Map<String, String> addressJson = new HashMap<>();
+
+        /**
+         * Creates the SuccessWrapper of an address of this response.
+         * Addresses missing from the response get an AddressWrapper with all fields unset.
+         *
+         * @param ipAddress The IP address.
+         * @return The SuccessWrapper of the address.
+         */
+        public SuccessWrapper toSuccessWrapper(@NonNull String ipAddress) {
+            String decodedStatus = status != null ? status : DefaultWrapper.ERROR;
+
+            String json = addressJson.get(ipAddress);
+            if (json != null) {
+                return SuccessWrapper.lazy(decodedStatus, node, ipAddress, queryTime, json);
+            }
+
+            AddressWrapper addressWrapper = addresses.get(ipAddress);
+            return new SuccessWrapper(decodedStatus, node, ipAddress,
+                                      Suppliers.ofInstance(addressWrapper != null ? addressWrapper : emptyAddress()),
+                                      queryTime, null);
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package net.square.wrapper.impl;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NonNull;
 import net.square.wrapper.DefaultWrapper;
 
+import java.util.Map;
+
 /**
  * The SuccessWrapper class represents a wrapper for a successful JSON object response.
  * It extends the DefaultWrapper class, which provides utility methods for retrieving JSON values.
  */
 @Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class SuccessWrapper extends DefaultWrapper {
 
     /**
@@ -62,8 +71,10 @@ public class SuccessWrapper extends DefaultWrapper {
 
     /**
      * Represents a wrapper class for an address.
+     * The wrapper is held by a memoizing supplier, so that in lazy mode it is only decoded on first access.
      */
-    private final AddressWrapper addressWrapper;
+    @Getter(AccessLevel.NONE)
+    private final Supplier<AddressWrapper> addressWrapper;
 
     /**
      * The queryTime variable holds the value of the query time retrieved from a JSON object.
@@ -72,12 +83,15 @@ public class SuccessWrapper extends DefaultWrapper {
 
     /**
      * Represents a JSON object that holds raw data.
+     * It is null if the response was decoded by the {@link StreamingResponseDecoder}.
      */
     private final JsonObject rawObject;
 
     /**
      * Represents a wrapper for a successful response.
      * This class contains information retrieved from a JsonObject and provides getters for accessing that information.
+     * Responses in the {@link ShortResponses short format} are accepted as well; their raw object is converted into
+     * the regular format, with the address data under the IP address.
      */
     public SuccessWrapper(JsonObject jsonObject, String ipAddress) {
 
@@ -85,10 +99,58 @@ public class SuccessWrapper extends DefaultWrapper {
 
         this.status = this.getJsonValue(jsonObject, "status", String.class, ERROR);
         this.node = this.getJsonValue(jsonObject, "node", String.class, ERROR);
-        this.addressWrapper = new AddressWrapper(
-            this.getJsonValue(jsonObject, ipAddress, JsonObject.class, new JsonObject()));
         this.queryTime = this.getJsonValue(jsonObject, "query time", String.class, ERROR);
 
-        this.rawObject = jsonObject;
+        this.rawObject = jsonObject != null && ipAddress != null
+            ? ShortResponses.normalize(jsonObject, ipAddress)
+            : jsonObject;
+        this.addressWrapper = Suppliers.ofInstance(new AddressWrapper(
+            this.getJsonValue(this.rawObject, ipAddress, JsonObject.class, new JsonObject())));
+    }
+
+    /**
+     * Creates a SuccessWrapper in lazy mode. Only the compact JSON text of the address is kept; the AddressWrapper
+     * and its sub-wrappers are decoded on first access, once, and shared by all threads afterwards.
+     * The text is decoded by the {@link StreamingResponseDecoder} without building a JsonObject tree and is released
+     * once decoded, so a decoded lazy wrapper is as light as a streamed one and retains no raw object.
+     *
+     * @param status      The status of the response.
+     * @param node        The node that answered the request.
+     * @param ipAddress   The IP address the response belongs to.
+     * @param queryTime   The query time of the response.
+     * @param addressJson The JSON text of the address object.
+     * @return The lazy SuccessWrapper.
+     */
+    public static SuccessWrapper lazy(String status, String node, @NonNull String ipAddress, String queryTime,
+                                      @NonNull String addressJson) {
+        return new SuccessWrapper(status, node, ipAddress, Suppliers.memoize(
+            () -> StreamingResponseDecoder.decodeAddress(addressJson)), queryTime, null);
+    }
+
+    /**
+     * Creates a copy of this SuccessWrapper for another IP address, sharing the address data.
+     * The raw JSON object, if retained, is copied with the address object moved to the new IP address.
+     *
+     * @param ipAddress The IP address the copy belongs to.
+     * @return The SuccessWrapper of the IP address.
+     */
+    public SuccessWrapper withIpAddress(@NonNull String ipAddress) {
+        JsonObject jsonObject = null;
+        if (rawObject != null) {
+            jsonObject = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : rawObject.entrySet()) {
+                jsonObject.add(entry.getKey().equals(this.ipAddress) ? ipAddress : entry.getKey(), entry.getValue());
+            }
+        }
+        return new SuccessWrapper(status, node, ipAddress, addressWrapper, queryTime, jsonObject);
+    }
+
+    /**
+     * Returns the wrapper of the address, decoding it first if this wrapper is in lazy mode.
+     *
+     * @return The AddressWrapper of the address.
+     */
+    public AddressWrapper getAddressWrapper() {
+        return addressWrapper.get();
     }
 }
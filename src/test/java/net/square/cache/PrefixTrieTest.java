@@ -0,0 +1,276 @@
+package net.square.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * The PrefixTrieTest class checks the longest-prefix matching of {@link PrefixTrie}: nested prefixes, prefixes that
+ * only share a part of their path, replaced values, and the rebuild of {@link PrefixTrie#removeIf}. Random prefixes
+ * are compared against a linear search of the same prefixes.
+ * <p>
+ * It runs as part of {@code gradle check} through the {@code prefixTrieTest} task.
+ */
+public class PrefixTrieTest {
+
+    /**
+     * The seed of the random prefixes and addresses, fixed so that a failure can be reproduced.
+     */
+    private static final long SEED = 0x5EED_13L;
+
+    /**
+     * The number of random prefixes.
+     */
+    private static final int PREFIXES = 2_000;
+
+    /**
+     * The number of random addresses looked up.
+     */
+    private static final int LOOKUPS = 50_000;
+
+    public static void main(String[] args) {
+        nestedPrefixes();
+        overlappingPrefixes();
+        removeIf();
+        randomPrefixes();
+        System.out.println("PrefixTrie: all checks passed");
+    }
+
+    /**
+     * Checks that the longest of nested prefixes wins, from the default route down to a single address.
+     */
+    private static void nestedPrefixes() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put(AddressKey.of("10.1.2.3"), ipv4(8), "/8");
+        trie.put(AddressKey.of("10.1.2.3"), ipv4(16), "/16");
+        trie.put(AddressKey.of("10.1.2.3"), ipv4(24), "/24");
+        trie.put(AddressKey.of("10.1.2.3"), ipv4(32), "/32");
+
+        expect(trie, "10.1.2.3", "/32");
+        expect(trie, "10.1.2.4", "/24");
+        expect(trie, "10.1.3.0", "/16");
+        expect(trie, "10.2.0.0", "/8");
+        expect(trie, "11.0.0.0", null);
+        expect(trie, "2001:db8::1", null);
+
+        trie.put(AddressKey.of("::"), 0, "default");
+        expect(trie, "11.0.0.0", "default");
+        expect(trie, "2001:db8::1", "default");
+        expect(trie, "10.1.2.3", "/32");
+
+        // A prefix added again replaces its value without adding a prefix
+        trie.put(AddressKey.of("10.1.255.255"), ipv4(16), "/16 again");
+        expect(trie, "10.1.3.0", "/16 again");
+        check(trie.size() == 5, "The trie holds %d prefixes instead of 5".formatted(trie.size()));
+    }
+
+    /**
+     * Checks prefixes whose paths split in the middle of a compressed edge, so that a branching node without a value
+     * is inserted, and a prefix inserted above existing longer ones afterwards.
+     */
+    private static void overlappingPrefixes() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put(AddressKey.of("192.168.1.0"), ipv4(24), "192.168.1.0/24");
+        trie.put(AddressKey.of("192.168.2.0"), ipv4(24), "192.168.2.0/24");
+        trie.put(AddressKey.of("192.169.0.0"), ipv4(16), "192.169.0.0/16");
+
+        // 192.168.0.0/22 covers both /24s, 192.168.3.0 is only in the branching part of the path
+        expect(trie, "192.168.3.1", null);
+        expect(trie, "192.168.0.1", null);
+        trie.put(AddressKey.of("192.168.0.0"), ipv4(22), "192.168.0.0/22");
+        expect(trie, "192.168.3.1", "192.168.0.0/22");
+        expect(trie, "192.168.1.1", "192.168.1.0/24");
+        expect(trie, "192.168.2.1", "192.168.2.0/24");
+        expect(trie, "192.169.7.7", "192.169.0.0/16");
+        expect(trie, "192.170.0.0", null);
+
+        trie.put(AddressKey.of("2001:db8::"), 32, "2001:db8::/32");
+        trie.put(AddressKey.of("2001:db8:8000::"), 33, "2001:db8:8000::/33");
+        trie.put(AddressKey.of("2001:db9::"), 32, "2001:db9::/32");
+        expect(trie, "2001:db8::1", "2001:db8::/32");
+        expect(trie, "2001:db8:8000::1", "2001:db8:8000::/33");
+        expect(trie, "2001:db9:ffff::", "2001:db9::/32");
+        expect(trie, "2001:dba::", null);
+        expect(trie, "192.168.3.1", "192.168.0.0/22");
+    }
+
+    /**
+     * Checks that removing prefixes rebuilds the trie: shorter prefixes take over, prefixes below removed ones are
+     * still found, and forEach only visits the remaining prefixes.
+     */
+    private static void removeIf() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put(AddressKey.of("10.0.0.0"), ipv4(8), "keep /8");
+        trie.put(AddressKey.of("10.1.0.0"), ipv4(16), "drop /16");
+        trie.put(AddressKey.of("10.1.2.0"), ipv4(24), "keep /24");
+        trie.put(AddressKey.of("10.2.0.0"), ipv4(16), "drop /16 sibling");
+        trie.put(AddressKey.of("2001:db8::"), 32, "drop v6");
+
+        trie.removeIf(value -> value.startsWith("drop"));
+
+        check(trie.size() == 2, "The trie holds %d prefixes instead of 2 after removeIf".formatted(trie.size()));
+        expect(trie, "10.1.2.3", "keep /24");
+        expect(trie, "10.1.3.0", "keep /8");
+        expect(trie, "10.2.0.1", "keep /8");
+        expect(trie, "2001:db8::1", null);
+
+        Map<String, Integer> visited = new HashMap<>();
+        trie.forEach((prefixKey, value) -> visited.put(value, prefixKey.prefixLength()));
+        check(visited.equals(Map.of("keep /8", ipv4(8), "keep /24", ipv4(24))),
+              "forEach visited %s after removeIf".formatted(visited));
+
+        trie.removeIf(value -> true);
+        check(trie.size() == 0, "The trie is not empty after removing every prefix");
+        expect(trie, "10.1.2.3", null);
+
+        // The emptied trie takes new prefixes
+        trie.put(AddressKey.of("10.1.2.0"), ipv4(24), "again");
+        expect(trie, "10.1.2.3", "again");
+    }
+
+    /**
+     * Compares the longest match of random IPv4 and IPv6 prefixes with a linear search, before and after removing a
+     * part of them.
+     */
+    private static void randomPrefixes() {
+        Random random = new Random(SEED);
+        PrefixTrie<Integer> trie = new PrefixTrie<>();
+        Map<String, Prefix> prefixes = new HashMap<>();
+
+        for (int i = 0; i < PREFIXES; i++) {
+            // Few distinct upper bits, so that the prefixes nest and share paths
+            AddressKey addressKey = random.nextBoolean()
+                ? AddressKey.ofIPv4(random.nextInt(4) << 28 | random.nextInt(1 << 24))
+                : AddressKey.ofIPv6(0x2001_0db8_0000_0000L | random.nextInt(16), random.nextLong());
+            int length = addressKey.isIPv4()
+                ? ipv4(random.nextInt(33))
+                : 60 + random.nextInt(PrefixTrie.ADDRESS_BITS - 60 + 1);
+
+            Prefix prefix = new Prefix(addressKey.getHigh(), addressKey.getLow(), length, i).masked();
+            trie.put(addressKey, length, i);
+            // A prefix added again replaces the value of the earlier one
+            prefixes.put(prefix.high() + "/" + prefix.low() + "/" + length, prefix);
+        }
+        compare(trie, new ArrayList<>(prefixes.values()), random);
+
+        trie.removeIf(value -> value % 3 == 0);
+        prefixes.values().removeIf(prefix -> prefix.value() % 3 == 0);
+        compare(trie, new ArrayList<>(prefixes.values()), random);
+    }
+
+    /**
+     * Compares the longest match of random addresses, half of them within a prefix, with a linear search.
+     *
+     * @param trie     The trie.
+     * @param prefixes The prefixes the trie holds.
+     * @param random   The source of the addresses.
+     */
+    private static void compare(PrefixTrie<Integer> trie, List<Prefix> prefixes, Random random) {
+        check(trie.size() == prefixes.size(),
+              "The trie holds %d prefixes instead of %d".formatted(trie.size(), prefixes.size()));
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            Prefix near = prefixes.get(random.nextInt(prefixes.size()));
+            long high = near.high();
+            long low = near.low();
+            if (random.nextBoolean()) {
+                // Flip one bit, possibly within the prefix
+                int bit = random.nextInt(PrefixTrie.ADDRESS_BITS);
+                if (bit < 64) {
+                    high ^= 1L << (63 - bit);
+                } else {
+                    low ^= 1L << (127 - bit);
+                }
+            } else {
+                // Randomize the bits after the prefix within the lower 64 bits
+                int kept = Math.max(0, near.length() - 64);
+                low ^= kept == 64 ? 0 : random.nextLong() & -1L >>> kept;
+            }
+
+            AddressKey addressKey = AddressKey.ofIPv6(high, low);
+            Integer expected = linearMatch(prefixes, high, low);
+            Integer actual = trie.longestMatch(addressKey);
+            check(Objects.equals(expected, actual),
+                  "%s matched %s instead of %s".formatted(addressKey, actual, expected));
+        }
+    }
+
+    /**
+     * Finds the value of the longest prefix containing an address by checking every prefix.
+     *
+     * @param prefixes The prefixes.
+     * @param high     The upper 64 bits of the address.
+     * @param low      The lower 64 bits of the address.
+     * @return The value of the longest matching prefix, or null if no prefix contains the address.
+     */
+    private static Integer linearMatch(List<Prefix> prefixes, long high, long low) {
+        Prefix best = null;
+        for (Prefix prefix : prefixes) {
+            Prefix address = new Prefix(high, low, prefix.length(), 0).masked();
+            if (address.high() == prefix.high() && address.low() == prefix.low()
+                && (best == null || prefix.length() > best.length())) {
+                best = prefix;
+            }
+        }
+        return best != null ? best.value() : null;
+    }
+
+    /**
+     * Looks up an address and fails if it does not match the expected value.
+     *
+     * @param trie     The trie.
+     * @param address  The address.
+     * @param expected The expected value, or null if no prefix should match.
+     */
+    private static void expect(PrefixTrie<String> trie, String address, String expected) {
+        String actual = trie.longestMatch(AddressKey.of(address));
+        check(Objects.equals(expected, actual), "%s matched %s instead of %s".formatted(address, actual, expected));
+    }
+
+    /**
+     * Returns the length of an IPv4 prefix in its IPv4-mapped form.
+     *
+     * @param length The length of the IPv4 prefix.
+     * @return The length of the prefix within the 128 bits of an address.
+     */
+    private static int ipv4(int length) {
+        return PrefixTrie.IPV4_MAPPED_BITS + length;
+    }
+
+    /**
+     * Fails with a message if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message   The message of the failure.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * A prefix of the linear search.
+     *
+     * @param high   The upper 64 bits of the prefix.
+     * @param low    The lower 64 bits of the prefix.
+     * @param length The length of the prefix.
+     * @param value  The value of the prefix.
+     */
+    private record Prefix(long high, long low, int length, int value) {
+
+        /**
+         * Clears the bits after the prefix.
+         *
+         * @return The prefix with the bits after its length cleared.
+         */
+        private Prefix masked() {
+            long maskedHigh = length >= 64 ? high : length == 0 ? 0 : high & -1L << (64 - length);
+            long maskedLow = length <= 64 ? 0 : length == 128 ? low : low & -1L << (128 - length);
+            return new Prefix(maskedHigh, maskedLow, length, value);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package net.square.range;
+
+import net.square.cache.AddressKey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The CidrRangeIndexTest class checks how {@link CidrRangeIndex} flattens nested IPv4 ranges into disjoint
+ * intervals and finds them through its bucket table: nested ranges ending at the same address, ranges ending at
+ * 255.255.255.255, and lookups at the first and last address of a bucket. Random ranges are compared against a
+ * linear search of the same ranges.
+ * <p>
+ * It runs as part of {@code gradle check} through the {@code cidrRangeIndexTest} task.
+ */
+public class CidrRangeIndexTest {
+
+    /**
+     * The seed of the random ranges and addresses, fixed so that a failure can be reproduced.
+     */
+    private static final long SEED = 0x5EED_14L;
+
+    /**
+     * The number of random ranges.
+     */
+    private static final int RANGES = 5_000;
+
+    /**
+     * The number of random addresses looked up.
+     */
+    private static final int LOOKUPS = 100_000;
+
+    public static void main(String[] args) {
+        nestedRangesEndingTogether();
+        rangesEndingAtLastAddress();
+        bucketBoundaries();
+        replacedAndIPv6Ranges();
+        randomRanges();
+        System.out.println("CidrRangeIndex: all checks passed");
+    }
+
+    /**
+     * Checks nested ranges sharing their last address: the address after them must not fall back to one of them.
+     */
+    private static void nestedRangesEndingTogether() {
+        Map<String, KnownRange> ranges = ranges("10.0.0.0/8", "10.255.0.0/16", "10.255.255.0/24", "10.255.255.255",
+                                                "11.0.0.0/16");
+        CidrRangeIndex index = build(ranges);
+
+        expect(index, "10.255.255.255", ranges.get("10.255.255.255"));
+        expect(index, "10.255.255.254", ranges.get("10.255.255.0/24"));
+        expect(index, "10.255.254.255", ranges.get("10.255.0.0/16"));
+        expect(index, "10.254.255.255", ranges.get("10.0.0.0/8"));
+        expect(index, "10.0.0.0", ranges.get("10.0.0.0/8"));
+        expect(index, "11.0.0.0", ranges.get("11.0.0.0/16"));
+        expect(index, "11.1.0.0", null);
+        expect(index, "9.255.255.255", null);
+
+        // The same without a range right after them
+        ranges = ranges("10.0.0.0/8", "10.255.0.0/16", "10.255.255.0/24");
+        index = build(ranges);
+        expect(index, "10.255.255.255", ranges.get("10.255.255.0/24"));
+        expect(index, "11.0.0.0", null);
+    }
+
+    /**
+     * Checks nested ranges ending at 255.255.255.255, including the default route.
+     */
+    private static void rangesEndingAtLastAddress() {
+        Map<String, KnownRange> ranges = ranges("240.0.0.0/4", "255.255.0.0/16", "255.255.255.0/24",
+                                                "255.255.255.255/32");
+        CidrRangeIndex index = build(ranges);
+
+        expect(index, "255.255.255.255", ranges.get("255.255.255.255/32"));
+        expect(index, "255.255.255.254", ranges.get("255.255.255.0/24"));
+        expect(index, "255.255.254.255", ranges.get("255.255.0.0/16"));
+        expect(index, "255.254.255.255", ranges.get("240.0.0.0/4"));
+        expect(index, "240.0.0.0", ranges.get("240.0.0.0/4"));
+        expect(index, "239.255.255.255", null);
+
+        ranges = ranges("0.0.0.0/0", "128.0.0.0/1", "255.255.255.255");
+        index = build(ranges);
+        expect(index, "0.0.0.0", ranges.get("0.0.0.0/0"));
+        expect(index, "127.255.255.255", ranges.get("0.0.0.0/0"));
+        expect(index, "128.0.0.0", ranges.get("128.0.0.0/1"));
+        expect(index, "255.255.255.254", ranges.get("128.0.0.0/1"));
+        expect(index, "255.255.255.255", ranges.get("255.255.255.255"));
+    }
+
+    /**
+     * Checks lookups at the first and last address of 16-bit buckets: a range filling a bucket, a range covering
+     * buckets in which no interval starts, and a range starting in the middle of a bucket.
+     */
+    private static void bucketBoundaries() {
+        Map<String, KnownRange> ranges = ranges("1.2.0.0/16", "20.0.0.0/8", "20.77.0.0/17", "30.0.128.0/17",
+                                                "0.0.0.0/16");
+        CidrRangeIndex index = build(ranges);
+
+        expect(index, "1.1.255.255", null);
+        expect(index, "1.2.0.0", ranges.get("1.2.0.0/16"));
+        expect(index, "1.2.255.255", ranges.get("1.2.0.0/16"));
+        expect(index, "1.3.0.0", null);
+
+        expect(index, "20.0.0.0", ranges.get("20.0.0.0/8"));
+        expect(index, "20.76.255.255", ranges.get("20.0.0.0/8"));
+        expect(index, "20.77.0.0", ranges.get("20.77.0.0/17"));
+        expect(index, "20.77.127.255", ranges.get("20.77.0.0/17"));
+        expect(index, "20.77.128.0", ranges.get("20.0.0.0/8"));
+        expect(index, "20.77.255.255", ranges.get("20.0.0.0/8"));
+        expect(index, "20.78.0.0", ranges.get("20.0.0.0/8"));
+        expect(index, "20.200.0.0", ranges.get("20.0.0.0/8"));
+        expect(index, "20.255.255.255", ranges.get("20.0.0.0/8"));
+        expect(index, "21.0.0.0", null);
+
+        expect(index, "30.0.0.0", null);
+        expect(index, "30.0.127.255", null);
+        expect(index, "30.0.128.0", ranges.get("30.0.128.0/17"));
+        expect(index, "30.0.255.255", ranges.get("30.0.128.0/17"));
+        expect(index, "30.1.0.0", null);
+
+        // The first bucket, which no interval precedes
+        expect(index, "0.0.0.0", ranges.get("0.0.0.0/16"));
+        expect(index, "0.0.255.255", ranges.get("0.0.0.0/16"));
+        expect(index, "0.1.0.0", null);
+    }
+
+    /**
+     * Checks that a range added again replaces the earlier one, and that IPv6 ranges are found as well.
+     */
+    private static void replacedAndIPv6Ranges() {
+        KnownRange first = KnownRange.of("first", "Hosting", false, 0);
+        KnownRange second = KnownRange.of("second", "Hosting", false, 0);
+        KnownRange ipv6 = KnownRange.of("ipv6", "Hosting", false, 0);
+        CidrRangeIndex index = CidrRangeIndex.builder()
+            .range("45.142.112.0/22", first)
+            .range("45.142.115.255/22", second)
+            .range("2001:db8::/32", ipv6)
+            .build();
+
+        check(index.size() == 2, "The index holds %d ranges instead of 2".formatted(index.size()));
+        expect(index, "45.142.112.0", second);
+        expect(index, "45.142.115.255", second);
+        expect(index, "45.142.116.0", null);
+        expect(index, "2001:db8:1::1", ipv6);
+        expect(index, "2001:db9::", null);
+    }
+
+    /**
+     * Compares random nested ranges with a linear search, at random addresses and at the first and last address of
+     * every range and the addresses around them.
+     */
+    private static void randomRanges() {
+        Random random = new Random(SEED);
+        Map<Long, Range> byPrefix = new LinkedHashMap<>();
+        CidrRangeIndex.Builder builder = CidrRangeIndex.builder();
+
+        for (int i = 0; i < RANGES; i++) {
+            // Few distinct upper bits, so that the ranges nest; prefixes of 8 to 32 bits
+            int address = random.nextInt(8) << 24 | random.nextInt(1 << 20) << 4;
+            int prefixLength = 8 + random.nextInt(25);
+            long start = address & 0xFFFF_FFFFL & (0xFFFF_FFFFL << (32 - prefixLength));
+
+            KnownRange knownRange = KnownRange.of("range " + i, "Hosting", false, 0);
+            builder.range(AddressKey.ofIPv4((int) start) + "/" + prefixLength, knownRange);
+            // A range added again replaces the earlier one
+            byPrefix.put(start << 6 | prefixLength, new Range(start, start + (1L << (32 - prefixLength)) - 1,
+                                                              prefixLength, knownRange));
+        }
+        CidrRangeIndex index = builder.build();
+        List<Range> ranges = new ArrayList<>(byPrefix.values());
+        check(index.size() == ranges.size(),
+              "The index holds %d ranges instead of %d".formatted(index.size(), ranges.size()));
+
+        for (Range range : ranges) {
+            for (long address : new long[]{range.start() - 1, range.start(), range.end(), range.end() + 1}) {
+                if (address >= 0 && address <= 0xFFFF_FFFFL) {
+                    compare(index, ranges, address);
+                }
+            }
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            compare(index, ranges, (random.nextInt(9) << 24 | random.nextInt(1 << 24)) & 0xFFFF_FFFFL);
+        }
+    }
+
+    /**
+     * Looks up an address and fails if it does not match the most specific range found by a linear search.
+     *
+     * @param index   The index.
+     * @param ranges  The ranges of the index.
+     * @param address The address.
+     */
+    private static void compare(CidrRangeIndex index, List<Range> ranges, long address) {
+        Range best = null;
+        for (Range range : ranges) {
+            if (range.start() <= address && address <= range.end()
+                && (best == null || range.prefixLength() > best.prefixLength())) {
+                best = range;
+            }
+        }
+        AddressKey addressKey = AddressKey.ofIPv4((int) address);
+        KnownRange expected = best != null ? best.knownRange() : null;
+        KnownRange actual = index.find(addressKey);
+        check(expected == actual, "%s found %s instead of %s".formatted(addressKey, name(actual), name(expected)));
+    }
+
+    /**
+     * Creates a distinct range for each CIDR text.
+     *
+     * @param cidrs The ranges in CIDR notation.
+     * @return The ranges by their CIDR text, in the given order.
+     */
+    private static Map<String, KnownRange> ranges(String... cidrs) {
+        Map<String, KnownRange> ranges = new LinkedHashMap<>();
+        for (String cidr : cidrs) {
+            ranges.put(cidr, KnownRange.of(cidr, "Hosting", false, 0));
+        }
+        return ranges;
+    }
+
+    /**
+     * Builds an index of ranges.
+     *
+     * @param ranges The ranges by their CIDR text.
+     * @return The index.
+     */
+    private static CidrRangeIndex build(Map<String, KnownRange> ranges) {
+        CidrRangeIndex.Builder builder = CidrRangeIndex.builder();
+        ranges.forEach(builder::range);
+        return builder.build();
+    }
+
+    /**
+     * Looks up an address and fails if it is not in the expected range.
+     *
+     * @param index    The index.
+     * @param address  The address.
+     * @param expected The expected range, or null if the address should be in no range.
+     */
+    private static void expect(CidrRangeIndex index, String address, KnownRange expected) {
+        KnownRange actual = index.find(AddressKey.of(address));
+        check(expected == actual, "%s found %s instead of %s".formatted(address, name(actual), name(expected)));
+    }
+
+    /**
+     * Returns the name of a range for a failure message.
+     *
+     * @param knownRange The range, may be null.
+     * @return The name of the range, or "no range".
+     */
+    private static String name(KnownRange knownRange) {
+        return knownRange != null ? knownRange.getName() : "no range";
+    }
+
+    /**
+     * Fails with a message if a condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message   The message of the failure.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * A range of the linear search.
+     *
+     * @param start        The first address of the range.
+     * @param end          The last address of the range.
+     * @param prefixLength The length of the prefix of the range.
+     * @param knownRange   The range added to the index.
+     */
+    private record Range(long start, long end, int prefixLength, KnownRange knownRange) {
+    }
+}
@@ -0,0 +1,167 @@
+package net.square.wrapper.compact;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.square.wrapper.impl.SuccessWrapper;
+
+import java.util.function.IntFunction;
+
+/**
+ * The CompactAddressDataMemoryTest class checks the memory per entry documented in {@link CompactAddressData}:
+ * it allocates many entries of a full response, compares the used heap before and after, and fails if a compact
+ * entry exceeds its bound or is not an order of magnitude smaller than a SuccessWrapper retaining its JSON.
+ * <p>
+ * It runs as part of {@code gradle check} through the {@code compactMemoryTest} task, on the serial collector so
+ * that the used heap settles after a collection.
+ */
+public class CompactAddressDataMemoryTest {
+
+    /**
+     * The number of entries allocated per measurement.
+     */
+    private static final int ENTRIES = 20_000;
+
+    /**
+     * The bound of the retained size of a compact entry, above the documented 270 bytes to allow for other JVMs.
+     */
+    private static final long MAX_COMPACT_BYTES = 400;
+
+    /**
+     * A full response, requested with every flag set and a risk level of 2. {@code %s} is the address.
+     */
+    private static final String RESPONSE = """
+        {
+            "status": "ok",
+            "node": "PANDORA",
+            "%1$s": {
+                "asn": "AS198605",
+                "provider": "AVAST Software s.r.o.",
+                "continent": "Europe",
+                "continentcode": "EU",
+                "country": "Germany",
+                "isocode": "DE",
+                "timezone": "Europe/Berlin",
+                "latitude": 50.1187,
+                "longitude": 8.6842,
+                "currency": {"code": "EUR", "name": "Euro", "symbol": "€"},
+                "proxy": "yes",
+                "type": "VPN",
+                "operator": {
+                    "name": "HMA VPN",
+                    "url": "https://www.hidemyass.com/",
+                    "anonymity": "high",
+                    "popularity": "high",
+                    "protocols": ["OpenVPN", "IPSec"],
+                    "policies": {"ad_filtering": "no", "free_access": "no", "paid_access": "yes", "logging": "yes"}
+                },
+                "port": 1080,
+                "risk": 66,
+                "attack history": {"total": 4, "Login Attempt": 3, "Registration Attempt": 1},
+                "last seen human": "9 hours, 2 minutes, 11 seconds ago",
+                "last seen unix": "1712485922"
+            },
+            "query time": "0.004s"
+        }
+        """;
+
+    public static void main(String[] args) {
+        // Warm up the classes involved, so that their loading is not measured
+        retainedBytesPerEntry(CompactAddressDataMemoryTest::compactEntry, 1_000);
+        retainedBytesPerEntry(CompactAddressDataMemoryTest::treeEntry, 1_000);
+
+        long compactBytes = retainedBytesPerEntry(CompactAddressDataMemoryTest::compactEntry, ENTRIES);
+        long treeBytes = retainedBytesPerEntry(CompactAddressDataMemoryTest::treeEntry, ENTRIES);
+        System.out.printf("CompactAddressData: %d bytes per entry, SuccessWrapper: %d bytes per entry%n",
+                          compactBytes, treeBytes);
+
+        if (compactBytes > MAX_COMPACT_BYTES) {
+            throw new AssertionError("A CompactAddressData retains %d bytes, more than the bound of %d bytes"
+                                         .formatted(compactBytes, MAX_COMPACT_BYTES));
+        }
+        if (compactBytes * 10 > treeBytes) {
+            throw new AssertionError("A CompactAddressData retains %d bytes, not a tenth of the %d bytes of a "
+                                         .formatted(compactBytes, treeBytes) + "SuccessWrapper");
+        }
+    }
+
+    /**
+     * Creates the compact entry of the i-th address, out of its own response so that no strings are shared.
+     *
+     * @param i The number of the address.
+     * @return The entry.
+     */
+    private static Object compactEntry(int i) {
+        String address = address(i);
+        return CompactAddressData.fromResponse(response(address), address, false);
+    }
+
+    /**
+     * Creates the SuccessWrapper of the i-th address, retaining its JSON object.
+     *
+     * @param i The number of the address.
+     * @return The entry.
+     */
+    private static Object treeEntry(int i) {
+        String address = address(i);
+        return new SuccessWrapper(response(address), address);
+    }
+
+    /**
+     * Measures the heap retained per entry.
+     *
+     * @param factory The factory creating the i-th entry.
+     * @param entries The number of entries to allocate.
+     * @return The retained bytes per entry.
+     */
+    private static long retainedBytesPerEntry(IntFunction<Object> factory, int entries) {
+        long before = usedHeap();
+        Object[] retained = new Object[entries];
+        for (int i = 0; i < entries; i++) {
+            retained[i] = factory.apply(i);
+        }
+        long after = usedHeap();
+
+        // The array itself is not part of an entry
+        long arrayBytes = 16L + 4L * entries;
+        long perEntry = (after - before - arrayBytes) / entries;
+        if (retained[entries - 1] == null) {
+            throw new AssertionError("The entries were not retained");
+        }
+        return perEntry;
+    }
+
+    /**
+     * Returns the used heap after collecting the garbage.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Returns the i-th address.
+     *
+     * @param i The number of the address.
+     * @return The address.
+     */
+    private static String address(int i) {
+        return "81.%d.%d.%d".formatted((i >> 15) & 0xFF, (i >> 7) & 0xFF, 1 + (i & 0x7F));
+    }
+
+    /**
+     * Parses the response of an address.
+     *
+     * @param address The address.
+     * @return The response.
+     */
+    private static JsonObject response(String address) {
+        return JsonParser.parseString(RESPONSE.formatted(address)).getAsJsonObject();
+    }
+}